@@ -3,6 +3,7 @@ plugins {
     jacoco
     id("org.springframework.boot") version "3.5.10"
     id("io.spring.dependency-management") version "1.1.7"
+    id("org.graalvm.buildtools.native") version "0.10.6"
 }
 
 group = "id.ac.ui.cs.advprog"
@@ -29,12 +30,28 @@ val seleniumJavaVersion = "4.14.1"
 val seleniumJupiterVersion = "5.0.1"
 val webdrivermanagerVersion = "5.6.3"
 val junitJupiterVersion = "5.9.1"
+val jmhVersion = "1.37"
+
+// Microbenchmarks live in src/jmh/java and see the application classes. They are never
+// packaged into the application, and the regular build only compiles them
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[jmh.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
 
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
     implementation("org.springframework.boot:spring-boot-starter-web")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("org.springframework.boot:spring-boot-starter-aop")
+    implementation("org.springframework.boot:spring-boot-starter-jdbc")
     compileOnly("org.projectlombok:lombok")
     developmentOnly("org.springframework.boot:spring-boot-devtools")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
+    runtimeOnly("com.h2database:h2")
     annotationProcessor("org.springframework.boot:spring-boot-configuration-processor")
     annotationProcessor("org.projectlombok:lombok")
     testImplementation("org.springframework.boot:spring-boot-starter-test")
@@ -42,6 +59,8 @@ dependencies {
     testImplementation("io.github.bonigarcia:selenium-jupiter:$seleniumJupiterVersion")
     testImplementation("io.github.bonigarcia:webdrivermanager:$webdrivermanagerVersion")
     testImplementation("org.junit.jupiter:junit-jupiter:$junitJupiterVersion")
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
 }
 
 tasks.register<Test>("unitTest") {
@@ -50,6 +69,8 @@ tasks.register<Test>("unitTest") {
 
     filter {
         excludeTestsMatching("*FunctionalTest")
+        excludeTestsMatching("*LoadTest")
+        excludeTestsMatching("*StartupTest")
     }
 }
 
@@ -62,6 +83,101 @@ tasks.register<Test>("functionalTest") {
     }
 }
 
+tasks.register<Test>("loadTest") {
+    description = "Boots the app on a random port and runs multi-user CRUD load against it."
+    group = "verification"
+
+    filter {
+        includeTestsMatching("*LoadTest")
+    }
+    // -PloadTest.users=200, -PloadTest.slo.p99Millis=100 and so on reach the test as
+    // system properties
+    providers.gradlePropertiesPrefixedBy("loadTest.").get().forEach { (name, value) ->
+        systemProperty(name, value)
+    }
+    systemProperty("loadTest.reportDirectory", layout.buildDirectory.dir("reports/load-test").get().asFile.path)
+    outputs.upToDateWhen { false }
+    testLogging {
+        showStandardStreams = true
+    }
+}
+
+// "./gradlew nativeCompile" builds build/native/nativeCompile/eshop with GraalVM. Like the
+// AOT-processed JVM build (-Dspring.aot.enabled=true), it fixes the @ConditionalOnProperty
+// choices (write-ahead log, JDBC, page cache, change feed) to the values they have at build time
+graalvmNative {
+    binaries {
+        named("main") {
+            imageName = "eshop"
+            // Keep the binary runnable on any x86-64 machine the app is scheduled on
+            buildArgs.add("-march=compatibility")
+        }
+    }
+}
+
+tasks.register<Test>("startupTest") {
+    description = "Cold-starts the packaged app as a plain JVM, with CDS, with CDS and AOT and as a native image."
+    group = "verification"
+    dependsOn(tasks.bootJar)
+
+    filter {
+        includeTestsMatching("*StartupTest")
+    }
+    // -PstartupTest.runs=10 and so on reach the test as system properties
+    providers.gradlePropertiesPrefixedBy("startupTest.").get().forEach { (name, value) ->
+        systemProperty(name, value)
+    }
+    systemProperty("startupTest.jar", tasks.bootJar.get().archiveFile.get().asFile.path)
+    systemProperty("startupTest.nativeImage",
+        layout.buildDirectory.file("native/nativeCompile/eshop").get().asFile.path)
+    systemProperty("startupTest.workDirectory", layout.buildDirectory.dir("startup-test").get().asFile.path)
+    systemProperty("startupTest.reportDirectory", layout.buildDirectory.dir("reports/startup-test").get().asFile.path)
+    outputs.upToDateWhen { false }
+    testLogging {
+        showStandardStreams = true
+    }
+}
+
+// "./gradlew jmh" runs every benchmark once on one thread and once on all hardware
+// threads, with the GC profiler for allocation rates, and writes JSON results to
+// build/results/jmh. Narrow a run with -Pjmh.includes=<regex> and -Pjmh.params=size=1000
+val jmhIncludes = providers.gradleProperty("jmh.includes").orElse(".*Benchmark")
+val jmhParams = providers.gradleProperty("jmh.params")
+val jmhRuns = listOf("SingleThread" to "1", "MultiThread" to "max").map { (name, threads) ->
+    tasks.register<JavaExec>("jmh$name") {
+        description = "Runs the JMH benchmarks with $threads thread(s)."
+        group = "benchmark"
+        classpath = jmh.runtimeClasspath
+        mainClass = "org.openjdk.jmh.Main"
+        val resultsFile = layout.buildDirectory.file("results/jmh/${name.lowercase()}.json")
+        outputs.file(resultsFile)
+        outputs.upToDateWhen { false }
+        argumentProviders.add(CommandLineArgumentProvider {
+            val params = jmhParams.orNull?.split(";")?.flatMap { listOf("-p", it) } ?: emptyList()
+            listOf(jmhIncludes.get(), "-t", threads, "-prof", "gc",
+                "-rf", "json", "-rff", resultsFile.get().asFile.absolutePath) + params
+        })
+        doFirst {
+            resultsFile.get().asFile.parentFile.mkdirs()
+        }
+    }
+}
+
+jmhRuns[1].configure {
+    mustRunAfter(jmhRuns[0])
+}
+
+// Compile the benchmarks on every build so they keep up with the code they measure
+tasks.check {
+    dependsOn(tasks.named(jmh.classesTaskName))
+}
+
+tasks.register("jmh") {
+    description = "Runs the JMH benchmarks single-threaded and multi-threaded."
+    group = "benchmark"
+    dependsOn(jmhRuns)
+}
+
 tasks.withType<Test> {
     useJUnitPlatform()
 }
@@ -69,6 +185,8 @@ tasks.withType<Test> {
 tasks.test {
     filter {
         excludeTestsMatching("*FunctionalTest")
+        excludeTestsMatching("*LoadTest")
+        excludeTestsMatching("*StartupTest")
     }
     finalizedBy("jacocoTestReport")
 }
@@ -0,0 +1,50 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+import id.ac.ui.cs.advprog.eshop.ids.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the ids the repositories give new products, time-ordered or random, against a
+ * product built with an id it is given.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductIdBenchmark {
+    private final String givenId = UUID.randomUUID().toString();
+    private final TimeOrderedIdGenerator timeOrderedIds = new TimeOrderedIdGenerator();
+
+    @Benchmark
+    public String timeOrderedId() {
+        return timeOrderedIds.nextId();
+    }
+
+    @Benchmark
+    public Product newProductWithId() {
+        return new Product(givenId, "Sampo Cap Bambang", 1, 0);
+    }
+
+    @Benchmark
+    public UUID randomUuid() {
+        return UUID.randomUUID();
+    }
+
+    @Benchmark
+    public String randomUuidString() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,132 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link CarRepository} operation against {@code size} cars spread over a handful of
+ * colors and all stock levels. Writes replace existing cars, so the size stays fixed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CarRepositoryBenchmark {
+    static final int PAGE_SIZE = 20;
+    static final int BATCH_SIZE = 1000;
+    static final String[] COLORS = {"Red", "Blue", "Black", "White", "Silver", "Green"};
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private CarRepository repository;
+    private String[] ids;
+    private final CarFilter inStockRed = CarFilter.inStock("Red");
+
+    @Setup
+    public void setUp() {
+        repository = new CarRepository();
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = repository.create(newCar(null, i)).getCarId();
+        }
+    }
+
+    static Car newCar(String carId, int i) {
+        Car car = new Car();
+        car.setCarId(carId);
+        car.setCarName("Car " + i);
+        car.setCarColor(COLORS[i % COLORS.length]);
+        car.setCarQuantity(i % 150);
+        return car;
+    }
+
+    private String randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    public Car findById() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    public Page<Car> findPage() {
+        String cursor = PageCursor.encode(ThreadLocalRandom.current().nextInt(size));
+        return repository.findPage(cursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<Car> findPageFiltered() {
+        String cursor = PageCursor.encode(ThreadLocalRandom.current().nextInt(size));
+        return repository.findPage(inStockRed, cursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CarFacets facets() {
+        return repository.facets();
+    }
+
+    @Benchmark
+    public void findAll(Blackhole blackhole) {
+        repository.findAll().forEachRemaining(blackhole::consume);
+    }
+
+    @Benchmark
+    public Car create() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        return repository.create(newCar(ids[i], i));
+    }
+
+    // Every batch adds new cars, since an import never replaces existing ones
+    @Benchmark
+    public void createAll() {
+        List<Car> batch = new ArrayList<>(BATCH_SIZE);
+        for (int n = 0; n < BATCH_SIZE; n++) {
+            batch.add(newCar(null, n));
+        }
+        repository.createAll(batch);
+    }
+
+    @Benchmark
+    public Car update() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        Car current = repository.findById(ids[i]);
+        Car edit = newCar(ids[i], i + 1);
+        edit.setVersion(current.getVersion());
+        try {
+            return repository.update(ids[i], edit);
+        } catch (VersionConflictException e) {
+            // Another benchmark thread updated the same car first
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Car deleteAndCreate() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        repository.delete(ids[i]);
+        return repository.create(newCar(ids[i], i));
+    }
+}
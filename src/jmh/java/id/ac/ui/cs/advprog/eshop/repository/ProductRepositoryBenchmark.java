@@ -0,0 +1,165 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.persistence.ProductStorageProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link ProductRepository} operation against a catalog of {@code size} products,
+ * on heap and off-heap storage. Writes replace existing products, so the catalog keeps its
+ * size for the whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProductRepositoryBenchmark {
+    static final int PAGE_SIZE = 20;
+    static final int BATCH_SIZE = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public ProductStorageProperties.Type storage;
+
+    private ProductRepository repository;
+    private String[] ids;
+
+    @Setup
+    public void setUp() {
+        repository = new ProductRepository(switch (storage) {
+            case HEAP -> new HeapProductStorage();
+            case OFF_HEAP -> new OffHeapProductStorage(size);
+        });
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            Product product = new Product();
+            product.setProductName("Product " + i);
+            product.setProductQuantity(i % 500);
+            repository.create(product);
+            ids[i] = product.getProductId();
+        }
+    }
+
+    private String randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    public Product findById() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    public Product findByIdMissing() {
+        return repository.findById("missing");
+    }
+
+    @Benchmark
+    public Page<Product> findPage() {
+        String cursor = PageCursor.encode(ThreadLocalRandom.current().nextInt(size));
+        return repository.findPage(cursor, PAGE_SIZE);
+    }
+
+    // The same page by offset, walking the catalog up to it, as paging worked before cursors
+    @Benchmark
+    public List<Product> findPageByOffset() {
+        Iterator<Product> products = repository.findAll();
+        for (int skip = ThreadLocalRandom.current().nextInt(size); skip > 0 && products.hasNext(); skip--) {
+            products.next();
+        }
+        List<Product> page = new ArrayList<>(PAGE_SIZE);
+        while (page.size() < PAGE_SIZE && products.hasNext()) {
+            page.add(products.next());
+        }
+        return page;
+    }
+
+    @Benchmark
+    public Page<Product> findPageByName() {
+        return repository.findPageByName("Product " + ThreadLocalRandom.current().nextInt(size), null, false,
+                null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Product> searchByNamePrefix() {
+        return repository.searchByNamePrefix("Product " + ThreadLocalRandom.current().nextInt(100), PAGE_SIZE);
+    }
+
+    // What a prefix search costs without the name index: filter and sort the whole catalog
+    @Benchmark
+    public List<Product> searchByNamePrefixScan() {
+        String prefix = ("Product " + ThreadLocalRandom.current().nextInt(100)).toLowerCase(Locale.ROOT);
+        List<Product> matches = new ArrayList<>();
+        repository.findAll().forEachRemaining(product -> {
+            if (product.getProductName().toLowerCase(Locale.ROOT).startsWith(prefix)) {
+                matches.add(product);
+            }
+        });
+        matches.sort(Comparator.comparing(Product::getProductName, String.CASE_INSENSITIVE_ORDER));
+        return matches.subList(0, Math.min(PAGE_SIZE, matches.size()));
+    }
+
+    @Benchmark
+    public void findAll(Blackhole blackhole) {
+        repository.findAll().forEachRemaining(blackhole::consume);
+    }
+
+    @Benchmark
+    public Product create() {
+        return repository.create(new Product(randomId(), "Replaced product", 7, 0));
+    }
+
+    // Every batch adds new products, since an import never replaces existing ones
+    @Benchmark
+    public void createAll() {
+        List<Product> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Product(null, "Imported product", i, 0));
+        }
+        repository.createAll(batch);
+    }
+
+    @Benchmark
+    public Product update() {
+        String id = randomId();
+        Product current = repository.findById(id);
+        try {
+            return repository.update(id, new Product(id, current.getProductName(),
+                    current.getProductQuantity() + 1, current.getVersion()));
+        } catch (VersionConflictException e) {
+            // Another benchmark thread updated the same product first
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Product deleteAndCreate() {
+        String id = randomId();
+        repository.deleteById(id);
+        return repository.create(new Product(id, "Recreated product", 3, 0));
+    }
+}
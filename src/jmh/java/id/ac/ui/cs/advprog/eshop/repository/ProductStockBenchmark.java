@@ -0,0 +1,67 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64 threads selling and restocking one product, the worst case for a popular SKU.
+ * {@link #adjustQuantity} is the atomic stock path; {@link #updateWithRetry} is what a
+ * client had to do before it existed: read the product, write it back with the version it
+ * read, and start over when someone else wrote first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class ProductStockBenchmark {
+    private static final String SKU = "hot-sku";
+
+    private ProductRepository repository;
+
+    @Setup
+    public void setUp() {
+        repository = new ProductRepository();
+        repository.create(new Product(SKU, "Hot product", 1_000_000, 0));
+    }
+
+    @Benchmark
+    public StockAdjustment adjustQuantity() {
+        StockAdjustment sold = repository.adjustQuantity(SKU, quantity -> quantity >= 1 ? quantity - 1 : -1);
+        return sold.applied() ? repository.adjustQuantity(SKU, quantity -> quantity + 1) : sold;
+    }
+
+    @Benchmark
+    public Product updateWithRetry() {
+        updateUntilApplied(-1);
+        return updateUntilApplied(1);
+    }
+
+    private Product updateUntilApplied(int delta) {
+        while (true) {
+            Product current = repository.findById(SKU);
+            Product next = new Product(SKU, current.getProductName(), current.getProductQuantity() + delta,
+                    current.getVersion());
+            try {
+                return repository.update(SKU, next);
+            } catch (VersionConflictException e) {
+                // Someone else sold or restocked in between, read again
+            }
+        }
+    }
+}
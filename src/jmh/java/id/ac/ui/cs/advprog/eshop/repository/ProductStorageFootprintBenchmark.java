@@ -0,0 +1,88 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.persistence.ProductStorageProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a catalog of {@code size} products costs the heap and the GC on heap and off-heap
+ * storage. Setup loads the catalog and prints the live heap left after a full GC, the
+ * off-heap bytes and the GC time the load took; the benchmark then updates random products,
+ * whose GC cost {@code -prof gc} reports. Products have UUID ids, as the default id
+ * generator gives them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-XX:MaxDirectMemorySize=4g"})
+public class ProductStorageFootprintBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public ProductStorageProperties.Type storage;
+
+    private ProductRepository repository;
+    private String[] ids;
+
+    @Setup
+    public void setUp() {
+        long heapBefore = liveHeap();
+        long gcBefore = gcMillis();
+        OffHeapProductStorage offHeap = storage == ProductStorageProperties.Type.OFF_HEAP
+                ? new OffHeapProductStorage(size) : null;
+        repository = new ProductRepository(offHeap != null ? offHeap : new HeapProductStorage());
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = UUID.randomUUID().toString();
+            repository.create(new Product(ids[i], "Sampo Cap Bambang " + i, i % 1000, 0));
+        }
+        long loadGc = gcMillis() - gcBefore;
+        System.out.printf("%n%d products on %s: live heap %d MB, off-heap %d MB, GC during load %d ms%n",
+                size, storage, (liveHeap() - heapBefore) >> 20, offHeap == null ? 0 : offHeap.offHeapBytes() >> 20,
+                loadGc);
+    }
+
+    @Benchmark
+    public Product update() {
+        String id = ids[ThreadLocalRandom.current().nextInt(size)];
+        Product current = repository.findById(id);
+        try {
+            return repository.update(id, new Product(id, current.getProductName(),
+                    current.getProductQuantity() + 1, current.getVersion()));
+        } catch (VersionConflictException e) {
+            // Another benchmark thread updated the same product first
+            return null;
+        }
+    }
+
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+}
@@ -0,0 +1,87 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying a batch of {@code batchSize} stock deltas over a catalog of 100 000
+ * products, in one {@link ProductRepository#applyDeltas} call against one
+ * {@link ProductRepository#adjustQuantity} call per delta. Every batch is followed by its
+ * inverse so quantities stay where they started.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StockDeltaBenchmark {
+    private static final int CATALOG_SIZE = 100_000;
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+    private ProductRepository repository;
+    private List<StockDelta> deltas;
+    private List<StockDelta> inverse;
+
+    @Setup
+    public void setUp() {
+        repository = new ProductRepository();
+        String[] ids = new String[CATALOG_SIZE];
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            Product product = new Product();
+            product.setProductName("Product " + i);
+            product.setProductQuantity(1_000);
+            repository.create(product);
+            ids[i] = product.getProductId();
+        }
+        Random random = new Random(42);
+        deltas = new ArrayList<>(batchSize);
+        inverse = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            String id = ids[random.nextInt(CATALOG_SIZE)];
+            int delta = random.nextInt(10) - 5;
+            deltas.add(new StockDelta(id, delta));
+            inverse.add(new StockDelta(id, -delta));
+        }
+    }
+
+    @Benchmark
+    public List<StockDeltaResult> batch() {
+        repository.applyDeltas(deltas, true);
+        return repository.applyDeltas(inverse, true);
+    }
+
+    @Benchmark
+    public StockAdjustment perItem() {
+        perItem(deltas);
+        return perItem(inverse);
+    }
+
+    private StockAdjustment perItem(List<StockDelta> batch) {
+        StockAdjustment last = null;
+        for (StockDelta delta : batch) {
+            last = repository.adjustQuantity(delta.productId(), quantity -> quantity + delta.delta());
+        }
+        return last;
+    }
+}
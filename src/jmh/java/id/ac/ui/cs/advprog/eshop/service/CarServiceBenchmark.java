@@ -0,0 +1,133 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.PageCursor;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link CarServiceImpl} operation over {@code size} cars. Change events go to a
+ * publisher that drops them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CarServiceBenchmark {
+    static final int PAGE_SIZE = 20;
+    static final int BATCH_SIZE = 1000;
+    static final String[] COLORS = {"Red", "Blue", "Black", "White", "Silver", "Green"};
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private CarService service;
+    private String[] ids;
+    private final CarFilter inStockRed = CarFilter.inStock("Red");
+
+    @Setup
+    public void setUp() {
+        service = new CarServiceImpl(new CarRepository(), event -> { });
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = service.create(newCar(null, i)).getCarId();
+        }
+    }
+
+    static Car newCar(String carId, int i) {
+        Car car = new Car();
+        car.setCarId(carId);
+        car.setCarName("Car " + i);
+        car.setCarColor(COLORS[i % COLORS.length]);
+        car.setCarQuantity(i % 150);
+        return car;
+    }
+
+    @Benchmark
+    public Car create() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        return service.create(newCar(ids[i], i));
+    }
+
+    @Benchmark
+    public List<Car> findAll() {
+        return service.findAll();
+    }
+
+    @Benchmark
+    public void iterateAll(Blackhole blackhole) {
+        service.iterateAll().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public Page<Car> findPage() {
+        return service.findPage(PageCursor.encode(ThreadLocalRandom.current().nextInt(size)), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<Car> findPageFiltered() {
+        return service.findPage(inStockRed, PageCursor.encode(ThreadLocalRandom.current().nextInt(size)), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CarFacets facets() {
+        return service.facets();
+    }
+
+    @Benchmark
+    public Car findById() {
+        return service.findById(ids[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    // Every batch adds new cars, since an import never replaces existing ones
+    @Benchmark
+    public void createAll() {
+        List<Car> batch = new ArrayList<>(BATCH_SIZE);
+        for (int n = 0; n < BATCH_SIZE; n++) {
+            batch.add(newCar(null, n));
+        }
+        service.createAll(batch);
+    }
+
+    @Benchmark
+    public Car update() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        Car edit = newCar(ids[i], i + 1);
+        edit.setVersion(service.findById(ids[i]).getVersion());
+        try {
+            return service.update(ids[i], edit);
+        } catch (VersionConflictException e) {
+            // Another benchmark thread updated the same car first
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Car deleteCarById() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        service.deleteCarById(ids[i]);
+        return service.create(newCar(ids[i], i));
+    }
+}
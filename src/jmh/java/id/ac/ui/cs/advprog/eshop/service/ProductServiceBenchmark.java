@@ -0,0 +1,121 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.PageCursor;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link ProductServiceImpl} operation over a heap repository of {@code size}
+ * products. Change events go to a publisher that drops them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProductServiceBenchmark {
+    static final int PAGE_SIZE = 20;
+    static final int BATCH_SIZE = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private ProductService service;
+    private String[] ids;
+
+    @Setup
+    public void setUp() {
+        service = new ProductServiceImpl(new ProductRepository(), event -> { });
+        ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            Product product = new Product();
+            product.setProductName("Product " + i);
+            product.setProductQuantity(i % 500);
+            ids[i] = service.create(product).getProductId();
+        }
+    }
+
+    private String randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    public Product create() {
+        return service.create(new Product(randomId(), "Replaced product", 7, 0));
+    }
+
+    // Every batch adds new products, since an import never replaces existing ones
+    @Benchmark
+    public void createAll() {
+        List<Product> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Product(null, "Imported product", i, 0));
+        }
+        service.createAll(batch);
+    }
+
+    @Benchmark
+    public List<Product> findAll() {
+        return service.findAll();
+    }
+
+    @Benchmark
+    public void iterateAll(Blackhole blackhole) {
+        service.iterateAll().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public Page<Product> findPage() {
+        return service.findPage(PageCursor.encode(ThreadLocalRandom.current().nextInt(size)), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Product findById() {
+        return service.findById(randomId());
+    }
+
+    @Benchmark
+    public List<Product> searchByName() {
+        return service.searchByName("Product " + ThreadLocalRandom.current().nextInt(100), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Product update() {
+        String id = randomId();
+        Product current = service.findById(id);
+        try {
+            return service.update(id, new Product(id, current.getProductName(),
+                    current.getProductQuantity() + 1, current.getVersion()));
+        } catch (VersionConflictException e) {
+            // Another benchmark thread updated the same product first
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Product deleteById() {
+        String id = randomId();
+        service.deleteById(id);
+        return service.create(new Product(id, "Recreated product", 3, 0));
+    }
+}
@@ -2,8 +2,10 @@ package id.ac.ui.cs.advprog.eshop;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(EshopRuntimeHints.class)
 public final class EshopApplication {
 
     private EshopApplication() {
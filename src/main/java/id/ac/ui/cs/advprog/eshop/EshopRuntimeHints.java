@@ -0,0 +1,49 @@
+package id.ac.ui.cs.advprog.eshop;
+
+import id.ac.ui.cs.advprog.eshop.controller.ProductApiController;
+import id.ac.ui.cs.advprog.eshop.feed.ChangeFeedStreams;
+import id.ac.ui.cs.advprog.eshop.lowstock.StockCrossing;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.ImportSummary;
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
+import id.ac.ui.cs.advprog.eshop.model.StockLevel;
+import id.ac.ui.cs.advprog.eshop.web.PageCacheStats;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.Map;
+
+/**
+ * What a native image of the shop needs beyond the hints Spring derives by itself. The
+ * Lombok models are read and bound through their generated accessors by Thymeleaf
+ * expressions, form binding and Jackson, which the image cannot see at build time, and
+ * bodies written by hand (streamed JSON arrays, SSE data) are not reachable from any
+ * mapping either. Templates and static resources are registered by Spring Boot itself.
+ */
+public class EshopRuntimeHints implements RuntimeHintsRegistrar {
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingHints.registerReflectionHints(hints.reflection(),
+                Product.class, Car.class, Page.class, CarFacets.class, CarFilter.class, StockLevel.class,
+                ImportSummary.class, ImportSummary.Rejection.class, StockAdjustment.class, StockDelta.class,
+                StockDeltaResult.class, PageCacheStats.class, ProductApiController.StockRequest.class,
+                ProductApiController.StockDeltaBatch.class, ProductApiController.LowStockThreshold.class,
+                ChangeFeedStreams.ChangeMessage.class, ChangeFeedStreams.ResyncMessage.class, StockCrossing.class);
+        // carList.html iterates the facet maps and reads entry.key and entry.value
+        hints.reflection().registerType(Map.Entry.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+        for (String entryClass : new String[] {"java.util.TreeMap$Entry", "java.util.EnumMap$EntryIterator$Entry"}) {
+            hints.reflection().registerType(TypeReference.of(entryClass), MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
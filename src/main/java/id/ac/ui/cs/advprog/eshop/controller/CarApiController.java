@@ -0,0 +1,126 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
+import id.ac.ui.cs.advprog.eshop.service.CarService;
+import id.ac.ui.cs.advprog.eshop.service.CatalogValidation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * JSON counterpart of {@link CarController}. Writes answer with the stored car instead of
+ * a redirect, and errors are reported as RFC 9457 problem details.
+ */
+@RestController
+@RequestMapping("/api/cars")
+public class CarApiController {
+    private final CarService carService;
+    private final JsonArrayResponses jsonArrayResponses;
+
+    public CarApiController(CarService carService, ObjectMapper objectMapper) {
+        this.carService = carService;
+        this.jsonArrayResponses = new JsonArrayResponses(objectMapper);
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> listCars(ServletWebRequest request) {
+        if (ConditionalRequests.isNotModified(request, carService.modificationStamp())) {
+            return null;
+        }
+        return jsonArrayResponses.stream(carService.iterateAll());
+    }
+
+    @GetMapping("/{carId}")
+    public ResponseEntity<?> getCar(@PathVariable String carId, ServletWebRequest request) {
+        ModificationStamp stamp = carService.modificationStamp();
+        Car car = carService.findById(carId);
+        if (car == null) {
+            return notFound(carId);
+        }
+        if (ConditionalRequests.isNotModified(request, stamp)) {
+            return null;
+        }
+        return ResponseEntity.ok(car);
+    }
+
+    /**
+     * Creates a car, giving it an id unless the body names one. A car that already exists is
+     * not replaced.
+     */
+    @PostMapping
+    public ResponseEntity<?> createCar(@RequestBody Car car) {
+        if (!CatalogValidation.isValid(car)) {
+            return problem(HttpStatus.BAD_REQUEST, CatalogValidation.INVALID_CAR);
+        }
+        car.setVersion(0);
+        if (!carService.createIfAbsent(car)) {
+            return problem(HttpStatus.CONFLICT, "Car " + car.getCarId() + " already exists");
+        }
+        return ResponseEntity
+                .created(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{carId}").buildAndExpand(car.getCarId()).toUri())
+                .body(car);
+    }
+
+    /**
+     * Replaces the name, color and quantity of a car. The body must carry the version it
+     * was based on; a car changed since then is not overwritten.
+     */
+    @PutMapping("/{carId}")
+    public ResponseEntity<?> updateCar(@PathVariable String carId, @RequestBody Car car) {
+        if (!CatalogValidation.isValid(car)) {
+            return problem(HttpStatus.BAD_REQUEST, CatalogValidation.INVALID_CAR);
+        }
+        try {
+            Car updated = carService.update(carId, car);
+            if (updated == null) {
+                return notFound(carId);
+            }
+            return ResponseEntity.ok(updated);
+        } catch (VersionConflictException e) {
+            return problem(HttpStatus.CONFLICT, "Car was changed by someone else, current version is "
+                    + e.getActualVersion());
+        }
+    }
+
+    @DeleteMapping("/{carId}")
+    public ResponseEntity<?> deleteCar(@PathVariable String carId) {
+        if (carService.findById(carId) == null) {
+            return notFound(carId);
+        }
+        carService.deleteCarById(carId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * A write that is applied, and already seen by other readers, but not stored yet.
+     */
+    @ExceptionHandler(ChangeNotDurableException.class)
+    public ResponseEntity<ProblemDetail> changeNotDurable(ChangeNotDurableException e) {
+        return problem(HttpStatus.ACCEPTED, e.getMessage());
+    }
+
+    private static ResponseEntity<ProblemDetail> notFound(String carId) {
+        return problem(HttpStatus.NOT_FOUND, "Car " + carId + " not found");
+    }
+
+    private static ResponseEntity<ProblemDetail> problem(HttpStatus status, String detail) {
+        return ResponseEntity.of(ProblemDetail.forStatusAndDetail(status, detail)).build();
+    }
+}
@@ -1,26 +1,61 @@
 package id.ac.ui.cs.advprog.eshop.controller;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
 
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.ui.Model;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
+import id.ac.ui.cs.advprog.eshop.importer.ImportFormats;
+import id.ac.ui.cs.advprog.eshop.importer.ImportRecordReader;
 import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.ImportSummary;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import id.ac.ui.cs.advprog.eshop.model.StockLevel;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
 import id.ac.ui.cs.advprog.eshop.service.CarService;
+import id.ac.ui.cs.advprog.eshop.service.CatalogExportService;
+import id.ac.ui.cs.advprog.eshop.service.CatalogImportService;
+import id.ac.ui.cs.advprog.eshop.service.CatalogValidation;
 
 @Controller
 @RequestMapping("/car")
 public class CarController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final CarService carService;
+    private final CatalogImportService catalogImportService;
+    private final CatalogExportService catalogExportService;
 
-    public CarController(CarService carService) {
+    public CarController(CarService carService, CatalogImportService catalogImportService,
+                         CatalogExportService catalogExportService) {
         this.carService = carService;
+        this.catalogImportService = catalogImportService;
+        this.catalogExportService = catalogExportService;
     }
 
     @GetMapping("/createCar")
@@ -31,32 +66,141 @@ public class CarController {
     }
 
     @PostMapping("/createCar")
-    public String createCarPost(@ModelAttribute Car car) {
+    public String createCarPost(@ModelAttribute Car car, RedirectAttributes redirectAttributes) {
+        if (!CatalogValidation.isValid(car)) {
+            redirectAttributes.addFlashAttribute("error", CatalogValidation.INVALID_CAR);
+            return "redirect:listCar";
+        }
         carService.create(car);
         return "redirect:listCar";
     }
 
+    /**
+     * Creates cars from a CSV (header row with carName, carColor, carQuantity and an
+     * optional carId) or NDJSON body. The body is parsed while it is received.
+     */
+    @PostMapping(value = "/import", consumes = {ImportFormats.CSV, ImportFormats.NDJSON})
+    @ResponseBody
+    public ImportSummary importCars(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    InputStream body) throws IOException {
+        try (ImportRecordReader records = ImportFormats.open(contentType, body)) {
+            return catalogImportService.importCars(records);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Streams every car as CSV or NDJSON ({@code format=ndjson}), in the layout
+     * {@code /car/import} reads.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCars(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return ExportResponses.download("cars", format, acceptEncoding, catalogExportService::exportCars);
+    }
+
     @GetMapping("/listCar")
-    public String carListPage(Model model) {
-        List<Car> allCars = carService.findAll();
-        model.addAttribute("cars", allCars);
+    public String carListPage(@RequestParam(value = "after", required = false) String after,
+                              @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                              @RequestParam(value = "color", required = false) String color,
+                              @RequestParam(value = "stock", required = false) StockLevel stockLevel,
+                              @RequestParam(value = "inStock", defaultValue = "false") boolean inStock,
+                              Model model, ServletWebRequest request) {
+        // A flash message is only shown once, so that page must always be rendered
+        if (!model.containsAttribute("error")
+                && ConditionalRequests.isNotModified(request, carService.modificationStamp())) {
+            return null;
+        }
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        CarFilter filter = toFilter(color, stockLevel, inStock);
+        Page<Car> page;
+        try {
+            page = carService.findPage(filter, after, pageSize);
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("error", "Invalid page cursor");
+            after = null;
+            page = carService.findPage(filter, null, pageSize);
+        }
+        model.addAttribute("cars", page.getItems());
+        model.addAttribute("facets", carService.facets());
+        model.addAttribute("color", color);
+        model.addAttribute("stock", stockLevel);
+        model.addAttribute("stockLevels", StockLevel.values());
+        model.addAttribute("inStock", inStock);
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("pageSize", pageSize);
+        model.addAttribute("firstPage", after == null);
+        return "carList";
+    }
+
+    @GetMapping("/listCar/all")
+    public String carFullListPage(Model model, ServletWebRequest request) {
+        if (!model.containsAttribute("error")
+                && ConditionalRequests.isNotModified(request, carService.modificationStamp())) {
+            return null;
+        }
+        // Rows are pulled lazily while Thymeleaf writes to the response, so the page is never built in memory
+        model.addAttribute("cars", carService.iterateAll());
+        model.addAttribute("firstPage", true);
+        model.addAttribute("fullList", true);
         return "carList";
     }
 
     @GetMapping("/editCar/{carId}")
-    public String editCarPage(@PathVariable String carId, Model model) {
+    public String editCarPage(@PathVariable String carId, Model model, RedirectAttributes redirectAttributes,
+                              ServletWebRequest request) {
+        ModificationStamp stamp = carService.modificationStamp();
         Car car = carService.findById(carId);
+        if (car == null) {
+            redirectAttributes.addFlashAttribute("error", "Car not found");
+            return "redirect:/car/listCar";
+        }
+        if (ConditionalRequests.isNotModified(request, stamp)) {
+            return null;
+        }
         model.addAttribute("car", car);
         return "editCar";
     }
 
     @PostMapping("/editCar")
-    public String editCarPost(@ModelAttribute Car car) {
-        carService.update(car.getCarId(), car);
+    public String editCarPost(@ModelAttribute Car car, RedirectAttributes redirectAttributes) {
+        if (!CatalogValidation.isValid(car)) {
+            redirectAttributes.addFlashAttribute("error", CatalogValidation.INVALID_CAR);
+            return "redirect:listCar";
+        }
+        try {
+            if (carService.update(car.getCarId(), car) == null) {
+                redirectAttributes.addFlashAttribute("error", "Car not found");
+            }
+        } catch (VersionConflictException e) {
+            redirectAttributes.addFlashAttribute("error", "Car was changed by someone else, please reload it and try again");
+        }
 
         return "redirect:listCar";
     }
 
+    private static CarFilter toFilter(String color, StockLevel stockLevel, boolean inStock) {
+        String colorFilter = color == null || color.isBlank() ? null : color;
+        if (stockLevel != null) {
+            return new CarFilter(colorFilter, Set.of(stockLevel));
+        }
+        if (inStock) {
+            return CarFilter.inStock(colorFilter);
+        }
+        return new CarFilter(colorFilter, Set.of());
+    }
+
+    /**
+     * A write that is applied, and already seen by other readers, but not stored yet.
+     */
+    @ExceptionHandler(ChangeNotDurableException.class)
+    public String changeNotDurable(ChangeNotDurableException e, HttpServletRequest request) {
+        RequestContextUtils.getOutputFlashMap(request).put("error", e.getMessage());
+        return "redirect:/car/listCar";
+    }
+
     @PostMapping("/deleteCar")
     public String deleteCar(@RequestParam("carId") String carId) {
         carService.deleteCarById(carId);
@@ -0,0 +1,26 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Conditional GET for pages rendered from a repository: the repository's modification
+ * version becomes a strong ETag and its last change the Last-Modified header.
+ */
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Adds the validators of {@code stamp} to the response and returns {@code true} if the
+     * client's copy is still current, in which case the response is already a 304 and the
+     * handler must not render anything.
+     */
+    static boolean isNotModified(ServletWebRequest request, ModificationStamp stamp) {
+        // Make browsers revalidate every time instead of reusing the page on a guess
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        return request.checkNotModified(stamp.etag(), stamp.lastModified());
+    }
+}
@@ -0,0 +1,59 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.exporter.ExportFormat;
+import id.ac.ui.cs.advprog.eshop.web.AcceptEncodings;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the streamed download responses of the export endpoints. The body is written
+ * after the handler returns, and is gzip-compressed when the client accepts it.
+ */
+final class ExportResponses {
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private ExportResponses() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> download(String baseName, String formatName,
+                                                          String acceptEncoding, ExportBody body) {
+        ExportFormat format;
+        try {
+            format = ExportFormat.fromName(formatName);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        boolean gzip = AcceptEncodings.allowsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(baseName + "." + format.getFileExtension())
+                        .build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!gzip) {
+            return response.body(out -> body.write(format, StreamUtils.nonClosing(out)));
+        }
+        return response
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body(out -> {
+                    GZIPOutputStream compressed = new GZIPOutputStream(StreamUtils.nonClosing(out), GZIP_BUFFER_SIZE);
+                    // Closing the writer finishes the gzip trailer but leaves the response open
+                    body.write(format, compressed);
+                });
+    }
+
+    @FunctionalInterface
+    interface ExportBody {
+        void write(ExportFormat format, OutputStream out) throws IOException;
+    }
+}
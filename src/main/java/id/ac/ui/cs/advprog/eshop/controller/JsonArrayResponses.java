@@ -0,0 +1,39 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes a JSON array element by element through Jackson's streaming generator, so a
+ * list response never has to be collected into a {@code List} first.
+ */
+final class JsonArrayResponses {
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter elementWriter;
+
+    JsonArrayResponses(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        // Flushing after every element would turn each one into its own network write
+        this.elementWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    ResponseEntity<StreamingResponseBody> stream(Iterable<?> elements) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                        generator.writeStartArray();
+                        for (Object element : elements) {
+                            elementWriter.writeValue(generator, element);
+                        }
+                        generator.writeEndArray();
+                    }
+                });
+    }
+}
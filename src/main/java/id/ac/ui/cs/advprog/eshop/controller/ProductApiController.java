@@ -0,0 +1,258 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
+import id.ac.ui.cs.advprog.eshop.service.CatalogValidation;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+
+/**
+ * JSON counterpart of {@link ProductController}. Writes answer with the stored product
+ * instead of a redirect, and errors are reported as RFC 9457 problem details.
+ */
+@RestController
+@RequestMapping("/api/products")
+public class ProductApiController {
+    static final int MAX_STOCK_DELTAS = 10_000;
+
+    private final ProductService productService;
+    private final JsonArrayResponses jsonArrayResponses;
+
+    public ProductApiController(ProductService productService, ObjectMapper objectMapper) {
+        this.productService = productService;
+        this.jsonArrayResponses = new JsonArrayResponses(objectMapper);
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> listProducts(ServletWebRequest request) {
+        if (ConditionalRequests.isNotModified(request, productService.modificationStamp())) {
+            return null;
+        }
+        return jsonArrayResponses.stream(productService.iterateAll());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getProduct(@PathVariable("id") String id, ServletWebRequest request) {
+        ModificationStamp stamp = productService.modificationStamp();
+        Product product = productService.findById(id);
+        if (product == null) {
+            return notFound(id);
+        }
+        if (ConditionalRequests.isNotModified(request, stamp)) {
+            return null;
+        }
+        return ResponseEntity.ok(product);
+    }
+
+    /**
+     * Creates a product, giving it an id unless the body names one. A product that already
+     * exists is not replaced.
+     */
+    @PostMapping
+    public ResponseEntity<?> createProduct(@RequestBody Product product) {
+        if (!CatalogValidation.isValid(product)) {
+            return problem(HttpStatus.BAD_REQUEST, CatalogValidation.INVALID_PRODUCT);
+        }
+        product.setVersion(0);
+        if (!productService.createIfAbsent(product)) {
+            return problem(HttpStatus.CONFLICT, "Product " + product.getProductId() + " already exists");
+        }
+        return ResponseEntity
+                .created(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{id}").buildAndExpand(product.getProductId()).toUri())
+                .body(product);
+    }
+
+    /**
+     * Replaces the name and quantity of a product. The body must carry the version it was
+     * based on; a product changed since then is not overwritten.
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<?> updateProduct(@PathVariable("id") String id, @RequestBody Product product) {
+        if (!CatalogValidation.isValid(product)) {
+            return problem(HttpStatus.BAD_REQUEST, CatalogValidation.INVALID_PRODUCT);
+        }
+        try {
+            Product updated = productService.update(id, product);
+            if (updated == null) {
+                return notFound(id);
+            }
+            return ResponseEntity.ok(updated);
+        } catch (VersionConflictException e) {
+            return problem(HttpStatus.CONFLICT, "Product was changed by someone else, current version is "
+                    + e.getActualVersion());
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteProduct(@PathVariable("id") String id) {
+        if (productService.findById(id) == null) {
+            return notFound(id);
+        }
+        productService.deleteById(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Adds to the stock of a product without sending the whole product, so concurrent
+     * deliveries and sales are never lost. Answers with the stored product.
+     */
+    @PostMapping("/{id}/stock/add")
+    public ResponseEntity<?> addStock(@PathVariable("id") String id, @RequestBody StockRequest request) {
+        if (request.amount() <= 0) {
+            return invalidAmount();
+        }
+        StockAdjustment adjustment = productService.addStock(id, request.amount());
+        if (adjustment == null) {
+            return notFound(id);
+        }
+        if (!adjustment.applied()) {
+            return problem(HttpStatus.CONFLICT, "Product " + id + " cannot hold more stock");
+        }
+        return ResponseEntity.ok(adjustment.product());
+    }
+
+    /**
+     * Removes up to the given amount; the quantity never goes below 0.
+     */
+    @PostMapping("/{id}/stock/subtract")
+    public ResponseEntity<?> subtractStock(@PathVariable("id") String id, @RequestBody StockRequest request) {
+        if (request.amount() <= 0) {
+            return invalidAmount();
+        }
+        StockAdjustment adjustment = productService.subtractStock(id, request.amount());
+        if (adjustment == null) {
+            return notFound(id);
+        }
+        return ResponseEntity.ok(adjustment.product());
+    }
+
+    /**
+     * Takes exactly the given amount, or answers 409 and changes nothing when fewer are in stock.
+     */
+    @PostMapping("/{id}/stock/reserve")
+    public ResponseEntity<?> reserveStock(@PathVariable("id") String id, @RequestBody StockRequest request) {
+        if (request.amount() <= 0) {
+            return invalidAmount();
+        }
+        StockAdjustment adjustment = productService.reserveStock(id, request.amount());
+        if (adjustment == null) {
+            return notFound(id);
+        }
+        if (!adjustment.applied()) {
+            return problem(HttpStatus.CONFLICT, "Only " + adjustment.product().getProductQuantity()
+                    + " of product " + id + " in stock");
+        }
+        return ResponseEntity.ok(adjustment.product());
+    }
+
+    /**
+     * Applies a batch of stock deltas in one pass and answers with one result per delta, in
+     * order. An {@code ALL_OR_NOTHING} batch (the default) with a refused delta changes
+     * nothing and answers 409; a {@code BEST_EFFORT} batch applies what it can.
+     */
+    @PostMapping("/stock-deltas")
+    public ResponseEntity<?> applyStockDeltas(@RequestBody StockDeltaBatch batch) {
+        if (batch.deltas() == null || batch.deltas().isEmpty() || batch.deltas().size() > MAX_STOCK_DELTAS) {
+            return problem(HttpStatus.BAD_REQUEST, "A batch must have between 1 and " + MAX_STOCK_DELTAS + " deltas");
+        }
+        boolean allOrNothing = batch.mode() != BatchMode.BEST_EFFORT;
+        List<StockDeltaResult> results = productService.applyStockDeltas(batch.deltas(), allOrNothing);
+        boolean rolledBack = allOrNothing
+                && results.stream().anyMatch(result -> result.status() != StockDeltaResult.Status.APPLIED);
+        return ResponseEntity.status(rolledBack ? HttpStatus.CONFLICT : HttpStatus.OK).body(results);
+    }
+
+    /**
+     * The low-stock threshold that applies to a product, its own or the global one.
+     */
+    @GetMapping("/{id}/low-stock-threshold")
+    public ResponseEntity<?> getLowStockThreshold(@PathVariable("id") String id) {
+        if (productService.findById(id) == null) {
+            return notFound(id);
+        }
+        return ResponseEntity.ok(new LowStockThreshold(productService.lowStockThreshold(id)));
+    }
+
+    /**
+     * Gives a product a threshold of its own. It is reported on the notifications page and in
+     * the log when its quantity falls below the threshold, right away if it already is, and
+     * again when it is restocked.
+     */
+    @PutMapping("/{id}/low-stock-threshold")
+    public ResponseEntity<?> setLowStockThreshold(@PathVariable("id") String id,
+                                                  @RequestBody LowStockThreshold request) {
+        if (request.threshold() < 0) {
+            return problem(HttpStatus.BAD_REQUEST, "A low-stock threshold cannot be negative");
+        }
+        if (!productService.setLowStockThreshold(id, request.threshold())) {
+            return notFound(id);
+        }
+        return ResponseEntity.ok(request);
+    }
+
+    /**
+     * Makes a product use the global threshold again.
+     */
+    @DeleteMapping("/{id}/low-stock-threshold")
+    public ResponseEntity<?> removeLowStockThreshold(@PathVariable("id") String id) {
+        productService.removeLowStockThreshold(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    public record StockRequest(int amount) {
+    }
+
+    public record LowStockThreshold(int threshold) {
+    }
+
+    public enum BatchMode {
+        ALL_OR_NOTHING,
+        BEST_EFFORT
+    }
+
+    public record StockDeltaBatch(BatchMode mode, List<StockDelta> deltas) {
+    }
+
+    /**
+     * A write that is applied, and already seen by other readers, but not stored yet.
+     */
+    @ExceptionHandler(ChangeNotDurableException.class)
+    public ResponseEntity<ProblemDetail> changeNotDurable(ChangeNotDurableException e) {
+        return problem(HttpStatus.ACCEPTED, e.getMessage());
+    }
+
+    private static ResponseEntity<ProblemDetail> invalidAmount() {
+        return problem(HttpStatus.BAD_REQUEST, "Stock amount must be at least 1");
+    }
+
+    private static ResponseEntity<ProblemDetail> notFound(String id) {
+        return problem(HttpStatus.NOT_FOUND, "Product " + id + " not found");
+    }
+
+    private static ResponseEntity<ProblemDetail> problem(HttpStatus status, String detail) {
+        return ResponseEntity.of(ProblemDetail.forStatusAndDetail(status, detail)).build();
+    }
+}
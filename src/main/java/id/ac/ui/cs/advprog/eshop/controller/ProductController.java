@@ -1,26 +1,75 @@
 package id.ac.ui.cs.advprog.eshop.controller;
 
+import id.ac.ui.cs.advprog.eshop.importer.ImportFormats;
+import id.ac.ui.cs.advprog.eshop.importer.ImportRecordReader;
+import id.ac.ui.cs.advprog.eshop.model.ImportSummary;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.ProductSort;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
+import id.ac.ui.cs.advprog.eshop.service.CatalogExportService;
+import id.ac.ui.cs.advprog.eshop.service.CatalogImportService;
+import id.ac.ui.cs.advprog.eshop.service.CatalogValidation;
 import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Controller
 @RequestMapping("/product")
 public class ProductController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 50;
+    static final String NOT_FOUND = "eshop.product.not.found";
+    static final String VALIDATION_REJECTED = "eshop.product.validation.rejected";
+
     private final ProductService productService;
+    private final CatalogImportService catalogImportService;
+    private final CatalogExportService catalogExportService;
+    // Tagged with the page or form that looked the product up or submitted it
+    private final Counter editPageNotFound;
+    private final Counter editNotFound;
+    private final Counter deleteNotFound;
+    private final Counter createRejected;
+    private final Counter editRejected;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, CatalogImportService catalogImportService,
+                             CatalogExportService catalogExportService, MeterRegistry meterRegistry) {
         this.productService = productService;
+        this.catalogImportService = catalogImportService;
+        this.catalogExportService = catalogExportService;
+        this.editPageNotFound = meterRegistry.counter(NOT_FOUND, "operation", "editPage");
+        this.editNotFound = meterRegistry.counter(NOT_FOUND, "operation", "edit");
+        this.deleteNotFound = meterRegistry.counter(NOT_FOUND, "operation", "delete");
+        this.createRejected = meterRegistry.counter(VALIDATION_REJECTED, "operation", "create");
+        this.editRejected = meterRegistry.counter(VALIDATION_REJECTED, "operation", "edit");
     }
 
     @GetMapping("/create")
@@ -33,24 +82,54 @@ public class ProductController {
     @PostMapping("/create")
     public String createProductPost(@ModelAttribute Product product, Model model, RedirectAttributes redirectAttributes) {
         // Validation
-        if (product.getProductName() == null || 
-            product.getProductName().trim().isEmpty() || 
-            product.getProductQuantity() < 0
-        ) {
-            redirectAttributes.addFlashAttribute("error", "Product name cannot be empty and quantity must be at least 0");
+        if (!CatalogValidation.isValid(product)) {
+            createRejected.increment();
+            redirectAttributes.addFlashAttribute("error", CatalogValidation.INVALID_PRODUCT);
             return "redirect:list";
         }
         productService.create(product);
         return "redirect:list";
     }
 
+    /**
+     * Creates products from a CSV (header row with productName, productQuantity and an
+     * optional productId) or NDJSON body. The body is parsed while it is received.
+     */
+    @PostMapping(value = "/import", consumes = {ImportFormats.CSV, ImportFormats.NDJSON})
+    @ResponseBody
+    public ImportSummary importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                        InputStream body) throws IOException {
+        try (ImportRecordReader records = ImportFormats.open(contentType, body)) {
+            return catalogImportService.importProducts(records);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Streams every product as CSV or NDJSON ({@code format=ndjson}), in the layout
+     * {@code /product/import} reads.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(value="format", defaultValue="csv") String format,
+            @RequestHeader(value=HttpHeaders.ACCEPT_ENCODING, required=false) String acceptEncoding) {
+        return ExportResponses.download("products", format, acceptEncoding, catalogExportService::exportProducts);
+    }
+
     @GetMapping("/edit/{id}")
-    public String editProductPage(@PathVariable("id") String id, Model model, RedirectAttributes redirectAttributes) {
+    public String editProductPage(@PathVariable("id") String id, Model model, RedirectAttributes redirectAttributes,
+                                  ServletWebRequest request) {
+        ModificationStamp stamp = productService.modificationStamp();
         Product product = productService.findById(id);
         if (product == null) {
+            editPageNotFound.increment();
             redirectAttributes.addFlashAttribute("error", "Product not found");
             return "redirect:/product/list";
         }
+        if (ConditionalRequests.isNotModified(request, stamp)) {
+            return null;
+        }
         model.addAttribute("product", product);
         return "editProduct";
     }
@@ -60,17 +139,26 @@ public class ProductController {
         // Check if product exists
         Product existingProduct = productService.findById(id);
         if (existingProduct == null) {
+            editNotFound.increment();
             redirectAttributes.addFlashAttribute("error", "Product not found");
             return "redirect:/product/list";
         }
         
         // Validation
-        if (product.getProductName() == null || product.getProductName().trim().isEmpty() || product.getProductQuantity() < 0) {
-            redirectAttributes.addFlashAttribute("error", "Product name cannot be empty and quantity must be at least 0");
+        if (!CatalogValidation.isValid(product)) {
+            editRejected.increment();
+            redirectAttributes.addFlashAttribute("error", CatalogValidation.INVALID_PRODUCT);
             return "redirect:/product/list";
         }
         
-        productService.update(id, product);
+        try {
+            if (productService.update(id, product) == null) {
+                editNotFound.increment();
+                redirectAttributes.addFlashAttribute("error", "Product not found");
+            }
+        } catch (VersionConflictException e) {
+            redirectAttributes.addFlashAttribute("error", "Product was changed by someone else, please reload it and try again");
+        }
         return "redirect:/product/list";
     }
 
@@ -78,6 +166,7 @@ public class ProductController {
     public String deleteProduct(@PathVariable( value = "id", required=false) String id, RedirectAttributes redirectAttributes) {
         Product existingProduct = productService.findById(id);
         if (existingProduct == null) {
+            deleteNotFound.increment();
             redirectAttributes.addFlashAttribute("error", "Product not found");
             return "redirect:/product/list";
         }
@@ -86,13 +175,90 @@ public class ProductController {
         return "redirect:/product/list";
     }
 
+    /**
+     * Lists products in pages, in creation order or, with {@code sort}, by quantity
+     * ({@code minQuantity}/{@code maxQuantity}, inclusive) or by name (from {@code from} up to
+     * the names starting with {@code to}). Ranges only apply to the order they belong to.
+     */
     @GetMapping("/list")
-    public String productListPage(@RequestParam(value="error", required=false) String error, Model model) {
-        List<Product> allProducts =  productService.findAll();
-        model.addAttribute("products", allProducts);
+    public String productListPage(@RequestParam(value="error", required=false) String error,
+                                  @RequestParam(value="after", required=false) String after,
+                                  @RequestParam(value="size", defaultValue="" + DEFAULT_PAGE_SIZE) int size,
+                                  @RequestParam(value="sort", defaultValue="CREATED") ProductSort sort,
+                                  @RequestParam(value="desc", defaultValue="false") boolean descending,
+                                  @RequestParam(value="minQuantity", required=false) Integer minQuantity,
+                                  @RequestParam(value="maxQuantity", required=false) Integer maxQuantity,
+                                  @RequestParam(value="from", required=false) String fromName,
+                                  @RequestParam(value="to", required=false) String toName,
+                                  Model model, ServletWebRequest request) {
+        // A flash message is only shown once, so that page must always be rendered
+        if (!model.containsAttribute("error")
+                && ConditionalRequests.isNotModified(request, productService.modificationStamp())) {
+            return null;
+        }
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        String from = fromName == null || fromName.isBlank() ? null : fromName;
+        String to = toName == null || toName.isBlank() ? null : toName;
+        Page<Product> page;
+        try {
+            page = findListPage(sort, descending, minQuantity, maxQuantity, from, to, after, pageSize);
+        } catch (IllegalArgumentException e) {
+            error = "Invalid page cursor";
+            after = null;
+            page = findListPage(sort, descending, minQuantity, maxQuantity, from, to, null, pageSize);
+        }
+        model.addAttribute("products", page.getItems());
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("pageSize", pageSize);
+        model.addAttribute("firstPage", after == null);
+        model.addAttribute("sort", sort);
+        model.addAttribute("sorts", ProductSort.values());
+        model.addAttribute("desc", descending);
+        model.addAttribute("minQuantity", minQuantity);
+        model.addAttribute("maxQuantity", maxQuantity);
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
         if (error != null) {
             model.addAttribute("error", error);
         }
         return "productList";
     }
+
+    private Page<Product> findListPage(ProductSort sort, boolean descending, Integer minQuantity,
+                                       Integer maxQuantity, String from, String to, String after, int size) {
+        return switch (sort) {
+            case QUANTITY -> productService.findPageByQuantity(minQuantity, maxQuantity, descending, after, size);
+            case NAME -> productService.findPageByName(from, to, descending, after, size);
+            case CREATED -> productService.findPage(after, size);
+        };
+    }
+
+    @GetMapping("/search")
+    @ResponseBody
+    public List<Product> searchProducts(@RequestParam(value="q", required=false) String query,
+                                        @RequestParam(value="limit", defaultValue="" + DEFAULT_SEARCH_LIMIT) int limit) {
+        return productService.searchByName(query, Math.clamp(limit, 1, MAX_SEARCH_LIMIT));
+    }
+
+    /**
+     * A write that is applied, and already seen by other readers, but not stored yet.
+     */
+    @ExceptionHandler(ChangeNotDurableException.class)
+    public String changeNotDurable(ChangeNotDurableException e, HttpServletRequest request) {
+        RequestContextUtils.getOutputFlashMap(request).put("error", e.getMessage());
+        return "redirect:/product/list";
+    }
+
+    @GetMapping("/list/all")
+    public String productFullListPage(Model model, ServletWebRequest request) {
+        if (!model.containsAttribute("error")
+                && ConditionalRequests.isNotModified(request, productService.modificationStamp())) {
+            return null;
+        }
+        // Rows are pulled lazily while Thymeleaf writes to the response, so the page is never built in memory
+        model.addAttribute("products", productService.iterateAll());
+        model.addAttribute("firstPage", true);
+        model.addAttribute("fullList", true);
+        return "productList";
+    }
 }
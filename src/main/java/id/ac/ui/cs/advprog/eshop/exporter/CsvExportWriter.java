@@ -0,0 +1,81 @@
+package id.ac.ui.cs.advprog.eshop.exporter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV with a header row. Values are quoted only when they contain a separator,
+ * a quote or a line break, and records end in CRLF.
+ */
+public class CsvExportWriter implements ExportRecordWriter {
+    private final Writer writer;
+    private boolean firstValue = true;
+
+    public CsvExportWriter(OutputStream out, List<String> columns) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), ExportFormat.BUFFER_SIZE);
+        for (String column : columns) {
+            value(column);
+        }
+        endRecord();
+    }
+
+    @Override
+    public void value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    @Override
+    public void value(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+    }
+
+    @Override
+    public void endRecord() throws IOException {
+        writer.write("\r\n");
+        firstValue = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void separate() throws IOException {
+        if (!firstValue) {
+            writer.write(',');
+        }
+        firstValue = false;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
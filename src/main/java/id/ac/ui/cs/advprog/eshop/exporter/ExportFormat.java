@@ -0,0 +1,45 @@
+package id.ac.ui.cs.advprog.eshop.exporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+
+public enum ExportFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final String mediaType;
+    private final String fileExtension;
+
+    ExportFormat(String mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    public ExportRecordWriter open(OutputStream out, List<String> columns) throws IOException {
+        return this == CSV ? new CsvExportWriter(out, columns) : new NdjsonExportWriter(out, columns);
+    }
+
+    /**
+     * Looks a format up by its file extension, ignoring case.
+     */
+    public static ExportFormat fromName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.fileExtension.equals(name.toLowerCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + name);
+    }
+}
@@ -0,0 +1,16 @@
+package id.ac.ui.cs.advprog.eshop.exporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes an export one record at a time through fixed-size buffers. Each record gets one
+ * value per column, in the order the columns were given when the writer was opened.
+ */
+public interface ExportRecordWriter extends Closeable {
+    void value(String value) throws IOException;
+
+    void value(long value) throws IOException;
+
+    void endRecord() throws IOException;
+}
@@ -0,0 +1,63 @@
+package id.ac.ui.cs.advprog.eshop.exporter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Newline-delimited JSON: one object per record, keyed by the column names. Jackson
+ * escapes and encodes straight into its own recycled output buffer.
+ */
+public class NdjsonExportWriter implements ExportRecordWriter {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+    private final SerializedString[] columns;
+    private int column;
+
+    public NdjsonExportWriter(OutputStream out, List<String> columns) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        this.generator.setRootValueSeparator(null);
+        this.columns = columns.stream().map(SerializedString::new).toArray(SerializedString[]::new);
+    }
+
+    @Override
+    public void value(String value) throws IOException {
+        nextField();
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    @Override
+    public void value(long value) throws IOException {
+        nextField();
+        generator.writeNumber(value);
+    }
+
+    @Override
+    public void endRecord() throws IOException {
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        column = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void nextField() throws IOException {
+        if (column == 0) {
+            generator.writeStartObject();
+        }
+        generator.writeFieldName(columns[column++]);
+    }
+}
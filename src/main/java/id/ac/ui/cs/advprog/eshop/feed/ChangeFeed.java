@@ -0,0 +1,186 @@
+package id.ac.ui.cs.advprog.eshop.feed;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent;
+import org.springframework.context.event.EventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The last {@code capacity} catalog changes, numbered upwards from an origin taken from the
+ * clock, in a ring allocated up front. Sequence numbers keep growing across restarts, so an
+ * event id handed out by an earlier run is never mistaken for a change of this one.
+ *
+ * <p>Writers only store into the ring and never wait for subscribers: each subscriber reads
+ * at its own {@link Cursor}, and one that falls a full ring behind finds its next change
+ * overwritten and is told to resync instead. Slots are read without locking; a change is
+ * taken only if its slot still holds the same sequence number after it was read.
+ */
+public class ChangeFeed {
+    private final int mask;
+    private final long origin;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<CatalogChangedEvent> events;
+
+    // Orders writers, and wakes subscribers waiting for the next change
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private volatile long latest;
+
+    public ChangeFeed(int capacity) {
+        this(capacity, System.currentTimeMillis() << 20);
+    }
+
+    /**
+     * Feed whose first change gets sequence number {@code origin + 1}.
+     */
+    public ChangeFeed(int capacity, long origin) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, was " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        this.events = new AtomicReferenceArray<>(capacity);
+        this.origin = origin;
+        this.latest = origin;
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        publish(event);
+    }
+
+    /**
+     * Appends {@code event}, overwriting the oldest change once the ring is full, and
+     * returns its sequence number.
+     */
+    public long publish(CatalogChangedEvent event) {
+        lock.lock();
+        try {
+            long sequence = latest + 1;
+            int slot = (int) (sequence & mask);
+            // Readers that see 0 or a different sequence around their read discard it
+            sequences.set(slot, 0);
+            events.set(slot, event);
+            sequences.set(slot, sequence);
+            latest = sequence;
+            published.signalAll();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sequence number of the newest change, or the origin before the first one.
+     */
+    public long latestSequence() {
+        return latest;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Cursor positioned after {@code lastSeen}, so its first entry is change
+     * {@code lastSeen + 1}. Pass {@code null} to see only changes published from now on.
+     * A {@code lastSeen} this feed never handed out, such as one from before a restart, gets
+     * a resync entry first, since what the subscriber missed cannot be told.
+     */
+    public Cursor cursor(Long lastSeen) {
+        long current = latest;
+        if (lastSeen == null) {
+            return new Cursor(current + 1, false);
+        }
+        if (lastSeen < origin || lastSeen > current) {
+            return new Cursor(current + 1, true);
+        }
+        return new Cursor(lastSeen + 1, false);
+    }
+
+    /**
+     * A change and its sequence number. A {@link #resync()} entry has no event: the
+     * subscriber missed changes up to {@code sequence} and should reload what it shows.
+     */
+    public record Entry(long sequence, CatalogChangedEvent event) {
+
+        public boolean resync() {
+            return event == null;
+        }
+    }
+
+    /**
+     * One subscriber's position in the feed. Not safe for use by several threads.
+     */
+    public final class Cursor {
+        private long next;
+        private boolean resyncFirst;
+
+        private Cursor(long next, boolean resyncFirst) {
+            this.next = next;
+            this.resyncFirst = resyncFirst;
+        }
+
+        /**
+         * Returns the next change, a resync entry if that change has already been
+         * overwritten, or {@code null} when there is nothing new.
+         */
+        public Entry poll() {
+            long current = latest;
+            if (resyncFirst) {
+                resyncFirst = false;
+                next = current + 1;
+                return new Entry(current, null);
+            }
+            if (next > current) {
+                return null;
+            }
+            if (current - next < capacity()) {
+                int slot = (int) (next & mask);
+                long before = sequences.get(slot);
+                CatalogChangedEvent event = events.get(slot);
+                if (before == next && sequences.get(slot) == next) {
+                    return new Entry(next++, event);
+                }
+            }
+            // Overwritten while we were behind: skip to the newest change
+            long missedUpTo = latest;
+            next = missedUpTo + 1;
+            return new Entry(missedUpTo, null);
+        }
+
+        /**
+         * Waits up to {@code timeout} for a change this cursor has not read, and returns
+         * whether there is one.
+         */
+        public boolean await(Duration timeout) throws InterruptedException {
+            if (resyncFirst || next <= latest) {
+                return true;
+            }
+            long nanos = timeout.toNanos();
+            lock.lock();
+            try {
+                while (next > latest) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = published.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Sequence number of the change {@link #poll()} reads next.
+         */
+        public long position() {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.eshop.feed;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "eshop.feed", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(ChangeFeedProperties.class)
+public class ChangeFeedConfiguration {
+
+    @Bean
+    public ChangeFeed changeFeed(ChangeFeedProperties properties) {
+        return new ChangeFeed(properties.capacity());
+    }
+
+    @Bean(destroyMethod = "close")
+    public ChangeFeedStreams changeFeedStreams(ChangeFeed feed, ChangeFeedProperties properties) {
+        return new ChangeFeedStreams(feed, properties.heartbeatInterval(), properties.timeout(),
+                properties.maxSubscribers());
+    }
+
+    @Bean
+    public MeterBinder changeFeedMetrics(ChangeFeedStreams streams) {
+        return registry -> Gauge.builder("eshop.feed.subscribers", streams, ChangeFeedStreams::activeSubscribers)
+                .description("Open change feed streams")
+                .register(registry);
+    }
+}
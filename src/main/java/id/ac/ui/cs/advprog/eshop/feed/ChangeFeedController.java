@@ -0,0 +1,64 @@
+package id.ac.ui.cs.advprog.eshop.feed;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Pushes catalog changes as Server-Sent Events, so a dashboard reloads the items that
+ * changed instead of polling the whole list. Each event is named {@code created},
+ * {@code updated} or {@code deleted} and carries the catalog and item ids, none when the
+ * changed items are unknown and the catalog's list should be reloaded; {@code resync}
+ * means changes were missed and everything should be reloaded. Event ids are sequence
+ * numbers, so a reconnecting {@code EventSource} continues where it left off.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "eshop.feed", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ChangeFeedController {
+    private final ChangeFeedStreams streams;
+
+    public ChangeFeedController(ChangeFeedStreams streams) {
+        this.streams = streams;
+    }
+
+    @GetMapping("/api/changes")
+    public ResponseEntity<?> changes(@RequestParam(value = "catalog", required = false) String catalog,
+                                     @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Set<Catalog> catalogs = EnumSet.allOf(Catalog.class);
+        if (catalog != null) {
+            try {
+                catalogs = EnumSet.of(Catalog.valueOf(catalog.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return problem(HttpStatus.BAD_REQUEST, "Unknown catalog " + catalog);
+            }
+        }
+        Long lastSeen = null;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                lastSeen = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                return problem(HttpStatus.BAD_REQUEST, "Last-Event-ID must be a change sequence number");
+            }
+        }
+        SseEmitter emitter = streams.subscribe(catalogs, lastSeen);
+        if (emitter == null) {
+            return problem(HttpStatus.SERVICE_UNAVAILABLE, "Too many change feed subscribers");
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static ResponseEntity<ProblemDetail> problem(HttpStatus status, String detail) {
+        return ResponseEntity.of(ProblemDetail.forStatusAndDetail(status, detail)).build();
+    }
+}
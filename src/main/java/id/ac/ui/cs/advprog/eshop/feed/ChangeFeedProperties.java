@@ -0,0 +1,20 @@
+package id.ac.ui.cs.advprog.eshop.feed;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for the change feed. {@code capacity} (a power of two) is how many changes a
+ * subscriber may fall behind before it is told to resync; a stream is closed after
+ * {@code timeout}, and clients reconnect with {@code Last-Event-ID} to continue.
+ */
+@ConfigurationProperties(prefix = "eshop.feed")
+public record ChangeFeedProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("4096") int capacity,
+        @DefaultValue("15s") Duration heartbeatInterval,
+        @DefaultValue("30m") Duration timeout,
+        @DefaultValue("1000") int maxSubscribers) {
+}
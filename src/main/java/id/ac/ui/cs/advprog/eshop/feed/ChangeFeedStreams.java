@@ -0,0 +1,137 @@
+package id.ac.ui.cs.advprog.eshop.feed;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams the {@link ChangeFeed} to Server-Sent Events subscribers, each on its own virtual
+ * thread. A subscriber that writes slowly only delays itself; once it is a full ring behind
+ * it gets a {@code resync} event with the sequence number it caught up to.
+ */
+public class ChangeFeedStreams implements AutoCloseable {
+    private final ChangeFeed feed;
+    private final Duration heartbeatInterval;
+    private final Duration timeout;
+    private final int maxSubscribers;
+    private final Semaphore subscribers;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("change-feed-", 0).factory());
+
+    public ChangeFeedStreams(ChangeFeed feed, Duration heartbeatInterval, Duration timeout, int maxSubscribers) {
+        this.feed = feed;
+        this.heartbeatInterval = heartbeatInterval;
+        this.timeout = timeout;
+        this.maxSubscribers = maxSubscribers;
+        this.subscribers = new Semaphore(maxSubscribers);
+    }
+
+    /**
+     * Data of a change event: what happened to which items of which catalog.
+     */
+    public record ChangeMessage(String catalog, String change, Collection<String> ids) {
+
+        static ChangeMessage of(CatalogChangedEvent event) {
+            return new ChangeMessage(name(event.catalog()), name(event.change()), event.ids());
+        }
+    }
+
+    /**
+     * Data of a resync event: the subscriber missed changes and should reload everything
+     * up to {@code sequence}.
+     */
+    public record ResyncMessage(long sequence) {
+    }
+
+    /**
+     * Opens a stream of the changes to {@code catalogs} after {@code lastEventId}, or after
+     * the newest change when it is {@code null}. Returns {@code null} when the subscriber
+     * limit has been reached.
+     */
+    public SseEmitter subscribe(Set<Catalog> catalogs, Long lastEventId) {
+        if (!subscribers.tryAcquire()) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscription subscription = new Subscription(emitter, catalogs, feed.cursor(lastEventId));
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        try {
+            executor.execute(subscription::run);
+        } catch (RuntimeException e) {
+            subscribers.release();
+            throw e;
+        }
+        return emitter;
+    }
+
+    public int activeSubscribers() {
+        return maxSubscribers - subscribers.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private final class Subscription {
+        private final SseEmitter emitter;
+        private final Set<Catalog> catalogs;
+        private final ChangeFeed.Cursor cursor;
+        private volatile boolean closed;
+
+        Subscription(SseEmitter emitter, Set<Catalog> catalogs, ChangeFeed.Cursor cursor) {
+            this.emitter = emitter;
+            this.catalogs = catalogs;
+            this.cursor = cursor;
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        void run() {
+            try {
+                // Sends the headers right away, so the client sees the stream open
+                emitter.send(SseEmitter.event().comment("after " + (cursor.position() - 1)));
+                while (!closed) {
+                    ChangeFeed.Entry entry = cursor.poll();
+                    if (entry == null) {
+                        if (!cursor.await(heartbeatInterval)) {
+                            emitter.send(SseEmitter.event().comment("heartbeat"));
+                        }
+                    } else if (entry.resync()) {
+                        emitter.send(SseEmitter.event().id(Long.toString(entry.sequence())).name("resync")
+                                .data(new ResyncMessage(entry.sequence()), MediaType.APPLICATION_JSON));
+                    } else if (catalogs.contains(entry.event().catalog())) {
+                        emitter.send(SseEmitter.event().id(Long.toString(entry.sequence()))
+                                .name(name(entry.event().change()))
+                                .data(ChangeMessage.of(entry.event()), MediaType.APPLICATION_JSON));
+                    }
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the response timed out; the container completes it
+            } catch (InterruptedException e) {
+                emitter.complete();
+            } finally {
+                subscribers.release();
+            }
+        }
+    }
+}
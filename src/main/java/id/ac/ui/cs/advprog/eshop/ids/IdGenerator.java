@@ -0,0 +1,11 @@
+package id.ac.ui.cs.advprog.eshop.ids;
+
+/**
+ * Makes ids for new products and cars, used by the repositories for items created without
+ * one. Implementations must be thread-safe and should
+ * return canonical lowercase UUID strings, which the repositories store as two longs.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    String nextId();
+}
@@ -0,0 +1,18 @@
+package id.ac.ui.cs.advprog.eshop.ids;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(IdGeneratorProperties.class)
+public class IdGeneratorConfiguration {
+
+    @Bean
+    public IdGenerator idGenerator(IdGeneratorProperties properties) {
+        return switch (properties.generator()) {
+            case TIME_ORDERED -> new TimeOrderedIdGenerator();
+            case RANDOM -> new RandomIdGenerator();
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package id.ac.ui.cs.advprog.eshop.ids;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Chooses how ids of new products and cars are made. {@code time-ordered} (UUIDv7) is cheap
+ * under concurrent creates; {@code random} (UUIDv4 from SecureRandom) cannot be guessed.
+ */
+@ConfigurationProperties(prefix = "eshop.id")
+public record IdGeneratorProperties(@DefaultValue("time-ordered") Type generator) {
+
+    public enum Type {
+        TIME_ORDERED,
+        RANDOM
+    }
+}
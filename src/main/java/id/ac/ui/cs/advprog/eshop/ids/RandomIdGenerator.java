@@ -0,0 +1,15 @@
+package id.ac.ui.cs.advprog.eshop.ids;
+
+import java.util.UUID;
+
+/**
+ * Version 4 UUIDs from {@link UUID#randomUUID()}, for deployments that want ids nobody can
+ * guess. Every call goes through one shared {@code SecureRandom}.
+ */
+public class RandomIdGenerator implements IdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+}
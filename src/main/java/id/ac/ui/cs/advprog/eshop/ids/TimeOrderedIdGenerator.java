@@ -0,0 +1,39 @@
+package id.ac.ui.cs.advprog.eshop.ids;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version 7 UUIDs (RFC 9562): 48 bits of Unix time in milliseconds followed by 74 random
+ * bits. Ids made in a later millisecond sort after earlier ones, so new products land next
+ * to each other in sorted indexes. The random bits come from {@link ThreadLocalRandom},
+ * which needs no shared lock, unlike the {@code SecureRandom} behind
+ * {@link UUID#randomUUID()}. The ids are unique but not unguessable.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_RFC_9562 = 0x8000_0000_0000_0000L;
+
+    private final Clock clock;
+
+    public TimeOrderedIdGenerator() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Takes the time of every id from {@code clock}.
+     */
+    public TimeOrderedIdGenerator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long randomBits = random.nextLong();
+        long mostSignificantBits = (clock.millis() << 16) | VERSION_7 | (randomBits & 0x0fffL);
+        long leastSignificantBits = VARIANT_RFC_9562 | (random.nextLong() >>> 2);
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+}
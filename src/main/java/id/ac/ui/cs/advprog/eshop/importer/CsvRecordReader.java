@@ -0,0 +1,139 @@
+package id.ac.ui.cs.advprog.eshop.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RFC 4180 CSV with a header row naming the columns. Fields may be quoted, quoted fields
+ * may contain separators, line breaks and doubled quotes, and lines may end in LF or CRLF.
+ * The input is read through a fixed buffer; blank lines are skipped.
+ */
+public class CsvRecordReader implements ImportRecordReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int END_OF_INPUT = -1;
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long line = 1;
+
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private long recordLine;
+
+    public CsvRecordReader(Reader reader) throws IOException {
+        this.reader = reader;
+        if (readRecord()) {
+            for (int i = 0; i < fields.size(); i++) {
+                String name = fields.get(i);
+                if (i == 0 && name.startsWith(BYTE_ORDER_MARK)) {
+                    name = name.substring(1);
+                }
+                columns.putIfAbsent(name.trim(), i);
+            }
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        return readRecord();
+    }
+
+    @Override
+    public String get(String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    @Override
+    public long lineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean readRecord() throws IOException {
+        fields.clear();
+        int c = read();
+        // Skip blank lines between records
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == END_OF_INPUT) {
+            return false;
+        }
+        recordLine = line;
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != END_OF_INPUT) {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+            if (c != ',') {
+                return true;
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Reads a quoted field whose opening quote was just consumed, and returns the character
+     * after the closing quote.
+     */
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == END_OF_INPUT) {
+                throw new InvalidRecordException(recordLine, "Quoted field is not closed");
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    if (c != ',' && c != '\n' && c != '\r' && c != END_OF_INPUT) {
+                        skipRestOfLine(c);
+                        throw new InvalidRecordException(recordLine, "Unexpected character after quoted field");
+                    }
+                    return c;
+                }
+            }
+            field.append((char) c);
+        }
+    }
+
+    private void skipRestOfLine(int c) throws IOException {
+        while (c != '\n' && c != END_OF_INPUT) {
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return END_OF_INPUT;
+            }
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+}
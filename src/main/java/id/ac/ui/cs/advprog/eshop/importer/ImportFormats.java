@@ -0,0 +1,41 @@
+package id.ac.ui.cs.advprog.eshop.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Media types accepted by the bulk import endpoints.
+ */
+public final class ImportFormats {
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private ImportFormats() {
+    }
+
+    /**
+     * Opens {@code body} in the format named by a Content-Type header value. Text is
+     * decoded with the header's charset, or UTF-8 when it has none.
+     */
+    public static ImportRecordReader open(String contentType, InputStream body) throws IOException {
+        String[] parts = contentType.split(";");
+        String type = parts[0].trim().toLowerCase(Locale.ROOT);
+        Charset charset = StandardCharsets.UTF_8;
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.regionMatches(true, 0, "charset=", 0, 8)) {
+                charset = Charset.forName(parameter.substring(8).replace("\"", "").trim());
+            }
+        }
+        InputStreamReader reader = new InputStreamReader(body, charset);
+        return switch (type) {
+            case CSV -> new CsvRecordReader(reader);
+            case NDJSON -> new NdjsonRecordReader(reader);
+            default -> throw new IllegalArgumentException("Unsupported import format: " + type);
+        };
+    }
+}
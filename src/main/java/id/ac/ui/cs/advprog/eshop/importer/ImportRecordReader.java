@@ -0,0 +1,30 @@
+package id.ac.ui.cs.advprog.eshop.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads an import one record at a time, so the input never has to fit in memory.
+ * Values are looked up by column name and are only valid until the next call to
+ * {@link #next()}.
+ */
+public interface ImportRecordReader extends Closeable {
+
+    /**
+     * Moves to the next record and returns {@code false} at the end of the input. A record
+     * that cannot be parsed is skipped with an {@link InvalidRecordException}; reading can
+     * continue with the record after it.
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Returns the value of {@code column} in the current record, or {@code null} if the
+     * record has no such value.
+     */
+    String get(String column);
+
+    /**
+     * Line of the input where the current record starts, counting from 1.
+     */
+    long lineNumber();
+}
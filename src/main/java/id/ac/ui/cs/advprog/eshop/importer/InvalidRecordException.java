@@ -0,0 +1,18 @@
+package id.ac.ui.cs.advprog.eshop.importer;
+
+/**
+ * A record that cannot be imported, either because it could not be parsed or because
+ * its values are not valid.
+ */
+public class InvalidRecordException extends RuntimeException {
+    private final long lineNumber;
+
+    public InvalidRecordException(long lineNumber, String message) {
+        super(message);
+        this.lineNumber = lineNumber;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
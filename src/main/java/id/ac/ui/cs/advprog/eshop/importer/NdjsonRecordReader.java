@@ -0,0 +1,79 @@
+package id.ac.ui.cs.advprog.eshop.importer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Newline-delimited JSON: one flat object per line. Strings, numbers and booleans are
+ * read as text, nested objects and arrays are ignored. Each line is parsed on its own, so
+ * a damaged line only loses that record.
+ */
+public class NdjsonRecordReader implements ImportRecordReader {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final BufferedReader reader;
+    private final Map<String, String> values = new HashMap<>();
+    private long line;
+    private long recordLine;
+
+    public NdjsonRecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader bufferedReader ? bufferedReader : new BufferedReader(reader, 1 << 16);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        values.clear();
+        String text;
+        do {
+            text = reader.readLine();
+            line++;
+            if (text == null) {
+                return false;
+            }
+        } while (text.isBlank());
+        recordLine = line;
+        try (JsonParser parser = JSON_FACTORY.createParser(text)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidRecordException(recordLine, "Line is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value.isScalarValue()) {
+                    values.put(name, value == JsonToken.VALUE_NULL ? null : parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.nextToken() != null) {
+                throw new InvalidRecordException(recordLine, "Only one JSON object is allowed per line");
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidRecordException(recordLine, "Invalid JSON: " + e.getOriginalMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public String get(String column) {
+        return values.get(column);
+    }
+
+    @Override
+    public long lineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
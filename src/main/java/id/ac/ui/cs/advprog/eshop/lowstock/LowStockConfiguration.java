@@ -0,0 +1,41 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(LowStockProperties.class)
+public class LowStockConfiguration {
+
+    @Bean
+    public LowStockNotifications lowStockNotifications(LowStockProperties properties) {
+        return new LowStockNotifications(properties.notifications());
+    }
+
+    @Bean
+    public LowStockLogSink lowStockLogSink() {
+        return new LowStockLogSink();
+    }
+
+    @Bean(destroyMethod = "close")
+    public LowStockWatcher lowStockWatcher(LowStockProperties properties, List<LowStockListener> listeners) {
+        return new LowStockWatcher(properties.threshold(), properties.queueCapacity(), listeners);
+    }
+
+    @Bean
+    public MeterBinder lowStockMetrics(LowStockWatcher watcher) {
+        return registry -> {
+            FunctionCounter.builder("eshop.low-stock.crossings", watcher, LowStockWatcher::deliveredCrossings)
+                    .description("Low-stock threshold crossings delivered to listeners")
+                    .register(registry);
+            FunctionCounter.builder("eshop.low-stock.dropped", watcher, LowStockWatcher::droppedCrossings)
+                    .description("Low-stock threshold crossings dropped because the queue was full")
+                    .register(registry);
+        };
+    }
+}
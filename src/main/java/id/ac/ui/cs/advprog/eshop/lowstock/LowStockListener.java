@@ -0,0 +1,10 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+/**
+ * Receives low-stock crossings from {@link LowStockWatcher}, one at a time on its
+ * dispatcher thread, in the order they happened.
+ */
+@FunctionalInterface
+public interface LowStockListener {
+    void stockCrossed(StockCrossing crossing);
+}
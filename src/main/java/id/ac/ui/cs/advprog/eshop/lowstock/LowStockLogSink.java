@@ -0,0 +1,23 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes every crossing to the application log: a warning when a product runs low, an
+ * info line when it is restocked.
+ */
+public class LowStockLogSink implements LowStockListener {
+    private static final Logger log = LoggerFactory.getLogger(LowStockLogSink.class);
+
+    @Override
+    public void stockCrossed(StockCrossing crossing) {
+        if (crossing.low()) {
+            log.warn("Product {} ({}) is low on stock: {} left, threshold {}", crossing.productId(),
+                    crossing.productName(), crossing.quantity(), crossing.threshold());
+        } else {
+            log.info("Product {} ({}) is restocked: {} in stock, threshold {}", crossing.productId(),
+                    crossing.productName(), crossing.quantity(), crossing.threshold());
+        }
+    }
+}
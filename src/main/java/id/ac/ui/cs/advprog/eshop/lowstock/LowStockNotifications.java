@@ -0,0 +1,35 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the most recent crossings for the in-app notifications page. Older ones are
+ * forgotten once {@code capacity} newer ones have arrived.
+ */
+public class LowStockNotifications implements LowStockListener {
+    private final int capacity;
+    private final Deque<StockCrossing> recent;
+
+    public LowStockNotifications(int capacity) {
+        this.capacity = capacity;
+        this.recent = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public synchronized void stockCrossed(StockCrossing crossing) {
+        if (recent.size() == capacity) {
+            recent.removeLast();
+        }
+        recent.addFirst(crossing);
+    }
+
+    /**
+     * The kept crossings, newest first.
+     */
+    public synchronized List<StockCrossing> recent() {
+        return new ArrayList<>(recent);
+    }
+}
@@ -0,0 +1,20 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+
+@Controller
+public class LowStockNotificationsController {
+    private final LowStockNotifications notifications;
+
+    public LowStockNotificationsController(LowStockNotifications notifications) {
+        this.notifications = notifications;
+    }
+
+    @GetMapping("/notifications")
+    public String notificationsPage(Model model) {
+        model.addAttribute("notifications", notifications.recent());
+        return "notifications";
+    }
+}
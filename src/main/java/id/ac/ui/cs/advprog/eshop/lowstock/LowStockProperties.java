@@ -0,0 +1,16 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for low-stock notifications. {@code threshold} applies to every product without
+ * a threshold of its own; 0 turns it off. {@code queueCapacity} crossings may wait for
+ * delivery, and the notifications page keeps the last {@code notifications} of them.
+ */
+@ConfigurationProperties(prefix = "eshop.low-stock")
+public record LowStockProperties(
+        @DefaultValue("1") int threshold,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("200") int notifications) {
+}
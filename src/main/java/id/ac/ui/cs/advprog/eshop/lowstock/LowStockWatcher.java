@@ -0,0 +1,197 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.QuantityListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects products whose quantity crosses their low-stock threshold, a threshold of their
+ * own or else the global one. A product is low on stock while its quantity is below the
+ * threshold. Every quantity change is checked against the one threshold that applies, in
+ * constant time and without scanning the catalog; only an actual crossing, in either
+ * direction, produces a {@link StockCrossing}. Changing a product's threshold checks its
+ * current quantity the same way, so a threshold set above it is reported at once.
+ *
+ * <p>Crossings are queued and handed to the listeners on a dispatcher thread, so a slow
+ * listener never holds up a write. When the queue is full, further crossings are dropped
+ * and counted rather than blocking the writer.
+ */
+public class LowStockWatcher implements QuantityListener, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(LowStockWatcher.class);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final int globalThreshold;
+    // Only products with a threshold of their own have an entry
+    private final ConcurrentHashMap<String, Integer> thresholds = new ConcurrentHashMap<>();
+    private final List<LowStockListener> listeners;
+    private final BlockingQueue<StockCrossing> crossings;
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread dispatcher;
+
+    /**
+     * Starts the dispatcher thread, unless there are no listeners to dispatch to.
+     */
+    public LowStockWatcher(int globalThreshold, int queueCapacity, List<LowStockListener> listeners) {
+        this.globalThreshold = requireValid(globalThreshold);
+        this.listeners = List.copyOf(listeners);
+        this.crossings = new ArrayBlockingQueue<>(queueCapacity);
+        this.dispatcher = listeners.isEmpty() ? null
+                : Thread.ofPlatform().name("low-stock-dispatcher").daemon().start(this::dispatch);
+    }
+
+    /**
+     * A watcher that keeps thresholds but reports nothing.
+     */
+    public static LowStockWatcher disabled() {
+        return new LowStockWatcher(0, 1, List.of());
+    }
+
+    public int globalThreshold() {
+        return globalThreshold;
+    }
+
+    /**
+     * Gives {@code product} a threshold of its own, reporting a crossing if its current
+     * quantity is low under one of the old and new threshold but not the other. Callers keep
+     * the product from changing meanwhile, so no quantity change is checked against the
+     * wrong threshold.
+     */
+    public void setThreshold(Product product, int threshold) {
+        requireValid(threshold);
+        int previous = thresholdFor(product.getProductId());
+        thresholds.put(product.getProductId(), threshold);
+        thresholdChanged(product, previous, threshold);
+    }
+
+    /**
+     * Makes {@code product} use the global threshold again, reporting a crossing like
+     * {@link #setThreshold(Product, int)}.
+     */
+    public void removeThreshold(Product product) {
+        Integer previous = thresholds.remove(product.getProductId());
+        if (previous != null) {
+            thresholdChanged(product, previous, globalThreshold);
+        }
+    }
+
+    /**
+     * Forgets the threshold of a product that no longer exists.
+     */
+    public void removeThreshold(String productId) {
+        thresholds.remove(productId);
+    }
+
+    /**
+     * The threshold that applies to a product.
+     */
+    public int thresholdFor(String productId) {
+        return thresholds.getOrDefault(productId, globalThreshold);
+    }
+
+    public boolean hasOwnThreshold(String productId) {
+        return thresholds.containsKey(productId);
+    }
+
+    @Override
+    public void quantityChanged(Product previous, Product current) {
+        int threshold = thresholdFor(current.getProductId());
+        report(current, previous.getProductQuantity(), previous.getProductQuantity() < threshold, threshold);
+    }
+
+    private void thresholdChanged(Product product, int previousThreshold, int threshold) {
+        int quantity = product.getProductQuantity();
+        report(product, quantity, quantity < previousThreshold, threshold);
+    }
+
+    /**
+     * Queues a crossing if {@code current} is low under {@code threshold} and was not
+     * before, or the other way round.
+     */
+    private void report(Product current, int previousQuantity, boolean wasLow, int threshold) {
+        if (dispatcher == null) {
+            return;
+        }
+        boolean low = current.getProductQuantity() < threshold;
+        if (wasLow == low) {
+            return;
+        }
+        StockCrossing crossing = new StockCrossing(current.getProductId(), current.getProductName(),
+                previousQuantity, current.getProductQuantity(), threshold, low, Instant.now());
+        if (!crossings.offer(crossing)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Number of crossings handed to the listeners so far.
+     */
+    public long deliveredCrossings() {
+        return delivered.sum();
+    }
+
+    /**
+     * Number of crossings lost because the queue was full.
+     */
+    public long droppedCrossings() {
+        return dropped.sum();
+    }
+
+    private void dispatch() {
+        try {
+            while (true) {
+                deliver(crossings.take());
+            }
+        } catch (InterruptedException e) {
+            // Closing: hand over what is already queued, then stop
+            StockCrossing crossing;
+            while ((crossing = crossings.poll()) != null) {
+                deliver(crossing);
+            }
+        }
+    }
+
+    private void deliver(StockCrossing crossing) {
+        for (LowStockListener listener : listeners) {
+            try {
+                listener.stockCrossed(crossing);
+            } catch (RuntimeException e) {
+                log.warn("Low-stock listener {} failed for product {}", listener, crossing.productId(), e);
+            }
+        }
+        delivered.increment();
+    }
+
+    private static int requireValid(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("A low-stock threshold cannot be negative");
+        }
+        return threshold;
+    }
+
+    /**
+     * Delivers the crossings still queued and stops the dispatcher thread.
+     */
+    @Override
+    public void close() {
+        if (dispatcher == null) {
+            return;
+        }
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import java.time.Instant;
+
+/**
+ * A product's quantity moving across its low-stock threshold: below it ({@code low}), or
+ * back to it or above. When the threshold itself moved, {@code previousQuantity} equals
+ * {@code quantity}.
+ */
+public record StockCrossing(String productId, String productName, int previousQuantity, int quantity,
+                            int threshold, boolean low, Instant at) {
+}
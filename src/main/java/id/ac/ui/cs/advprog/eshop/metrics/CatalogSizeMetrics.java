@@ -0,0 +1,35 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the number of stored products and cars as {@code eshop.repository.size}. The
+ * gauges read the repositories' map sizes when scraped, so writes pay nothing for them.
+ */
+public class CatalogSizeMetrics implements MeterBinder {
+    static final String SIZE = "eshop.repository.size";
+
+    private final ProductRepository productRepository;
+    private final CarRepository carRepository;
+
+    public CatalogSizeMetrics(ProductRepository productRepository, CarRepository carRepository) {
+        this.productRepository = productRepository;
+        this.carRepository = carRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(SIZE, productRepository, ProductRepository::size)
+                .tag("catalog", "product")
+                .description("Number of stored products")
+                .register(registry);
+        Gauge.builder(SIZE, carRepository, CarRepository::size)
+                .tag("catalog", "car")
+                .description("Number of stored cars")
+                .register(registry);
+    }
+}
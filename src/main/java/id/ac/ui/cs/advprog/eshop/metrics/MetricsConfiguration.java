@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Application meters beyond the ones Spring Boot registers. Service method timers come from
+ * the {@code @Timed} annotations on the service implementations.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfiguration {
+
+    @Bean
+    public CatalogSizeMetrics catalogSizeMetrics(ProductRepository productRepository, CarRepository carRepository) {
+        return new CatalogSizeMetrics(productRepository, carRepository);
+    }
+
+    @Bean
+    public WebMvcConfigurer viewRenderTiming(MeterRegistry registry) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry interceptors) {
+                interceptors.addInterceptor(new ViewRenderTimer(registry));
+            }
+        };
+    }
+}
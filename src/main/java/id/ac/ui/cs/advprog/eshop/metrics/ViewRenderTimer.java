@@ -0,0 +1,53 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Times template rendering on its own as {@code eshop.view.render}, tagged with the view
+ * name. Rendering happens between {@link #postHandle} and {@link #afterCompletion}, so the
+ * controller and service time already recorded by other timers is not counted twice.
+ * Redirects and responses without a view are not timed.
+ */
+public class ViewRenderTimer implements HandlerInterceptor {
+    static final String RENDER = "eshop.view.render";
+
+    private static final String SAMPLE_ATTRIBUTE = ViewRenderTimer.class.getName() + ".sample";
+    private static final String VIEW_ATTRIBUTE = ViewRenderTimer.class.getName() + ".view";
+
+    private final MeterRegistry registry;
+
+    public ViewRenderTimer(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        if (modelAndView == null || modelAndView.getViewName() == null
+                || modelAndView.getViewName().startsWith("redirect:")) {
+            return;
+        }
+        request.setAttribute(VIEW_ATTRIBUTE, modelAndView.getViewName());
+        request.setAttribute(SAMPLE_ATTRIBUTE, Timer.start(registry));
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(SAMPLE_ATTRIBUTE) instanceof Timer.Sample sample)) {
+            return;
+        }
+        request.removeAttribute(SAMPLE_ATTRIBUTE);
+        sample.stop(Timer.builder(RENDER)
+                .tag("view", (String) request.getAttribute(VIEW_ATTRIBUTE))
+                .tag("exception", ex == null ? "none" : ex.getClass().getSimpleName())
+                .description("Time spent rendering a template into the response")
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
@@ -10,4 +10,5 @@ public class Car {
     private String carName;
     private String carColor;
     private int carQuantity;
+    private long version;
 }
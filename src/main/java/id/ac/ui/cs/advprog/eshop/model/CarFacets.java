@@ -0,0 +1,19 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Number of cars per color and per stock level.
+ */
+@Getter
+public class CarFacets {
+    private final Map<String, Integer> colorCounts;
+    private final Map<StockLevel, Integer> stockLevelCounts;
+
+    public CarFacets(Map<String, Integer> colorCounts, Map<StockLevel, Integer> stockLevelCounts) {
+        this.colorCounts = colorCounts;
+        this.stockLevelCounts = stockLevelCounts;
+    }
+}
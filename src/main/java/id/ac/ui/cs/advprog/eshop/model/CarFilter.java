@@ -0,0 +1,24 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Attribute filter for car listings. A {@code null} color matches every color and an
+ * empty set of stock levels matches every quantity.
+ */
+public record CarFilter(String color, Set<StockLevel> stockLevels) {
+    public static final CarFilter NONE = new CarFilter(null, Set.of());
+
+    public CarFilter {
+        stockLevels = Set.copyOf(stockLevels);
+    }
+
+    public static CarFilter inStock(String color) {
+        return new CarFilter(color, EnumSet.of(StockLevel.LOW, StockLevel.MEDIUM, StockLevel.HIGH));
+    }
+
+    public boolean isEmpty() {
+        return (color == null || color.isBlank()) && stockLevels.isEmpty();
+    }
+}
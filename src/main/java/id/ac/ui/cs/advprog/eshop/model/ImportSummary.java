@@ -0,0 +1,39 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Only the first {@link #MAX_REPORTED_REJECTIONS} rejected rows
+ * are listed, so the summary stays small however bad the input is.
+ */
+@Getter
+public class ImportSummary {
+    public static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private long accepted;
+    private long rejected;
+    // Accepted rows that are in the catalog but could not be stored in the database yet
+    private long notStored;
+    private final List<Rejection> rejections = new ArrayList<>();
+
+    public void accept(int count) {
+        accepted += count;
+    }
+
+    public void notStored(int count) {
+        notStored += count;
+    }
+
+    public void reject(long line, String reason) {
+        rejected++;
+        if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+            rejections.add(new Rejection(line, reason));
+        }
+    }
+
+    public record Rejection(long line, String reason) {
+    }
+}
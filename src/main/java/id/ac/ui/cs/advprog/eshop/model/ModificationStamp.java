@@ -0,0 +1,15 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+/**
+ * Point in the change history of a repository: a version that grows with every change,
+ * and the time of the latest change in epoch milliseconds.
+ */
+public record ModificationStamp(long version, long lastModified) {
+
+    /**
+     * Strong entity tag for anything rendered from the repository at this version.
+     */
+    public String etag() {
+        return Long.toString(version, 36);
+    }
+}
@@ -2,7 +2,6 @@ package id.ac.ui.cs.advprog.eshop.model;
 
 import lombok.Setter;
 import lombok.Getter;
-import java.util.UUID;
 
 @Getter
 @Setter
@@ -10,8 +9,16 @@ public class Product {
     private String productId;
     private String productName;
     private int productQuantity;
+    private long version;
 
+    // The repository gives a product without an id one when it is created
     public Product() {
-        this.productId = UUID.randomUUID().toString();
+    }
+
+    public Product(String productId, String productName, int productQuantity, long version) {
+        this.productId = productId;
+        this.productName = productName;
+        this.productQuantity = productQuantity;
+        this.version = version;
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+/**
+ * Orders of the product listing. {@code CREATED} walks the catalog in creation order, the
+ * others walk a sorted index and can be limited to a range of their value.
+ */
+public enum ProductSort {
+    CREATED,
+    QUANTITY,
+    NAME
+}
@@ -0,0 +1,8 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+/**
+ * Outcome of an atomic stock change: the product as stored after the call, and whether
+ * the change was made. A refused change leaves the product untouched.
+ */
+public record StockAdjustment(Product product, boolean applied) {
+}
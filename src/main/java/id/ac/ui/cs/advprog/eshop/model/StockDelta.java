@@ -0,0 +1,7 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+/**
+ * A change to the stock of one product: positive to add, negative to take away.
+ */
+public record StockDelta(String productId, int delta) {
+}
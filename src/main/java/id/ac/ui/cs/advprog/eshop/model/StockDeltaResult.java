@@ -0,0 +1,19 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+/**
+ * What happened to one {@link StockDelta} of a batch, with the product as stored after
+ * the batch ({@code null} when it does not exist).
+ */
+public record StockDeltaResult(String productId, Status status, Product product) {
+
+    public enum Status {
+        APPLIED,
+        NOT_FOUND,
+        // The quantity would have gone below 0
+        INSUFFICIENT_STOCK,
+        // The quantity would not fit in an int
+        OVERFLOW,
+        // Valid on its own, but another delta of an all-or-nothing batch was refused
+        ROLLED_BACK
+    }
+}
@@ -0,0 +1,31 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+/**
+ * Quantity buckets used to filter and count cars by how much stock is left.
+ */
+public enum StockLevel {
+    OUT_OF_STOCK,
+    LOW,
+    MEDIUM,
+    HIGH;
+
+    private static final int LOW_UPPER_BOUND = 10;
+    private static final int MEDIUM_UPPER_BOUND = 100;
+
+    public static StockLevel of(int quantity) {
+        if (quantity <= 0) {
+            return OUT_OF_STOCK;
+        }
+        if (quantity < LOW_UPPER_BOUND) {
+            return LOW;
+        }
+        if (quantity < MEDIUM_UPPER_BOUND) {
+            return MEDIUM;
+        }
+        return HIGH;
+    }
+
+    public boolean isInStock() {
+        return this != OUT_OF_STOCK;
+    }
+}
@@ -0,0 +1,139 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.CarJournal;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductJournal;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Keeps both repositories in a {@link JdbcCatalogStore}. On start the stored catalog is
+ * loaded into memory, where all reads are served from; afterwards every change the
+ * repositories journal is queued in a {@link WriteBehindBuffer} per catalog instead of
+ * being written while the request waits. With {@code sync} durability a repository
+ * operation waits for its changes to be committed once it has released its locks, so a
+ * batch of changes waits for its batches in the store once, and other writers meanwhile.
+ */
+public class CatalogWriteBehind implements ProductJournal, CarJournal, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CatalogWriteBehind.class);
+
+    private final WriteBehindBuffer<Product> products;
+    private final WriteBehindBuffer<Car> cars;
+    private final boolean waitForStorage;
+    // Outcomes of the batches holding the changes the current operation of a thread has made
+    private final ThreadLocal<List<CompletableFuture<Void>>> unstored = ThreadLocal.withInitial(ArrayList::new);
+
+    public CatalogWriteBehind(ProductRepository productRepository, CarRepository carRepository,
+                              JdbcCatalogStore store, JdbcPersistenceProperties properties) throws SQLException {
+        long started = System.nanoTime();
+        store.createTables();
+        long lastProductOrder = store.loadProducts(productRepository::restore);
+        long lastCarOrder = store.loadCars(carRepository::restore);
+        log.info("Loaded {} products and {} cars in {} ms", productRepository.size(), carRepository.size(),
+                (System.nanoTime() - started) / 1_000_000);
+
+        waitForStorage = properties.durability() == JdbcPersistenceProperties.Durability.SYNC;
+        products = new WriteBehindBuffer<>("product", store::writeProducts, lastProductOrder,
+                properties.batchSize(), properties.flushInterval(), waitForStorage, properties.shutdownTimeout());
+        cars = new WriteBehindBuffer<>("car", store::writeCars, lastCarOrder,
+                properties.batchSize(), properties.flushInterval(), waitForStorage, properties.shutdownTimeout());
+        productRepository.addJournal(this);
+        carRepository.addJournal(this);
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        track(products.save(product.getProductId(), product));
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        track(products.delete(productId));
+    }
+
+    @Override
+    public void carSaved(Car car) {
+        track(cars.save(car.getCarId(), car));
+    }
+
+    @Override
+    public void carDeleted(String carId) {
+        track(cars.delete(carId));
+    }
+
+    /**
+     * With {@code sync} durability, waits until every change this thread queued since its
+     * last call has been committed. A change that could not be stored stays applied and is
+     * retried, unless the database refused it; either way the caller gets a
+     * {@link ChangeNotDurableException}.
+     */
+    @Override
+    public void changesApplied() {
+        if (!waitForStorage) {
+            return;
+        }
+        List<CompletableFuture<Void>> outcomes = unstored.get();
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(outcomes.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (WriteBehindBuffer.refusesData(e.getCause())) {
+                throw new ChangeNotDurableException(
+                        "The database refused the catalog change, it is kept in memory only", e.getCause());
+            }
+            throw new ChangeNotDurableException("Could not store the catalog change yet, it will be retried",
+                    e.getCause());
+        } finally {
+            outcomes.clear();
+        }
+    }
+
+    private void track(CompletableFuture<Void> outcome) {
+        if (!waitForStorage) {
+            return;
+        }
+        // Changes queued together share an outcome, so a large batch adds only a few
+        List<CompletableFuture<Void>> outcomes = unstored.get();
+        if (outcomes.isEmpty() || outcomes.get(outcomes.size() - 1) != outcome) {
+            outcomes.add(outcome);
+        }
+    }
+
+    public int queuedProductChanges() {
+        return products.queuedChanges();
+    }
+
+    public int queuedCarChanges() {
+        return cars.queuedChanges();
+    }
+
+    public long droppedProductChanges() {
+        return products.droppedChanges();
+    }
+
+    public long droppedCarChanges() {
+        return cars.droppedChanges();
+    }
+
+    /**
+     * Writes every queued change, waiting up to the shutdown timeout per catalog.
+     */
+    @Override
+    public void close() {
+        products.close();
+        cars.close();
+    }
+}
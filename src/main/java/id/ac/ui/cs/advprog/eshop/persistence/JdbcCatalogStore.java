@@ -0,0 +1,184 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.persistence.WriteBehindBuffer.PendingWrite;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Product and car tables in a JDBC database, written by {@link WriteBehindBuffer}s. Each
+ * batch is one transaction of batched statements: deletes, then upserts that leave the
+ * {@code list_order} of existing rows alone, so a catalog loaded back lists items in the
+ * order they were first stored.
+ */
+public class JdbcCatalogStore {
+    // Text columns are as wide as CatalogValidation.MAX_TEXT_LENGTH
+    private static final String CREATE_PRODUCT_TABLE = """
+            CREATE TABLE IF NOT EXISTS product (
+                product_id VARCHAR(255) PRIMARY KEY,
+                product_name VARCHAR(255),
+                product_quantity INT NOT NULL,
+                version BIGINT NOT NULL,
+                list_order BIGINT NOT NULL
+            )""";
+    private static final String CREATE_CAR_TABLE = """
+            CREATE TABLE IF NOT EXISTS car (
+                car_id VARCHAR(255) PRIMARY KEY,
+                car_name VARCHAR(255),
+                car_color VARCHAR(255),
+                car_quantity INT NOT NULL,
+                version BIGINT NOT NULL,
+                list_order BIGINT NOT NULL
+            )""";
+    private static final String UPSERT_PRODUCT = """
+            MERGE INTO product t
+            USING (SELECT CAST(? AS VARCHAR) AS product_id, CAST(? AS VARCHAR) AS product_name,
+                          CAST(? AS INT) AS product_quantity, CAST(? AS BIGINT) AS version,
+                          CAST(? AS BIGINT) AS list_order) s
+            ON t.product_id = s.product_id
+            WHEN MATCHED THEN UPDATE SET product_name = s.product_name,
+                product_quantity = s.product_quantity, version = s.version
+            WHEN NOT MATCHED THEN INSERT (product_id, product_name, product_quantity, version, list_order)
+                VALUES (s.product_id, s.product_name, s.product_quantity, s.version, s.list_order)""";
+    private static final String UPSERT_CAR = """
+            MERGE INTO car t
+            USING (SELECT CAST(? AS VARCHAR) AS car_id, CAST(? AS VARCHAR) AS car_name,
+                          CAST(? AS VARCHAR) AS car_color, CAST(? AS INT) AS car_quantity,
+                          CAST(? AS BIGINT) AS version, CAST(? AS BIGINT) AS list_order) s
+            ON t.car_id = s.car_id
+            WHEN MATCHED THEN UPDATE SET car_name = s.car_name, car_color = s.car_color,
+                car_quantity = s.car_quantity, version = s.version
+            WHEN NOT MATCHED THEN INSERT (car_id, car_name, car_color, car_quantity, version, list_order)
+                VALUES (s.car_id, s.car_name, s.car_color, s.car_quantity, s.version, s.list_order)""";
+
+    private final DataSource dataSource;
+
+    public JdbcCatalogStore(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void createTables() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_PRODUCT_TABLE);
+            statement.execute(CREATE_CAR_TABLE);
+        }
+    }
+
+    /**
+     * Passes every stored product to {@code consumer} in listing order and returns the
+     * highest {@code list_order}, or 0 when there are none.
+     */
+    public long loadProducts(Consumer<Product> consumer) throws SQLException {
+        String query = "SELECT product_id, product_name, product_quantity, version, list_order"
+                + " FROM product ORDER BY list_order";
+        long lastOrder = 0;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(query)) {
+            while (rows.next()) {
+                consumer.accept(new Product(rows.getString(1), rows.getString(2), rows.getInt(3), rows.getLong(4)));
+                lastOrder = rows.getLong(5);
+            }
+        }
+        return lastOrder;
+    }
+
+    /**
+     * Passes every stored car to {@code consumer} in listing order and returns the highest
+     * {@code list_order}, or 0 when there are none.
+     */
+    public long loadCars(Consumer<Car> consumer) throws SQLException {
+        String query = "SELECT car_id, car_name, car_color, car_quantity, version, list_order"
+                + " FROM car ORDER BY list_order";
+        long lastOrder = 0;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(query)) {
+            while (rows.next()) {
+                Car car = new Car();
+                car.setCarId(rows.getString(1));
+                car.setCarName(rows.getString(2));
+                car.setCarColor(rows.getString(3));
+                car.setCarQuantity(rows.getInt(4));
+                car.setVersion(rows.getLong(5));
+                consumer.accept(car);
+                lastOrder = rows.getLong(6);
+            }
+        }
+        return lastOrder;
+    }
+
+    public void writeProducts(List<PendingWrite<Product>> batch) throws SQLException {
+        write(batch, "DELETE FROM product WHERE product_id = ?", UPSERT_PRODUCT, (statement, write) -> {
+            Product product = write.value();
+            statement.setString(1, write.id());
+            statement.setString(2, product.getProductName());
+            statement.setInt(3, product.getProductQuantity());
+            statement.setLong(4, product.getVersion());
+            statement.setLong(5, write.order());
+        });
+    }
+
+    public void writeCars(List<PendingWrite<Car>> batch) throws SQLException {
+        write(batch, "DELETE FROM car WHERE car_id = ?", UPSERT_CAR, (statement, write) -> {
+            Car car = write.value();
+            statement.setString(1, write.id());
+            statement.setString(2, car.getCarName());
+            statement.setString(3, car.getCarColor());
+            statement.setInt(4, car.getCarQuantity());
+            statement.setLong(5, car.getVersion());
+            statement.setLong(6, write.order());
+        });
+    }
+
+    private <T> void write(List<PendingWrite<T>> batch, String deleteSql, String upsertSql,
+                           RowBinder<T> upsertBinder) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement delete = connection.prepareStatement(deleteSql);
+                 PreparedStatement upsert = connection.prepareStatement(upsertSql)) {
+                boolean deletes = false;
+                boolean upserts = false;
+                for (PendingWrite<T> write : batch) {
+                    if (write.deleted()) {
+                        delete.setString(1, write.id());
+                        delete.addBatch();
+                        deletes = true;
+                    } else {
+                        upsertBinder.bind(upsert, write);
+                        upsert.addBatch();
+                        upserts = true;
+                    }
+                }
+                // Each id occurs once per batch, so the two statements cannot touch the same row
+                if (deletes) {
+                    delete.executeBatch();
+                }
+                if (upserts) {
+                    upsert.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement statement, PendingWrite<T> write) throws SQLException;
+    }
+}
@@ -0,0 +1,72 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "eshop.persistence.jdbc", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(JdbcPersistenceProperties.class)
+public class JdbcPersistenceConfiguration {
+
+    // Boot's own DataSource configuration is excluded in application.properties, so the
+    // database, and the health check that opens it, only exist while this is enabled
+    @Bean
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CatalogWriteBehind catalogWriteBehind(ProductRepository productRepository, CarRepository carRepository,
+                                                 DataSource dataSource, JdbcPersistenceProperties properties,
+                                                 Environment environment) throws SQLException {
+        // Both would load the products at startup and disagree about which copy is current
+        if (environment.getProperty("eshop.product.wal.enabled", Boolean.class, false)) {
+            throw new IllegalStateException(
+                    "eshop.persistence.jdbc and eshop.product.wal cannot be enabled together");
+        }
+        return new CatalogWriteBehind(productRepository, carRepository, new JdbcCatalogStore(dataSource),
+                properties);
+    }
+
+    @Bean
+    public MeterBinder catalogWriteBehindMetrics(CatalogWriteBehind writeBehind) {
+        return registry -> {
+            Gauge.builder("eshop.persistence.queued", writeBehind, CatalogWriteBehind::queuedProductChanges)
+                    .tag("catalog", "product")
+                    .description("Changes waiting to be written to the database")
+                    .register(registry);
+            Gauge.builder("eshop.persistence.queued", writeBehind, CatalogWriteBehind::queuedCarChanges)
+                    .tag("catalog", "car")
+                    .description("Changes waiting to be written to the database")
+                    .register(registry);
+            FunctionCounter.builder("eshop.persistence.dropped", writeBehind,
+                            CatalogWriteBehind::droppedProductChanges)
+                    .tag("catalog", "product")
+                    .description("Changes the database refused and that were never stored")
+                    .register(registry);
+            FunctionCounter.builder("eshop.persistence.dropped", writeBehind, CatalogWriteBehind::droppedCarChanges)
+                    .tag("catalog", "car")
+                    .description("Changes the database refused and that were never stored")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings for storing the catalog in the {@code spring.datasource} database. Queued
+ * changes are written once {@code batchSize} are waiting or after {@code flushInterval}.
+ * With {@code async} durability a change is acknowledged once queued, so a crash loses at
+ * most the last flush interval; {@code sync} acknowledges it only after its batch has been
+ * committed. A sync change that could not be committed is answered with an error but stays
+ * applied, and is retried like an async one.
+ */
+@ConfigurationProperties(prefix = "eshop.persistence.jdbc")
+public record JdbcPersistenceProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("async") Durability durability,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("200ms") Duration flushInterval,
+        @DefaultValue("30s") Duration shutdownTimeout) {
+
+    public enum Durability {
+        ASYNC,
+        SYNC
+    }
+}
@@ -0,0 +1,130 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary format shared by the write-ahead log and its snapshots. Every record is framed as
+ * {@code [int length][int crc32c][body]}; a length of 0 marks the end of the records, and
+ * a frame whose checksum does not match is treated as a torn write and also ends reading.
+ * Instances reuse their buffers and are not thread-safe.
+ */
+final class ProductRecordCodec {
+    static final int FRAME_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer frame = ByteBuffer.allocate(256);
+
+    /**
+     * Encodes a full product state. The returned buffer is ready to be written and is only
+     * valid until the next call on this codec.
+     */
+    ByteBuffer encodeSave(Product product) {
+        byte[] id = bytes(product.getProductId());
+        byte[] name = bytes(product.getProductName());
+        ByteBuffer body = startFrame(1 + stringSize(id) + stringSize(name) + Integer.BYTES + Long.BYTES);
+        body.put(SAVE);
+        putString(body, id);
+        putString(body, name);
+        body.putInt(product.getProductQuantity());
+        body.putLong(product.getVersion());
+        return finishFrame();
+    }
+
+    ByteBuffer encodeDelete(String productId) {
+        byte[] id = bytes(productId);
+        ByteBuffer body = startFrame(1 + stringSize(id));
+        body.put(DELETE);
+        putString(body, id);
+        return finishFrame();
+    }
+
+    /**
+     * Reads frames from the current position of {@code source} until the end marker, the end
+     * of the buffer or a damaged frame, and returns how many records were read.
+     */
+    int decodeAll(ByteBuffer source, Consumer<Product> onSave, Consumer<String> onDelete) {
+        int records = 0;
+        while (source.remaining() >= FRAME_HEADER_BYTES) {
+            int length = source.getInt();
+            int checksum = source.getInt();
+            if (length <= 0 || length > source.remaining()) {
+                break;
+            }
+            ByteBuffer body = source.slice(source.position(), length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            source.position(source.position() + length);
+            byte type = body.get();
+            String productId = getString(body);
+            if (type == SAVE) {
+                String name = getString(body);
+                int quantity = body.getInt();
+                long version = body.getLong();
+                onSave.accept(new Product(productId, name, quantity, version));
+            } else if (type == DELETE) {
+                onDelete.accept(productId);
+            } else {
+                break;
+            }
+            records++;
+        }
+        return records;
+    }
+
+    private ByteBuffer startFrame(int bodyLength) {
+        int frameLength = FRAME_HEADER_BYTES + bodyLength;
+        if (frame.capacity() < frameLength) {
+            frame = ByteBuffer.allocate(Math.max(frameLength, frame.capacity() * 2));
+        }
+        frame.clear();
+        frame.putInt(bodyLength);
+        frame.putInt(0);
+        return frame;
+    }
+
+    private ByteBuffer finishFrame() {
+        int bodyLength = frame.position() - FRAME_HEADER_BYTES;
+        crc.reset();
+        crc.update(frame.array(), FRAME_HEADER_BYTES, bodyLength);
+        frame.putInt(Integer.BYTES, (int) crc.getValue());
+        return frame.flip();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer target, byte[] value) {
+        if (value == null) {
+            target.putInt(-1);
+            return;
+        }
+        target.putInt(value.length);
+        target.put(value);
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        source.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
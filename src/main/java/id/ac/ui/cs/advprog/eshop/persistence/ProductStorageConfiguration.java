@@ -0,0 +1,21 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.repository.HeapProductStorage;
+import id.ac.ui.cs.advprog.eshop.repository.OffHeapProductStorage;
+import id.ac.ui.cs.advprog.eshop.repository.ProductStorage;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(ProductStorageProperties.class)
+public class ProductStorageConfiguration {
+
+    @Bean
+    public ProductStorage productStorage(ProductStorageProperties properties) {
+        return switch (properties.type()) {
+            case HEAP -> new HeapProductStorage();
+            case OFF_HEAP -> new OffHeapProductStorage(properties.initialCapacity());
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Chooses where product state is kept. {@code off-heap} stores products in direct memory
+ * columns sized for {@code initialCapacity} products up front, which keeps product state
+ * out of the garbage collector's way at the cost of building a new object on every read.
+ * The repository's lookup map and indexes stay on the heap either way.
+ */
+@ConfigurationProperties(prefix = "eshop.product.storage")
+public record ProductStorageProperties(
+        @DefaultValue("heap") Type type,
+        @DefaultValue("100000") int initialCapacity) {
+
+    public enum Type {
+        HEAP,
+        OFF_HEAP
+    }
+}
@@ -0,0 +1,386 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.ProductJournal;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Durability for {@link ProductRepository}: every change is appended to a memory-mapped
+ * log segment, and the segments are periodically compacted into a snapshot.
+ *
+ * <p>Appends are plain memory copies into the mapped segment. Unless the fsync interval is
+ * zero, a background task forces dirty segments to disk so that many writes share one fsync
+ * (group commit). With an interval of zero each repository operation forces what it appended
+ * once it has released its locks, so other writers never wait for its fsync; its caller is
+ * answered only after that. Compaction first rotates to a new segment, then writes a snapshot of the
+ * repository and finally deletes the older segments. Log records carry the full product
+ * state, so replaying the segments written after the rotation on top of that snapshot is
+ * always correct, even though the snapshot is taken while writes continue.
+ */
+public class ProductWriteAheadLog implements ProductJournal, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ProductWriteAheadLog.class);
+    private static final String SEGMENT_PREFIX = "products-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String SNAPSHOT_FILE = "products.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x45534e50;
+
+    private final ProductRepository productRepository;
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncEveryWrite;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    // Guarded by appendLock
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ProductRecordCodec codec = new ProductRecordCodec();
+    private long generation;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+
+    private volatile boolean dirty;
+    private volatile boolean closed;
+    // With syncEveryWrite, the end of the last record the current operation of a thread appended
+    private final ThreadLocal<UnforcedAppend> unforced = new ThreadLocal<>();
+
+    private record UnforcedAppend(MappedByteBuffer segment, int end) {
+    }
+
+    public ProductWriteAheadLog(ProductRepository productRepository, Path directory, int segmentSize,
+                                Duration fsyncInterval, Duration snapshotInterval) throws IOException {
+        this.productRepository = productRepository;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEveryWrite = fsyncInterval.isZero();
+        Files.createDirectories(directory);
+
+        boolean replayedSegments = recover();
+        openSegment(generation + 1);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-wal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        productRepository.addJournal(this);
+        if (!syncEveryWrite) {
+            long fsyncMillis = Math.max(1, fsyncInterval.toMillis());
+            scheduler.scheduleWithFixedDelay(this::flushQuietly, fsyncMillis, fsyncMillis, TimeUnit.MILLISECONDS);
+        }
+        long snapshotMillis = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::compactQuietly, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+        if (replayedSegments) {
+            scheduler.execute(this::compactQuietly);
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        appendLock.lock();
+        try {
+            append(codec.encodeSave(product));
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        appendLock.lock();
+        try {
+            append(codec.encodeDelete(productId));
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * With an fsync interval of zero, forces the records this thread appended during the
+     * operation that just finished.
+     */
+    @Override
+    public void changesApplied() {
+        UnforcedAppend append = unforced.get();
+        if (append == null) {
+            return;
+        }
+        unforced.remove();
+        try {
+            // A rotation forced the older segments, so only the last one is left
+            append.segment().force(0, append.end());
+        } catch (UncheckedIOException e) {
+            throw new ChangeNotDurableException("Could not force the product write-ahead log to disk", e);
+        }
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public void flush() throws IOException {
+        MappedByteBuffer current;
+        appendLock.lock();
+        try {
+            current = segment;
+            dirty = false;
+        } finally {
+            appendLock.unlock();
+        }
+        // Forcing outside the lock lets writers keep appending while the disk catches up
+        current.force();
+    }
+
+    /**
+     * Writes a snapshot of the repository and removes the log segments it replaces.
+     */
+    public void compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long baseGeneration = rotateForSnapshot();
+            if (baseGeneration < 0) {
+                return;
+            }
+            long started = System.nanoTime();
+            int products = writeSnapshot(baseGeneration);
+            for (long olderGeneration : segmentGenerations()) {
+                if (olderGeneration < baseGeneration) {
+                    Files.deleteIfExists(segmentPath(olderGeneration));
+                }
+            }
+            log.info("Wrote product snapshot with {} products in {} ms", products,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Periodic tasks are cancelled and queued ones return early once closed is set. A
+        // running task is not interrupted, because an interrupt closes the channel it uses.
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        try {
+            segment.force();
+            segmentChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void append(ByteBuffer record) {
+        if (closed) {
+            throw new IllegalStateException("Product write-ahead log is closed");
+        }
+        try {
+            // Keep room for the zero length that marks the end of the segment
+            if (segment.remaining() < record.remaining() + Integer.BYTES) {
+                openSegment(generation + 1);
+                scheduler.execute(this::compactQuietly);
+                if (segment.remaining() < record.remaining() + Integer.BYTES) {
+                    throw new IllegalStateException("Record of " + record.remaining()
+                            + " bytes does not fit in a log segment of " + segmentSize + " bytes");
+                }
+            }
+            segment.put(record);
+            if (syncEveryWrite) {
+                unforced.set(new UnforcedAppend(segment, segment.position()));
+            } else {
+                dirty = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts a new segment for the snapshot to build on and returns its generation, or -1
+     * if the log is closed. Records are appended before the repository applies them, so
+     * the rotation waits until every change already in the older segments is visible to
+     * the snapshot.
+     */
+    private long rotateForSnapshot() throws IOException {
+        long[] baseGeneration = {-1};
+        try {
+            productRepository.pauseWrites(() -> {
+                appendLock.lock();
+                try {
+                    if (!closed) {
+                        openSegment(generation + 1);
+                        baseGeneration[0] = generation;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    appendLock.unlock();
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return baseGeneration[0];
+    }
+
+    private void openSegment(long nextGeneration) throws IOException {
+        if (segment != null) {
+            segment.force();
+            segmentChannel.close();
+        }
+        segmentChannel = FileChannel.open(segmentPath(nextGeneration),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        generation = nextGeneration;
+    }
+
+    /**
+     * Loads the snapshot and replays the log segments written after it into the repository.
+     * Returns whether any log segment was replayed.
+     */
+    private boolean recover() throws IOException {
+        long started = System.nanoTime();
+        ProductRecordCodec reader = new ProductRecordCodec();
+        long baseGeneration = 0;
+        int records = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Not a product snapshot: " + snapshot);
+                }
+                baseGeneration = buffer.getLong();
+                records += reader.decodeAll(buffer, productRepository::restore, productRepository::deleteById);
+            }
+        }
+
+        boolean replayedSegments = false;
+        generation = Math.max(0, baseGeneration - 1);
+        for (long segmentGeneration : segmentGenerations()) {
+            generation = Math.max(generation, segmentGeneration);
+            if (segmentGeneration < baseGeneration) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(segmentGeneration), StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                records += reader.decodeAll(buffer, productRepository::restore, productRepository::deleteById);
+                replayedSegments = true;
+            }
+        }
+        log.info("Recovered product repository from {} records in {} ms", records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return replayedSegments;
+    }
+
+    private int writeSnapshot(long baseGeneration) throws IOException {
+        ProductRecordCodec writer = new ProductRecordCodec();
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        int products = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            buffer.putInt(SNAPSHOT_MAGIC).putLong(baseGeneration);
+            Iterator<Product> productIterator = productRepository.findAll();
+            while (productIterator.hasNext()) {
+                ByteBuffer record = writer.encodeSave(productIterator.next());
+                if (buffer.remaining() < record.remaining()) {
+                    writeFully(channel, buffer);
+                }
+                if (buffer.remaining() < record.remaining()) {
+                    while (record.hasRemaining()) {
+                        channel.write(record);
+                    }
+                } else {
+                    buffer.put(record);
+                }
+                products++;
+            }
+            if (buffer.remaining() < Integer.BYTES) {
+                writeFully(channel, buffer);
+            }
+            buffer.putInt(0);
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return products;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private List<Long> segmentGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segmentGeneration) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentGeneration, SEGMENT_SUFFIX));
+    }
+
+    private void flushQuietly() {
+        if (!dirty || closed) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to force product write-ahead log to disk", e);
+        }
+    }
+
+    private void compactQuietly() {
+        if (closed) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to compact product write-ahead log", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "eshop.product.wal", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(WriteAheadLogProperties.class)
+public class WriteAheadLogConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ProductWriteAheadLog productWriteAheadLog(ProductRepository productRepository,
+                                                     WriteAheadLogProperties properties) throws IOException {
+        return new ProductWriteAheadLog(productRepository, Path.of(properties.directory()),
+                Math.toIntExact(properties.segmentSize().toBytes()),
+                properties.fsyncInterval(), properties.snapshotInterval());
+    }
+}
@@ -0,0 +1,21 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for the product write-ahead log. An {@code fsyncInterval} of zero forces every
+ * write to disk before its caller is answered; any other value groups the writes of that
+ * interval into one fsync.
+ */
+@ConfigurationProperties(prefix = "eshop.product.wal")
+public record WriteAheadLogProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/wal") String directory,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("10ms") Duration fsyncInterval,
+        @DefaultValue("5m") Duration snapshotInterval) {
+}
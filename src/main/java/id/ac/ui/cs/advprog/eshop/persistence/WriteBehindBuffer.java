@@ -0,0 +1,297 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the newest state of every changed id in memory and writes it to a {@link Store}
+ * in batches from a background thread. Changes to one id that arrive before the next flush
+ * are coalesced, so a flush writes each id once, with its latest state.
+ *
+ * <p>A flush starts once {@code batchSize} changes are waiting or {@code flushInterval}
+ * has passed. Queueing a change never waits for the store: it returns the outcome of the
+ * batch the change will be written in, which callers may wait for once they no longer hold
+ * anything other writers need. With {@code waitForFlush} callers are expected to wait, so a
+ * flush starts as soon as changes are queued; callers waiting at the same time still share
+ * one batch. A failed flush fails its outcome and is queued again behind any newer changes.
+ * When the store refuses the data itself, the refused batch is written one change at a time
+ * and only the changes refused on their own are dropped, since no retry could store them.
+ * {@link #close()} writes everything still queued before it returns.
+ */
+public class WriteBehindBuffer<T> implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Writes a batch of changes, each id at most once, atomically or not at all. Writes are
+     * repeated after a failure, so they must be idempotent.
+     */
+    @FunctionalInterface
+    public interface Store<T> {
+        void write(List<PendingWrite<T>> batch) throws SQLException;
+    }
+
+    /**
+     * The newest state of one id, or a deletion when {@code value} is {@code null}.
+     * {@code order} grows with the time the id was first queued, so a store can keep new
+     * items in the order they were created.
+     */
+    public record PendingWrite<T>(String id, T value, long order) {
+
+        public boolean deleted() {
+            return value == null;
+        }
+    }
+
+    private final String name;
+    private final Store<T> store;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final boolean waitForFlush;
+    private final Duration shutdownTimeout;
+    private final AtomicLong order;
+    private final Thread flusher;
+
+    // Writers share the read lock to queue a change, the flusher takes the write lock to
+    // swap the queue and its outcome for empty ones
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private ConcurrentHashMap<String, PendingWrite<T>> pending = new ConcurrentHashMap<>();
+    private CompletableFuture<Void> pendingOutcome = new CompletableFuture<>();
+    private final AtomicInteger queuedChanges = new AtomicInteger();
+    private final AtomicLong droppedChanges = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Starts the flusher thread. {@code lastOrder} is the highest order already in the
+     * store, so items queued from now on sort after it.
+     */
+    public WriteBehindBuffer(String name, Store<T> store, long lastOrder, int batchSize, Duration flushInterval,
+                             boolean waitForFlush, Duration shutdownTimeout) {
+        this.name = name;
+        this.store = store;
+        this.order = new AtomicLong(lastOrder);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.waitForFlush = waitForFlush;
+        this.shutdownTimeout = shutdownTimeout;
+        this.flusher = Thread.ofPlatform().name(name + "-write-behind").daemon().start(this::runFlusher);
+    }
+
+    /**
+     * Queues the newest state of {@code id} and returns the outcome of the batch it will be
+     * written in.
+     */
+    public CompletableFuture<Void> save(String id, T value) {
+        return enqueue(id, value);
+    }
+
+    public CompletableFuture<Void> delete(String id) {
+        return enqueue(id, null);
+    }
+
+    /**
+     * Number of changes queued since the last flush started.
+     */
+    public int queuedChanges() {
+        return queuedChanges.get();
+    }
+
+    /**
+     * Number of changes dropped because the store refused them.
+     */
+    public long droppedChanges() {
+        return droppedChanges.get();
+    }
+
+    private CompletableFuture<Void> enqueue(String id, T value) {
+        CompletableFuture<Void> outcome;
+        swapLock.readLock().lock();
+        try {
+            // Checked under the lock: once the last flush has swapped the queue out, no change
+            // can slip in behind it
+            if (closed) {
+                throw new IllegalStateException("The " + name + " write-behind buffer is closed");
+            }
+            // A coalesced change keeps the order of the first one, the item's place stays put
+            pending.merge(id, new PendingWrite<>(id, value, order.incrementAndGet()),
+                    (queued, next) -> new PendingWrite<>(id, value, queued.order()));
+            outcome = pendingOutcome;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        int queued = queuedChanges.incrementAndGet();
+        if (waitForFlush || queued == batchSize) {
+            LockSupport.unpark(flusher);
+        }
+        return outcome;
+    }
+
+    private void runFlusher() {
+        while (true) {
+            boolean stopping = closed;
+            int queued = queuedChanges.get();
+            if (!stopping && queued < batchSize && !(waitForFlush && queued > 0)) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            if (stopping) {
+                drain();
+                return;
+            }
+            if (!flush()) {
+                // Back off, or with waitForFlush the requeued changes would retry a failing store in a busy loop
+                LockSupport.parkNanos(this, RETRY_NANOS);
+            }
+        }
+    }
+
+    private void drain() {
+        // Retries until everything is written or close() gives up and interrupts
+        while (!flush()) {
+            LockSupport.parkNanos(this, RETRY_NANOS);
+            if (Thread.interrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes out the queued changes, and returns whether that succeeded or nothing was
+     * queued.
+     */
+    private boolean flush() {
+        ConcurrentHashMap<String, PendingWrite<T>> batch;
+        CompletableFuture<Void> outcome;
+        swapLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                // A writer counts its change after queueing it, possibly after that change
+                // went out with the previous batch
+                queuedChanges.set(0);
+                return true;
+            }
+            batch = pending;
+            outcome = pendingOutcome;
+            pending = new ConcurrentHashMap<>();
+            pendingOutcome = new CompletableFuture<>();
+            queuedChanges.set(0);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        List<PendingWrite<T>> writes = new ArrayList<>(batch.values());
+        writes.sort(Comparator.comparingLong(PendingWrite::order));
+        // Changes before this one are stored or dropped
+        int next = 0;
+        Exception refused = null;
+        try {
+            while (next < writes.size()) {
+                List<PendingWrite<T>> subBatch = writes.subList(next, Math.min(next + batchSize, writes.size()));
+                try {
+                    store.write(subBatch);
+                    next += subBatch.size();
+                } catch (SQLException | RuntimeException e) {
+                    if (!refusesData(e)) {
+                        throw e;
+                    }
+                    // One bad change would fail the whole batch on every retry, so find it
+                    for (PendingWrite<T> write : subBatch) {
+                        try {
+                            store.write(List.of(write));
+                        } catch (SQLException | RuntimeException rowFailure) {
+                            if (!refusesData(rowFailure)) {
+                                throw rowFailure;
+                            }
+                            log.error("Dropped {} change {}, the store refuses it", name, write, rowFailure);
+                            droppedChanges.incrementAndGet();
+                            refused = rowFailure;
+                        }
+                        next++;
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            // The changes are already applied in memory, so they are retried until stored;
+            // callers waiting for this batch learn that it did not make it this time
+            List<PendingWrite<T>> unstored = writes.subList(next, writes.size());
+            log.warn("Could not store {} {} changes, will retry", unstored.size(), name, e);
+            requeue(unstored);
+            outcome.completeExceptionally(e);
+            return false;
+        }
+        if (refused != null) {
+            outcome.completeExceptionally(refused);
+        } else {
+            outcome.complete(null);
+        }
+        return true;
+    }
+
+    /**
+     * Whether {@code failure} means the store refuses the data itself, like a value too long
+     * for its column or a broken constraint, rather than that it could not be reached.
+     */
+    static boolean refusesData(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                // A failed JDBC batch chains the failures of its statements
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    String state = next.getSQLState();
+                    if (next instanceof SQLDataException || next instanceof SQLIntegrityConstraintViolationException
+                            || state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void requeue(List<PendingWrite<T>> writes) {
+        swapLock.readLock().lock();
+        try {
+            for (PendingWrite<T> write : writes) {
+                // A newer change to the id wins, but the item keeps its original place
+                pending.merge(write.id(), write,
+                        (newer, failed) -> new PendingWrite<>(newer.id(), newer.value(), failed.order()));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        queuedChanges.addAndGet(writes.size());
+    }
+
+    /**
+     * Stops accepting changes and waits up to the shutdown timeout for the queued ones to
+     * be written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(shutdownTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+            log.error("Gave up writing {} queued {} changes after {}", queuedChanges.get(), name, shutdownTimeout);
+        }
+    }
+}
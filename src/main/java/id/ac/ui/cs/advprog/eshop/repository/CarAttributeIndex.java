@@ -0,0 +1,254 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.StockLevel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bitmap indexes over car color and stock level. Every indexed car has a row, and bit
+ * {@code n} of a bitmap is set when the car in row {@code n} has that attribute, so a
+ * filter is resolved by intersecting bitmaps and only the matching cars are ever loaded.
+ * Rows are kept in insertion-sequence order; once removed cars leave as many rows empty as
+ * are in use, the rows are renumbered, so bitmaps stay as wide as the catalog rather than
+ * as its history. Facet counts are kept alongside the bitmaps and read in constant time
+ * per facet value.
+ */
+class CarAttributeIndex {
+    // Below this many empty rows renumbering is not worth its pass over the bitmaps
+    private static final int MIN_EMPTY_ROWS_TO_COMPACT = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, BitSet> colorBitmaps = new HashMap<>();
+    private final Map<StockLevel, BitSet> stockLevelBitmaps = new EnumMap<>(StockLevel.class);
+    private final Map<String, Integer> colorCounts = new HashMap<>();
+    private final Map<StockLevel, Integer> stockLevelCounts = new EnumMap<>(StockLevel.class);
+    // Insertion sequence of each row, ascending; rows of removed cars keep theirs until renumbered
+    private long[] rowSequences = new long[16];
+    private final BitSet usedRows = new BitSet();
+    private int rows;
+    private int usedRowCount;
+
+    CarAttributeIndex() {
+        for (StockLevel stockLevel : StockLevel.values()) {
+            stockLevelBitmaps.put(stockLevel, new BitSet());
+            stockLevelCounts.put(stockLevel, 0);
+        }
+    }
+
+    static String normalizeColor(String color) {
+        return color == null ? "" : color.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indexes a new car in a row after all others and returns its insertion sequence. The
+     * sequence is taken from {@code nextSequence} under the index lock, so rows stay in
+     * sequence order however adds race.
+     */
+    long add(LongSupplier nextSequence, Car car) {
+        lock.writeLock().lock();
+        try {
+            long sequence = nextSequence.getAsLong();
+            if (rows == rowSequences.length) {
+                rowSequences = Arrays.copyOf(rowSequences, rows * 2);
+            }
+            int row = rows++;
+            rowSequences[row] = sequence;
+            usedRows.set(row);
+            usedRowCount++;
+            set(row, car);
+            return sequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes the car at {@code sequence}, which changed from {@code previous} to
+     * {@code next}, keeping its row.
+     */
+    void replace(long sequence, Car previous, Car next) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(sequence);
+            if (row >= 0) {
+                clear(row, previous);
+                set(row, next);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long sequence, Car car) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(sequence);
+            if (row < 0) {
+                return;
+            }
+            clear(row, car);
+            usedRows.clear(row);
+            usedRowCount--;
+            int emptyRows = rows - usedRowCount;
+            if (emptyRows >= MIN_EMPTY_ROWS_TO_COMPACT && emptyRows >= rows / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns, in order, up to {@code limit} insertion sequences after {@code afterSequence}
+     * of cars matching {@code filter}. Bitmaps are intersected in place by leaping from one
+     * to the next set bit of the other, so nothing is copied and the work grows with the
+     * page rather than with the catalog.
+     */
+    long[] match(CarFilter filter, long afterSequence, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet colorBitmap = null;
+            if (filter.color() != null && !filter.color().isBlank()) {
+                colorBitmap = colorBitmaps.get(normalizeColor(filter.color()));
+                if (colorBitmap == null) {
+                    return new long[0];
+                }
+            }
+            List<BitSet> stockLevelBitmapsToMatch = filter.stockLevels().stream()
+                    .map(stockLevelBitmaps::get)
+                    .toList();
+            long[] matches = new long[Math.min(limit, rows)];
+            int found = 0;
+            int row = firstRowAfter(afterSequence);
+            while (found < matches.length && row >= 0) {
+                int colorRow = colorBitmap == null ? row : colorBitmap.nextSetBit(row);
+                int stockLevelRow = stockLevelBitmapsToMatch.isEmpty() || colorRow < 0
+                        ? colorRow : nextSetBit(stockLevelBitmapsToMatch, colorRow);
+                if (stockLevelRow < 0) {
+                    break;
+                }
+                if (stockLevelRow == colorRow) {
+                    matches[found++] = rowSequences[colorRow];
+                    row = colorRow + 1;
+                } else {
+                    row = stockLevelRow;
+                }
+            }
+            return found == matches.length ? matches : Arrays.copyOf(matches, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    CarFacets facets() {
+        lock.readLock().lock();
+        try {
+            return new CarFacets(new TreeMap<>(colorCounts), new EnumMap<>(stockLevelCounts));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of rows the bitmaps span, used and empty.
+     */
+    int width() {
+        lock.readLock().lock();
+        try {
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void set(int row, Car car) {
+        String color = normalizeColor(car.getCarColor());
+        StockLevel stockLevel = StockLevel.of(car.getCarQuantity());
+        colorBitmaps.computeIfAbsent(color, key -> new BitSet()).set(row);
+        colorCounts.merge(color, 1, Integer::sum);
+        stockLevelBitmaps.get(stockLevel).set(row);
+        stockLevelCounts.merge(stockLevel, 1, Integer::sum);
+    }
+
+    private void clear(int row, Car car) {
+        String color = normalizeColor(car.getCarColor());
+        StockLevel stockLevel = StockLevel.of(car.getCarQuantity());
+        BitSet colorBitmap = colorBitmaps.get(color);
+        if (colorBitmap != null && colorBitmap.get(row)) {
+            colorBitmap.clear(row);
+            if (colorCounts.merge(color, -1, Integer::sum) == 0) {
+                colorCounts.remove(color);
+                colorBitmaps.remove(color);
+            }
+        }
+        BitSet stockLevelBitmap = stockLevelBitmaps.get(stockLevel);
+        if (stockLevelBitmap.get(row)) {
+            stockLevelBitmap.clear(row);
+            stockLevelCounts.merge(stockLevel, -1, Integer::sum);
+        }
+    }
+
+    /**
+     * Gives the used rows consecutive numbers, keeping their order, and rewrites the
+     * bitmaps to match.
+     */
+    private void compact() {
+        int[] newRows = new int[rows];
+        long[] compacted = new long[Math.max(16, usedRowCount * 2)];
+        int used = 0;
+        for (int row = usedRows.nextSetBit(0); row >= 0; row = usedRows.nextSetBit(row + 1)) {
+            newRows[row] = used;
+            compacted[used++] = rowSequences[row];
+        }
+        int width = used;
+        colorBitmaps.replaceAll((color, bitmap) -> renumber(bitmap, newRows, width));
+        stockLevelBitmaps.replaceAll((stockLevel, bitmap) -> renumber(bitmap, newRows, width));
+        rowSequences = compacted;
+        rows = width;
+        usedRowCount = width;
+        usedRows.clear();
+        usedRows.set(0, width);
+    }
+
+    private static BitSet renumber(BitSet bitmap, int[] newRows, int width) {
+        BitSet renumbered = new BitSet(width);
+        for (int row = bitmap.nextSetBit(0); row >= 0; row = bitmap.nextSetBit(row + 1)) {
+            renumbered.set(newRows[row]);
+        }
+        return renumbered;
+    }
+
+    private int rowOf(long sequence) {
+        int row = Arrays.binarySearch(rowSequences, 0, rows, sequence);
+        return row >= 0 && usedRows.get(row) ? row : -1;
+    }
+
+    private int firstRowAfter(long sequence) {
+        int row = Arrays.binarySearch(rowSequences, 0, rows, sequence);
+        return row >= 0 ? row + 1 : -row - 1;
+    }
+
+    private static int nextSetBit(List<BitSet> bitmaps, int from) {
+        int next = -1;
+        for (BitSet bitmap : bitmaps) {
+            int row = bitmap.nextSetBit(from);
+            if (row >= 0 && (next < 0 || row < next)) {
+                next = row;
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,21 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+
+/**
+ * Receives every change made through {@link CarRepository}, so it can be persisted. The
+ * same contract as {@link ProductJournal}: calls happen while the change is being applied,
+ * in order per car id, and a journal that throws stops the change.
+ */
+public interface CarJournal {
+	void carSaved(Car car);
+
+	void carDeleted(String carId);
+
+	/**
+	 * Called on the same thread after each repository operation, once its lock is released,
+	 * like {@link ProductJournal#changesApplied()}.
+	 */
+	default void changesApplied() {
+	}
+}
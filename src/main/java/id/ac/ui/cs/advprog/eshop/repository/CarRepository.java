@@ -1,54 +1,351 @@
 package id.ac.ui.cs.advprog.eshop.repository;
 
+import id.ac.ui.cs.advprog.eshop.ids.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.ids.TimeOrderedIdGenerator;
 import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Repository
 public class CarRepository {
-	private List<Car> carData = new ArrayList<>();
+	private static final int LOCK_STRIPES = 256;
+
+	// Keyed like the product repository, by a key shared with the insertion order
+	private final Map<CatalogKey, Slot> carData = new ConcurrentHashMap<>();
+	private final ConcurrentNavigableMap<Long, CatalogKey> insertionOrder = new ConcurrentSkipListMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final CarAttributeIndex attributeIndex = new CarAttributeIndex();
+	private final ModificationTracker modifications = new ModificationTracker();
+	// Every change to an id holds that id's lock; readers only use carData
+	private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+	private final List<CarJournal> journals = new CopyOnWriteArrayList<>();
+	private final IdGenerator idGenerator;
+
+	public CarRepository() {
+		this(new TimeOrderedIdGenerator());
+	}
+
+	@Autowired
+	public CarRepository(IdGenerator idGenerator) {
+		this.idGenerator = idGenerator;
+	}
+
+	public void addJournal(CarJournal journal) {
+		journals.add(journal);
+	}
+
+	/**
+	 * Returns the current modification version, which grows with every change to any
+	 * car. Read it before the data it should describe.
+	 */
+	public ModificationStamp modificationStamp() {
+		return modifications.stamp();
+	}
+
+	/**
+	 * Number of stored cars.
+	 */
+	public int size() {
+		return carData.size();
+	}
 
 	public Car create(Car car) {
+		try {
+			store(car, true);
+			return car;
+		} finally {
+			changesApplied();
+		}
+	}
+
+	/**
+	 * Stores {@code car} unless a car with its id already exists, checking and storing in
+	 * one atomic step. Returns whether it was stored.
+	 */
+	public boolean createIfAbsent(Car car) {
+		try {
+			return store(car, false);
+		} finally {
+			changesApplied();
+		}
+	}
+
+	/**
+	 * Creates several cars in one call, skipping those whose id is already taken, and
+	 * returns the positions in {@code cars} of the skipped ones. Each car is stored
+	 * atomically on its own, so readers may see part of the batch before the call returns.
+	 */
+	public List<Integer> createAll(List<Car> cars) {
+		List<Integer> skipped = new ArrayList<>();
+		try {
+			for (int i = 0; i < cars.size(); i++) {
+				if (!store(cars.get(i), false)) {
+					skipped.add(i);
+				}
+			}
+			return skipped;
+		} finally {
+			changesApplied(skipped);
+		}
+	}
+
+	/**
+	 * Stores a copy of {@code car}, giving it an id if it has none. An existing car with the
+	 * same id is replaced, or with {@code replace} false left alone; returns whether the car
+	 * was stored.
+	 */
+	private boolean store(Car car, boolean replace) {
 		if (car.getCarId() == null) {
-			UUID uuid = UUID.randomUUID();
-			car.setCarId(uuid.toString());
+			car.setCarId(idGenerator.nextId());
 		}
-		carData.add(car);
-		return car;
+		String id = car.getCarId();
+		CatalogKey key = CatalogKey.of(id);
+		// Keep a copy, so the caller changing its car later cannot race with readers or
+		// leave the attribute index describing different values
+		Car stored = copyOf(car, id, car.getVersion());
+		ReentrantLock lock = locks.lockFor(key);
+		lock.lock();
+		try {
+			Slot existing = carData.get(key);
+			if (existing != null && !replace) {
+				return false;
+			}
+			journals.forEach(journal -> journal.carSaved(stored));
+			if (existing != null) {
+				attributeIndex.remove(existing.sequence(), existing.car());
+			}
+			long nextSequence = attributeIndex.add(sequence::incrementAndGet, stored);
+			// Like the product repository: add the new entry before and drop the old one
+			// after the switch, so scans skipping stale entries always find the car
+			insertionOrder.put(nextSequence, key);
+			carData.put(key, new Slot(nextSequence, stored));
+			if (existing != null) {
+				insertionOrder.remove(existing.sequence());
+			}
+		} finally {
+			lock.unlock();
+		}
+		modifications.modified();
+		return true;
+	}
+
+	/**
+	 * Puts back a car loaded from persistent storage. An existing car with the same id
+	 * keeps its place in the listing. Journals are not notified.
+	 */
+	public void restore(Car car) {
+		Car stored = copyOf(car, car.getCarId(), car.getVersion());
+		CatalogKey key = CatalogKey.of(stored.getCarId());
+		ReentrantLock lock = locks.lockFor(key);
+		lock.lock();
+		try {
+			Slot existing = carData.get(key);
+			long slotSequence;
+			if (existing != null) {
+				slotSequence = existing.sequence();
+				attributeIndex.replace(slotSequence, existing.car(), stored);
+			} else {
+				slotSequence = attributeIndex.add(sequence::incrementAndGet, stored);
+				insertionOrder.put(slotSequence, key);
+			}
+			carData.put(key, new Slot(slotSequence, stored));
+		} finally {
+			lock.unlock();
+		}
+		modifications.modified();
 	}
 
+	/**
+	 * Lists the cars in insertion order, skipping entries left behind by replaced cars, like
+	 * {@link ProductRepository#findAll()}.
+	 */
 	public Iterator<Car> findAll() {
-		return carData.iterator();
+		return insertionOrder.entrySet().stream()
+				.map(entry -> {
+					Slot slot = carData.get(entry.getValue());
+					return slot != null && slot.sequence() == entry.getKey() ? slot.car() : null;
+				})
+				.filter(Objects::nonNull)
+				.iterator();
 	}
 
-	public Car findById(String id) {
-		for (Car car : carData) {
-			if (car.getCarId().equals(id)) {
-				return car;
+	public Page<Car> findPage(String afterCursor, int size) {
+		Iterator<Map.Entry<Long, CatalogKey>> entries = insertionOrder
+				.tailMap(PageCursor.decode(afterCursor), false)
+				.entrySet().iterator();
+		List<Car> items = new ArrayList<>(size);
+		long lastSequence = 0;
+		while (entries.hasNext()) {
+			Map.Entry<Long, CatalogKey> entry = entries.next();
+			Slot slot = carData.get(entry.getValue());
+			if (slot == null || slot.sequence() != entry.getKey()) {
+				continue;
 			}
+			if (items.size() == size) {
+				return new Page<>(items, PageCursor.encode(lastSequence));
+			}
+			items.add(slot.car());
+			lastSequence = entry.getKey();
+		}
+		return new Page<>(items, null);
+	}
+
+	/**
+	 * Returns up to {@code size} cars matching {@code filter}. Matching is done on the
+	 * attribute bitmaps, so only the cars that end up on the page are looked up.
+	 */
+	public Page<Car> findPage(CarFilter filter, String afterCursor, int size) {
+		if (filter.isEmpty()) {
+			return findPage(afterCursor, size);
 		}
-		return null;
+		List<Car> items = new ArrayList<>(size);
+		long lastSequence = 0;
+		long after = PageCursor.decode(afterCursor);
+		long[] matches;
+		int wanted;
+		do {
+			// One more than the page, to know whether another page follows
+			wanted = size + 1 - items.size();
+			matches = attributeIndex.match(filter, after, wanted);
+			for (long match : matches) {
+				CatalogKey key = insertionOrder.get(match);
+				Slot slot = key == null ? null : carData.get(key);
+				if (slot == null || slot.sequence() != match) {
+					continue;
+				}
+				if (items.size() == size) {
+					return new Page<>(items, PageCursor.encode(lastSequence));
+				}
+				items.add(slot.car());
+				lastSequence = match;
+			}
+			if (matches.length > 0) {
+				after = matches[matches.length - 1];
+			}
+		} while (matches.length == wanted);
+		return new Page<>(items, null);
+	}
+
+	public CarFacets facets() {
+		return attributeIndex.facets();
+	}
+
+	public Car findById(String id) {
+		if (id == null) {
+			return null;
+		}
+		Slot slot = carData.get(CatalogKey.of(id));
+		return slot == null ? null : slot.car();
 	}
 
 	public Car update(String id, Car updatedCar) {
-		for (int i = 0; i < carData.size(); i++) {
-			Car car = carData.get(i);
-			if (car.getCarId().equals(id)) {
-				// Update the existing car with the new information
-				car.setCarName(updatedCar.getCarName());
-				car.setCarColor(updatedCar.getCarColor());
-				car.setCarQuantity(updatedCar.getCarQuantity());
-				return car;
+		try {
+			if (id == null) {
+				return null;
+			}
+			Car car;
+			CatalogKey key = CatalogKey.of(id);
+			ReentrantLock lock = locks.lockFor(key);
+			lock.lock();
+			try {
+				Slot current = carData.get(key);
+				if (current == null) {
+					return null;
+				}
+				Car existing = current.car();
+				if (existing.getVersion() != updatedCar.getVersion()) {
+					throw new VersionConflictException(id, updatedCar.getVersion(), existing.getVersion());
+				}
+				// Publish a new car instead of mutating the shared one, so readers never see half an update
+				Car next = copyOf(updatedCar, id, existing.getVersion() + 1);
+				journals.forEach(journal -> journal.carSaved(next));
+				attributeIndex.replace(current.sequence(), existing, next);
+				carData.put(key, new Slot(current.sequence(), next));
+				car = next;
+			} finally {
+				lock.unlock();
 			}
+			modifications.modified();
+			return car;
+		} finally {
+			changesApplied();
 		}
-		return null; // Handle the case where the car is not found
 	}
 
 	public void delete(String id) {
-		carData.removeIf(car -> car.getCarId().equals(id));
+		try {
+			if (id == null) {
+				return;
+			}
+			Slot removed;
+			CatalogKey key = CatalogKey.of(id);
+			ReentrantLock lock = locks.lockFor(key);
+			lock.lock();
+			try {
+				removed = carData.get(key);
+				if (removed != null) {
+					journals.forEach(journal -> journal.carDeleted(id));
+					carData.remove(key);
+					insertionOrder.remove(removed.sequence());
+					attributeIndex.remove(removed.sequence(), removed.car());
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (removed != null) {
+				modifications.modified();
+			}
+		} finally {
+			changesApplied();
+		}
+	}
+
+	/**
+	 * Lets journals finish the operation, such as waiting for its changes to be stored,
+	 * once its locks are released.
+	 */
+	private void changesApplied() {
+		journals.forEach(CarJournal::changesApplied);
+	}
+
+	/**
+	 * Like {@link #changesApplied()}, for an operation whose callers need its {@code result}
+	 * even when its changes could not be persisted yet.
+	 */
+	private void changesApplied(Object result) {
+		try {
+			changesApplied();
+		} catch (ChangeNotDurableException e) {
+			throw e.withResult(result);
+		}
+	}
+
+	private static Car copyOf(Car source, String carId, long version) {
+		Car car = new Car();
+		car.setCarId(carId);
+		car.setCarName(source.getCarName());
+		car.setCarColor(source.getCarColor());
+		car.setCarQuantity(source.getCarQuantity());
+		car.setVersion(version);
+		return car;
+	}
+
+	private record Slot(long sequence, Car car) {
 	}
 }
@@ -0,0 +1,71 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Map key for a product or car id. Canonical UUID ids, which is what the application
+ * generates, are held as two longs instead of a 36-character string, and compared as such;
+ * any other id is kept as given. This only saves memory where nothing else keeps the id
+ * string, as in off-heap product storage; next to a stored model object that holds its id,
+ * the key is extra. Parsing reads the id in place, so looking up a path
+ * variable allocates nothing but the key itself. UUID keys sort before all others, and
+ * among themselves in the order of their text.
+ */
+final class CatalogKey implements Comparable<CatalogKey> {
+    private final long high;
+    private final long low;
+    // Null for UUID ids
+    private final String other;
+
+    private CatalogKey(long high, long low, String other) {
+        this.high = high;
+        this.low = low;
+        this.other = other;
+    }
+
+    static CatalogKey of(String id) {
+        if (Uuids.isCanonical(id)) {
+            return new CatalogKey(Uuids.mostSignificantBits(id), Uuids.leastSignificantBits(id), null);
+        }
+        return new CatalogKey(0, 0, id);
+    }
+
+    /**
+     * The id this key was made from.
+     */
+    String id() {
+        return other != null ? other : Uuids.format(high, low);
+    }
+
+    @Override
+    public int compareTo(CatalogKey key) {
+        if (other == null && key.other == null) {
+            // Unsigned order of the bits is the order of the hex digits
+            int byHigh = Long.compareUnsigned(high, key.high);
+            return byHigh != 0 ? byHigh : Long.compareUnsigned(low, key.low);
+        }
+        if (other == null || key.other == null) {
+            return other == null ? -1 : 1;
+        }
+        return other.compareTo(key.other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CatalogKey key)) {
+            return false;
+        }
+        return other == null ? key.other == null && high == key.high && low == key.low : other.equals(key.other);
+    }
+
+    @Override
+    public int hashCode() {
+        return other != null ? other.hashCode() : Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        return id();
+    }
+}
@@ -0,0 +1,37 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Thrown by a repository write whose changes are applied, and seen by readers, but could not
+ * be persisted yet. Unlike other failures nothing was rolled back: the write succeeded in
+ * memory and {@link #getResult()} is what it would have returned.
+ */
+public class ChangeNotDurableException extends RuntimeException {
+    private final transient Object result;
+
+    public ChangeNotDurableException(String message, Throwable cause) {
+        this(message, cause, null);
+    }
+
+    private ChangeNotDurableException(String message, Throwable cause, Object result) {
+        super(message, cause);
+        this.result = result;
+    }
+
+    /**
+     * This failure, carrying the result of the write it interrupted.
+     */
+    ChangeNotDurableException withResult(Object result) {
+        ChangeNotDurableException withResult = new ChangeNotDurableException(getMessage(), getCause(), result);
+        withResult.setStackTrace(getStackTrace());
+        return withResult;
+    }
+
+    /**
+     * What the write returned, for the writes that report more than whether they changed
+     * anything, such as {@code createAll}; {@code null} otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getResult() {
+        return (T) result;
+    }
+}
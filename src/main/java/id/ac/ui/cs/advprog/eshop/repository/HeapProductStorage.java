@@ -0,0 +1,22 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+/**
+ * Keeps each product as a regular object on the Java heap.
+ */
+public class HeapProductStorage implements ProductStorage {
+
+    @Override
+    public ProductSlot store(long sequence, Product product) {
+        return new HeapProductSlot(sequence, product);
+    }
+
+    @Override
+    public void release(ProductSlot slot) {
+        // Nothing to free, the garbage collector reclaims the product
+    }
+
+    private record HeapProductSlot(long sequence, Product product) implements ProductSlot {
+    }
+}
@@ -0,0 +1,27 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the changes of one repository. A change is counted only after it is visible to
+ * readers, so whoever reads the stamp before reading the data never pairs a stamp with
+ * data older than it.
+ */
+final class ModificationTracker {
+    // Starts from the clock, so versions keep growing across restarts and a tag handed
+    // out before a restart never matches different data afterwards
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() << 20);
+    private final AtomicLong lastModified = new AtomicLong(System.currentTimeMillis());
+
+    void modified() {
+        lastModified.accumulateAndGet(System.currentTimeMillis(), Math::max);
+        version.incrementAndGet();
+    }
+
+    ModificationStamp stamp() {
+        long currentVersion = version.get();
+        return new ModificationStamp(currentVersion, lastModified.get());
+    }
+}
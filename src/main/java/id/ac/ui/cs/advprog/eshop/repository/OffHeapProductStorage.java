@@ -0,0 +1,302 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Keeps product state outside the Java heap, in fixed-width columns backed by direct
+ * buffers: UUID ids as two longs, quantities as ints, versions as longs, and names as
+ * UTF-8 bytes in a shared string arena. A {@link Product} object is only built when a slot
+ * is read, so the garbage collector does not trace product state. The repository's map
+ * entries, keys and secondary indexes stay on the heap, including the normalized name the
+ * name index keeps per product.
+ *
+ * <p>Released rows are reused by later writes. Every row carries a generation number that
+ * changes on release, which lets a reader holding an old slot notice that its row now
+ * belongs to another product. The arena is compacted once more than half of it is garbage.
+ *
+ * <p>Writes are serialized by one lock. Reads take no lock: they read optimistically and
+ * check that no write happened meanwhile, and only fall back to waiting for the lock when
+ * one did. A compaction copies every live string under the write lock, which is paid for
+ * by the releases that made half the arena garbage, but reads overlapping it wait.
+ */
+public class OffHeapProductStorage implements ProductStorage {
+    private static final byte FREE_ROW = 0;
+    private static final byte UUID_ID = 1;
+    private static final byte STRING_ID = 2;
+    private static final int NO_NAME = -1;
+    private static final int MIN_ARENA_BYTES_TO_COMPACT = 1 << 20;
+
+    private final StampedLock lock = new StampedLock();
+
+    // Guarded by lock
+    private final Column idKinds = new Column(Byte.BYTES);
+    // Most and least significant bits of a UUID id, or arena offset and length of any other id
+    private final Column idHigh = new Column(Long.BYTES);
+    private final Column idLow = new Column(Long.BYTES);
+    private final Column quantities = new Column(Integer.BYTES);
+    private final Column versions = new Column(Long.BYTES);
+    private final Column nameOffsets = new Column(Integer.BYTES);
+    private final Column nameLengths = new Column(Integer.BYTES);
+    private final Column generations = new Column(Integer.BYTES);
+    private final Column[] columns = {idKinds, idHigh, idLow, quantities, versions, nameOffsets, nameLengths, generations};
+    private int capacity;
+    private int rowCount;
+    private int[] freeRows = new int[16];
+    private int freeRowCount;
+    private ByteBuffer arena;
+    private int arenaUsed;
+    private int arenaGarbage;
+
+    public OffHeapProductStorage(int initialCapacity) {
+        capacity = Math.max(16, initialCapacity);
+        for (Column column : columns) {
+            column.resize(capacity);
+        }
+        arena = ByteBuffer.allocateDirect(capacity * 32);
+    }
+
+    @Override
+    public ProductSlot store(long sequence, Product product) {
+        byte[] name = product.getProductName() == null ? null : product.getProductName().getBytes(StandardCharsets.UTF_8);
+        String productId = product.getProductId();
+        long stamp = lock.writeLock();
+        try {
+            int row = allocateRow();
+            if (Uuids.isCanonical(productId)) {
+                idKinds.buffer.put(row, UUID_ID);
+                idHigh.putLong(row, Uuids.mostSignificantBits(productId));
+                idLow.putLong(row, Uuids.leastSignificantBits(productId));
+            } else {
+                byte[] id = productId.getBytes(StandardCharsets.UTF_8);
+                idKinds.buffer.put(row, STRING_ID);
+                idHigh.putLong(row, appendToArena(id));
+                idLow.putLong(row, id.length);
+            }
+            if (name == null) {
+                nameOffsets.putInt(row, 0);
+                nameLengths.putInt(row, NO_NAME);
+            } else {
+                nameOffsets.putInt(row, appendToArena(name));
+                nameLengths.putInt(row, name.length);
+            }
+            quantities.putInt(row, product.getProductQuantity());
+            versions.putLong(row, product.getVersion());
+            return new OffHeapProductSlot(sequence, row, generations.getInt(row));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void release(ProductSlot slot) {
+        OffHeapProductSlot offHeapSlot = (OffHeapProductSlot) slot;
+        int row = offHeapSlot.row();
+        long stamp = lock.writeLock();
+        try {
+            if (generations.getInt(row) != offHeapSlot.generation()) {
+                return;
+            }
+            generations.putInt(row, offHeapSlot.generation() + 1);
+            if (idKinds.buffer.get(row) == STRING_ID) {
+                arenaGarbage += (int) idLow.getLong(row);
+            }
+            arenaGarbage += Math.max(0, nameLengths.getInt(row));
+            idKinds.buffer.put(row, FREE_ROW);
+            if (freeRowCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+            }
+            freeRows[freeRowCount++] = row;
+            if (arenaGarbage > MIN_ARENA_BYTES_TO_COMPACT && arenaGarbage > arenaUsed / 2) {
+                compactArena();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Number of bytes currently reserved outside the heap.
+     */
+    public long offHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            long total = arena.capacity();
+            for (Column column : columns) {
+                total += column.buffer.capacity();
+            }
+            return total;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Product read(int row, int generation) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Product product = readRow(row, generation);
+                if (lock.validate(stamp)) {
+                    return product;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // A write moved the columns or the arena while we read them, read again below
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return readRow(row, generation);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads a row without locking. Racing with a write, it may return garbage or throw
+     * {@link IndexOutOfBoundsException}, but never allocates more than the arena holds.
+     */
+    private Product readRow(int row, int generation) {
+        if (generations.getInt(row) != generation) {
+            return null;
+        }
+        ByteBuffer strings = arena;
+        String productId;
+        if (idKinds.buffer.get(row) == UUID_ID) {
+            productId = Uuids.format(idHigh.getLong(row), idLow.getLong(row));
+        } else {
+            productId = readString(strings, (int) idHigh.getLong(row), (int) idLow.getLong(row));
+        }
+        int nameLength = nameLengths.getInt(row);
+        String name = nameLength == NO_NAME ? null : readString(strings, nameOffsets.getInt(row), nameLength);
+        return new Product(productId, name, quantities.getInt(row), versions.getLong(row));
+    }
+
+    private int allocateRow() {
+        if (freeRowCount > 0) {
+            return freeRows[--freeRowCount];
+        }
+        if (rowCount == capacity) {
+            capacity = Math.multiplyExact(capacity, 2);
+            for (Column column : columns) {
+                column.resize(capacity);
+            }
+        }
+        return rowCount++;
+    }
+
+    private int appendToArena(byte[] bytes) {
+        if (arena.capacity() - arenaUsed < bytes.length) {
+            int required = Math.addExact(arenaUsed, bytes.length);
+            arena = copyArena(Math.max(required, (int) Math.min(Integer.MAX_VALUE, arena.capacity() * 2L)));
+        }
+        int offset = arenaUsed;
+        arena.put(offset, bytes);
+        arenaUsed += bytes.length;
+        return offset;
+    }
+
+    private ByteBuffer copyArena(int newCapacity) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(newCapacity);
+        bigger.put(0, arena, 0, arenaUsed);
+        return bigger;
+    }
+
+    private void compactArena() {
+        ByteBuffer compacted = ByteBuffer.allocateDirect(Math.max(arenaUsed - arenaGarbage, 1) * 2);
+        int used = 0;
+        for (int row = 0; row < rowCount; row++) {
+            byte kind = idKinds.buffer.get(row);
+            if (kind == FREE_ROW) {
+                continue;
+            }
+            if (kind == STRING_ID) {
+                int length = (int) idLow.getLong(row);
+                compacted.put(used, arena, (int) idHigh.getLong(row), length);
+                idHigh.putLong(row, used);
+                used += length;
+            }
+            int nameLength = nameLengths.getInt(row);
+            if (nameLength != NO_NAME) {
+                compacted.put(used, arena, nameOffsets.getInt(row), nameLength);
+                nameOffsets.putInt(row, used);
+                used += nameLength;
+            }
+        }
+        arena = compacted;
+        arenaUsed = used;
+        arenaGarbage = 0;
+    }
+
+    private static String readString(ByteBuffer strings, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, strings.capacity());
+        byte[] bytes = new byte[length];
+        strings.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Column {
+        private final int width;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+
+        Column(int width) {
+            this.width = width;
+        }
+
+        void resize(int rows) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(Math.multiplyExact(rows, width));
+            bigger.put(0, buffer, 0, buffer.capacity());
+            buffer = bigger;
+        }
+
+        int getInt(int row) {
+            return buffer.getInt(row * width);
+        }
+
+        void putInt(int row, int value) {
+            buffer.putInt(row * width, value);
+        }
+
+        long getLong(int row) {
+            return buffer.getLong(row * width);
+        }
+
+        void putLong(int row, long value) {
+            buffer.putLong(row * width, value);
+        }
+    }
+
+    private final class OffHeapProductSlot implements ProductSlot {
+        private final long sequence;
+        private final int row;
+        private final int generation;
+
+        OffHeapProductSlot(long sequence, int row, int generation) {
+            this.sequence = sequence;
+            this.row = row;
+            this.generation = generation;
+        }
+
+        @Override
+        public long sequence() {
+            return sequence;
+        }
+
+        @Override
+        public Product product() {
+            return read(row, generation);
+        }
+
+        int row() {
+            return row;
+        }
+
+        int generation() {
+            return generation;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the position of the last item of a page into the opaque cursor handed to clients:
+ * an insertion sequence, or for sorted listings the sort value and id of the item.
+ */
+public final class PageCursor {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private PageCursor() {
+    }
+
+    public static String encode(long sequence) {
+        return ENCODER.encodeToString(Long.toString(sequence, Character.MAX_RADIX).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns the sequence stored in the cursor, or 0 (the start of the listing) for a missing cursor.
+     *
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode(long)}
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String sequence = new String(DECODER.decode(cursor), StandardCharsets.US_ASCII);
+            return Long.parseLong(sequence, Character.MAX_RADIX);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+    }
+
+    public static String encode(String value, String id) {
+        // The id's length goes first, so neither part needs escaping
+        String position = id.length() + ":" + id + value;
+        return ENCODER.encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the position stored in a cursor from {@link #encode(String, String)}, or
+     * {@code null} for a missing cursor.
+     *
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode(String, String)}
+     */
+    public static Position decodePosition(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String position = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            int idEnd = separator + 1 + Integer.parseInt(position.substring(0, separator));
+            return new Position(position.substring(idEnd), position.substring(separator + 1, idEnd));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+    }
+
+    public record Position(String value, String id) {
+    }
+}
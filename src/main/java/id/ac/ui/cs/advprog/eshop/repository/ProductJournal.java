@@ -0,0 +1,24 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+/**
+ * Receives every change made through {@link ProductRepository}, so it can be persisted.
+ * Calls happen while the change is being applied and in the same order per product id;
+ * if a journal throws, the change is not applied. The caller holds the locks of the
+ * products involved, never a monitor, so virtual threads stay unpinned, but other writers
+ * of those products wait: waiting for slow storage belongs in {@link #changesApplied()}.
+ */
+public interface ProductJournal {
+    void productSaved(Product product);
+
+    void productDeleted(String productId);
+
+    /**
+     * Called on the same thread after each repository operation, once its locks are
+     * released, whether or not it changed anything. If it throws, the changes stay applied,
+     * so it should throw {@link ChangeNotDurableException} when they could not be persisted.
+     */
+    default void changesApplied() {
+    }
+}
@@ -0,0 +1,43 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sorted index over normalized product names, so alphabetical listings and prefix queries
+ * are range scans.
+ */
+class ProductNameIndex extends SortedProductIndex<String> {
+    private static final char MAX_CHAR = '\uffff';
+
+    ProductNameIndex() {
+        super(product -> product.getProductName() == null ? null : normalize(product.getProductName()),
+                name -> name);
+    }
+
+    static String normalize(String name) {
+        return name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Exclusive upper bound of the names that start with {@code prefix}.
+     */
+    static String afterPrefix(String prefix) {
+        return normalize(prefix) + MAX_CHAR;
+    }
+
+    List<CatalogKey> findKeysByPrefix(String prefix, int limit) {
+        String normalizedPrefix = normalize(prefix);
+        List<CatalogKey> keys = new ArrayList<>(Math.min(limit, 64));
+        for (Entry<String> entry : range(normalizedPrefix, afterPrefix(normalizedPrefix), null, false)) {
+            if (keys.size() == limit) {
+                break;
+            }
+            keys.add(entry.key());
+        }
+        return keys;
+    }
+}
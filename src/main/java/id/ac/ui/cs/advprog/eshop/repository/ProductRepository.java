@@ -1,38 +1,701 @@
 package id.ac.ui.cs.advprog.eshop.repository;
 
+import id.ac.ui.cs.advprog.eshop.ids.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.ids.TimeOrderedIdGenerator;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 @Repository
 public class ProductRepository {
-    private List<Product> productData = new ArrayList<>();
+    static final int LOCK_STRIPES = 256;
+
+    // Products are keyed by id for constant-time lookups, while the insertion
+    // sequence keeps findAll() in creation order. Both share one key per product.
+    private final Map<CatalogKey, ProductSlot> productData = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Long, CatalogKey> insertionOrder = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Every change to an id holds that id's lock, and secondary indexes are only changed
+    // under it, so they follow the same per-id order as productData. The locks are not
+    // monitors, so a journal that blocks does not pin the carrier of a virtual thread;
+    // journals that wait for storage do so after they are released.
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final ProductNameIndex nameIndex = new ProductNameIndex();
+    private final SortedProductIndex<Integer> quantityIndex =
+            new SortedProductIndex<>(Product::getProductQuantity, Integer::valueOf);
+    private final List<ProductJournal> journals = new CopyOnWriteArrayList<>();
+    private final List<QuantityListener> quantityListeners = new CopyOnWriteArrayList<>();
+    // Shared by every change, taken exclusively by pauseWrites()
+    private final ReadWriteLock writeGate = new ReentrantReadWriteLock();
+    private final ProductStorage storage;
+    private final IdGenerator idGenerator;
+    private final ModificationTracker modifications = new ModificationTracker();
+
+    public ProductRepository() {
+        this(new HeapProductStorage());
+    }
+
+    public ProductRepository(ProductStorage storage) {
+        this(storage, new TimeOrderedIdGenerator());
+    }
+
+    @Autowired
+    public ProductRepository(ProductStorage storage, IdGenerator idGenerator) {
+        this.storage = storage;
+        this.idGenerator = idGenerator;
+    }
+
+    public void addJournal(ProductJournal journal) {
+        journals.add(journal);
+    }
+
+    public void addQuantityListener(QuantityListener listener) {
+        quantityListeners.add(listener);
+    }
+
+    /**
+     * Returns the current modification version, which grows with every change to any
+     * product. Read it before the data it should describe.
+     */
+    public ModificationStamp modificationStamp() {
+        return modifications.stamp();
+    }
+
+    /**
+     * Number of stored products.
+     */
+    public int size() {
+        return productData.size();
+    }
+
+    /**
+     * Runs {@code action} while no change is in progress, so every change a journal has
+     * been told about is also visible to readers of this repository.
+     */
+    public void pauseWrites(Runnable action) {
+        writeGate.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            writeGate.writeLock().unlock();
+        }
+    }
 
     public Product create(Product product) {
-        productData.add(product);
-        return product;
+        try {
+            ProductSlot replaced;
+            writeGate.readLock().lock();
+            try {
+                replaced = put(product);
+            } finally {
+                writeGate.readLock().unlock();
+            }
+            modifications.modified();
+            releaseIfPresent(replaced);
+            return product;
+        } finally {
+            changesApplied();
+        }
     }
 
+    /**
+     * Stores {@code product} unless a product with its id already exists, checking and
+     * storing in one atomic step. Returns whether it was stored.
+     */
+    public boolean createIfAbsent(Product product) {
+        try {
+            ProductSlot existing;
+            writeGate.readLock().lock();
+            try {
+                existing = put(product, false);
+            } finally {
+                writeGate.readLock().unlock();
+            }
+            if (existing != null) {
+                return false;
+            }
+            modifications.modified();
+            return true;
+        } finally {
+            changesApplied();
+        }
+    }
+
+    /**
+     * Creates several products in one call, like {@link #createIfAbsent} for each, and
+     * returns the positions in {@code products} of those skipped because their id was
+     * taken. Each product is stored atomically on its own, so readers may see part of the
+     * batch before the call returns.
+     */
+    public List<Integer> createAll(List<Product> products) {
+        List<Integer> skipped = new ArrayList<>();
+        try {
+            writeGate.readLock().lock();
+            try {
+                for (int i = 0; i < products.size(); i++) {
+                    if (put(products.get(i), false) != null) {
+                        skipped.add(i);
+                    }
+                }
+            } finally {
+                writeGate.readLock().unlock();
+                // Also counts a batch that failed part way, some of it may be stored
+                modifications.modified();
+            }
+            return skipped;
+        } finally {
+            changesApplied(skipped);
+        }
+    }
+
+    /**
+     * Puts back a product loaded from persistent storage. An existing product with the
+     * same id keeps its place in the listing. Journals are not notified.
+     */
+    public void restore(Product product) {
+        CatalogKey key = CatalogKey.of(product.getProductId());
+        ProductSlot existing;
+        ReentrantLock lock = locks.lockFor(key);
+        lock.lock();
+        try {
+            existing = productData.get(key);
+            long slotSequence = existing != null ? existing.sequence() : sequence.incrementAndGet();
+            ProductSlot slot = storage.store(slotSequence, product);
+            if (existing != null) {
+                unindex(existing.product(), key);
+            } else {
+                insertionOrder.put(slotSequence, key);
+            }
+            index(product, key);
+            productData.put(key, slot);
+        } finally {
+            lock.unlock();
+        }
+        modifications.modified();
+        releaseIfPresent(existing);
+    }
+
+    /**
+     * Lists the products in insertion order. The scan is weakly consistent: an entry left
+     * behind by a replaced product is skipped, so a product is found at its current place
+     * only, and is listed twice only if it was replaced, moving it to the end, after the
+     * scan had passed it.
+     */
     public Iterator<Product> findAll() {
-        return productData.iterator();
+        return insertionOrder.entrySet().stream()
+                .map(entry -> find(entry.getValue(), entry.getKey()))
+                .filter(Objects::nonNull)
+                .iterator();
+    }
+
+    /**
+     * Returns up to {@code size} products created after the position encoded in
+     * {@code afterCursor}. The cost depends on the page size, not on the catalog size.
+     */
+    public Page<Product> findPage(String afterCursor, int size) {
+        Iterator<Map.Entry<Long, CatalogKey>> entries = insertionOrder
+                .tailMap(PageCursor.decode(afterCursor), false)
+                .entrySet().iterator();
+        List<Product> items = new ArrayList<>(size);
+        long lastSequence = 0;
+        while (entries.hasNext()) {
+            Map.Entry<Long, CatalogKey> entry = entries.next();
+            Product product = find(entry.getValue(), entry.getKey());
+            if (product == null) {
+                continue;
+            }
+            if (items.size() == size) {
+                return new Page<>(items, PageCursor.encode(lastSequence));
+            }
+            items.add(product);
+            lastSequence = entry.getKey();
+        }
+        return new Page<>(items, null);
+    }
+
+    /**
+     * Returns up to {@code limit} products whose name starts with {@code prefix},
+     * ignoring case, in alphabetical order.
+     */
+    public List<Product> searchByNamePrefix(String prefix, int limit) {
+        String normalizedPrefix = ProductNameIndex.normalize(prefix);
+        List<Product> matches = new ArrayList<>();
+        for (CatalogKey key : nameIndex.findKeysByPrefix(normalizedPrefix, limit)) {
+            Product product = find(key);
+            // The product may have been renamed between the index scan and this lookup
+            if (product != null && product.getProductName() != null
+                    && ProductNameIndex.normalize(product.getProductName()).startsWith(normalizedPrefix)) {
+                matches.add(product);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns up to {@code size} products with a quantity from {@code minQuantity} to
+     * {@code maxQuantity}, both inclusive and either optionally {@code null}, lowest quantity
+     * first or, when {@code descending}, highest first. The cost depends on the page size,
+     * not on the catalog size.
+     *
+     * @throws IllegalArgumentException if the cursor does not come from this listing
+     */
+    public Page<Product> findPageByQuantity(Integer minQuantity, Integer maxQuantity, boolean descending,
+                                            String afterCursor, int size) {
+        Integer to = maxQuantity == null || maxQuantity == Integer.MAX_VALUE ? null : maxQuantity + 1;
+        return findSortedPage(quantityIndex, minQuantity, to, descending, afterCursor, size);
+    }
+
+    /**
+     * Returns up to {@code size} products in alphabetical order of their name, ignoring
+     * case, or in reverse when {@code descending}. Only names from {@code fromName} up to
+     * and including those that start with {@code toName} are listed; either may be
+     * {@code null}. Products without a name are not listed. The cost depends on the page
+     * size, not on the catalog size.
+     *
+     * @throws IllegalArgumentException if the cursor does not come from this listing
+     */
+    public Page<Product> findPageByName(String fromName, String toName, boolean descending,
+                                        String afterCursor, int size) {
+        String from = fromName == null ? null : ProductNameIndex.normalize(fromName);
+        String to = toName == null ? null : ProductNameIndex.afterPrefix(toName);
+        return findSortedPage(nameIndex, from, to, descending, afterCursor, size);
+    }
+
+    private <V extends Comparable<? super V>> Page<Product> findSortedPage(
+            SortedProductIndex<V> index, V from, V to, boolean descending, String afterCursor, int size) {
+        List<Product> items = new ArrayList<>(size);
+        SortedProductIndex.Entry<V> last = null;
+        for (SortedProductIndex.Entry<V> entry : index.range(from, to, index.decodeCursor(afterCursor), descending)) {
+            Product product = find(entry.key());
+            // The product may have changed between the index scan and this lookup, its
+            // current entry is elsewhere in the index
+            if (product == null || !index.describes(entry, product)) {
+                continue;
+            }
+            if (items.size() == size) {
+                return new Page<>(items, index.cursorAfter(last));
+            }
+            items.add(product);
+            last = entry;
+        }
+        return new Page<>(items, null);
     }
 
     public Product findById(String id) {
-        for (Product product : productData) {
-            if (product.getProductId().equals(id)) {
+        return id == null ? null : find(CatalogKey.of(id));
+    }
+
+    private Product find(CatalogKey key) {
+        return find(key, -1);
+    }
+
+    /**
+     * Like {@link #find(CatalogKey)}, but only returns the product while it is still at
+     * {@code sequence} in the insertion order, unless {@code sequence} is negative.
+     */
+    private Product find(CatalogKey key, long sequence) {
+        while (true) {
+            ProductSlot slot = productData.get(key);
+            if (slot == null || (sequence >= 0 && slot.sequence() != sequence)) {
+                return null;
+            }
+            Product product = slot.product();
+            // A null product means the slot was released after we looked it up, so the
+            // map already holds its replacement (or nothing) by now
+            if (product != null) {
                 return product;
             }
         }
-        return null;
     }
 
-    public void deleteById(String id) {
-        Product product = findById(id);
-        if (product != null) {
-            productData.remove(product);
+    /**
+     * Runs {@code action} with the product stored under {@code id} while holding that id's
+     * lock, so no write to the product, its deletion included, happens meanwhile; quantity
+     * listeners are called under the same lock. Returns {@code false} without running the
+     * action when no product has this id.
+     */
+    public boolean withProduct(String id, Consumer<Product> action) {
+        if (id == null) {
+            return false;
+        }
+        CatalogKey key = CatalogKey.of(id);
+        ReentrantLock lock = locks.lockFor(key);
+        lock.lock();
+        try {
+            ProductSlot slot = productData.get(key);
+            if (slot == null) {
+                return false;
+            }
+            // Slots are only released once replaced or removed, which this lock prevents
+            action.accept(slot.product());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the product with the given id in one atomic step, but only if
+     * {@code updatedProduct} was based on the version currently stored.
+     * Returns the new product, or {@code null} when no product has this id.
+     */
+    public Product update(String id, Product updatedProduct) {
+        try {
+            if (id == null) {
+                return null;
+            }
+            CatalogKey key = CatalogKey.of(id);
+            ProductSlot current;
+            Product updated = null;
+            ReentrantLock lock = locks.lockFor(key);
+            writeGate.readLock().lock();
+            lock.lock();
+            try {
+                current = productData.get(key);
+                if (current != null) {
+                    Product existing = current.product();
+                    if (existing.getVersion() != updatedProduct.getVersion()) {
+                        throw new VersionConflictException(id, updatedProduct.getVersion(), existing.getVersion());
+                    }
+                    Product next = new Product(id, updatedProduct.getProductName(),
+                            updatedProduct.getProductQuantity(), existing.getVersion() + 1);
+                    journals.forEach(journal -> journal.productSaved(next));
+                    ProductSlot slot = storage.store(current.sequence(), next);
+                    unindex(existing, key);
+                    index(next, key);
+                    productData.put(key, slot);
+                    quantityChanged(existing, next);
+                    updated = next;
+                }
+            } finally {
+                lock.unlock();
+                writeGate.readLock().unlock();
+            }
+            if (updated == null) {
+                return null;
+            }
+            modifications.modified();
+            releaseIfPresent(current);
+            return updated;
+        } finally {
+            changesApplied();
+        }
+    }
+
+    /**
+     * Changes the quantity of the product with the given id in one atomic step, starting
+     * from the quantity stored at that moment, so concurrent adjustments of the same product
+     * never overwrite each other. {@code adjustment} receives the current quantity and
+     * returns the new one, or a negative number to refuse the change. Returns {@code null}
+     * when no product has this id.
+     */
+    public StockAdjustment adjustQuantity(String id, IntUnaryOperator adjustment) {
+        try {
+            if (id == null) {
+                return null;
+            }
+            CatalogKey key = CatalogKey.of(id);
+            ProductSlot current;
+            StockAdjustment result = null;
+            boolean changed = false;
+            ReentrantLock lock = locks.lockFor(key);
+            writeGate.readLock().lock();
+            lock.lock();
+            try {
+                current = productData.get(key);
+                if (current != null) {
+                    Product existing = current.product();
+                    int quantity = adjustment.applyAsInt(existing.getProductQuantity());
+                    if (quantity < 0) {
+                        result = new StockAdjustment(existing, false);
+                    } else if (quantity == existing.getProductQuantity()) {
+                        result = new StockAdjustment(existing, true);
+                    } else {
+                        Product next = new Product(id, existing.getProductName(), quantity, existing.getVersion() + 1);
+                        journals.forEach(journal -> journal.productSaved(next));
+                        quantityIndex.remove(existing, key);
+                        quantityIndex.add(next, key);
+                        productData.put(key, storage.store(current.sequence(), next));
+                        quantityChanged(existing, next);
+                        result = new StockAdjustment(next, true);
+                        changed = true;
+                    }
+                }
+            } finally {
+                lock.unlock();
+                writeGate.readLock().unlock();
+            }
+            if (changed) {
+                modifications.modified();
+                releaseIfPresent(current);
+            }
+            return result;
+        } finally {
+            changesApplied();
+        }
+    }
+
+    /**
+     * Applies many quantity deltas in one pass, holding the locks of every product involved
+     * so no other write interleaves. Deltas for the same product apply in order. A delta for
+     * a missing product, or one that would take a quantity below 0 or past
+     * {@link Integer#MAX_VALUE}, is refused; with {@code allOrNothing} a single refusal
+     * leaves every product unchanged. Each changed product is journaled and stored once,
+     * with one new version. Results are in the order of {@code deltas}.
+     */
+    public List<StockDeltaResult> applyDeltas(List<StockDelta> deltas, boolean allOrNothing) {
+        List<StockDeltaResult> results = new ArrayList<>(deltas.size());
+        try {
+            // One entry per product the batch touches, in order of first appearance
+            Map<CatalogKey, PendingQuantity> pending = new LinkedHashMap<>();
+            PendingQuantity[] products = new PendingQuantity[deltas.size()];
+            for (int i = 0; i < deltas.size(); i++) {
+                String id = deltas.get(i).productId();
+                if (id != null) {
+                    products[i] = pending.computeIfAbsent(CatalogKey.of(id), key -> new PendingQuantity(id));
+                }
+            }
+            List<StockDeltaResult.Status> statuses = new ArrayList<>(deltas.size());
+            List<ProductSlot> replaced = new ArrayList<>();
+            writeGate.readLock().lock();
+            List<ReentrantLock> held = locks.lockAll(pending.keySet());
+            try {
+                boolean refused = false;
+                for (Map.Entry<CatalogKey, PendingQuantity> entry : pending.entrySet()) {
+                    entry.getValue().start(productData.get(entry.getKey()));
+                }
+                for (int i = 0; i < deltas.size(); i++) {
+                    PendingQuantity product = products[i];
+                    StockDeltaResult.Status status = product == null || product.slot == null
+                            ? StockDeltaResult.Status.NOT_FOUND : product.add(deltas.get(i).delta());
+                    refused |= status != StockDeltaResult.Status.APPLIED;
+                    statuses.add(status);
+                }
+
+                if (allOrNothing && refused) {
+                    statuses.replaceAll(status -> status == StockDeltaResult.Status.APPLIED
+                            ? StockDeltaResult.Status.ROLLED_BACK : status);
+                } else {
+                    for (Map.Entry<CatalogKey, PendingQuantity> entry : pending.entrySet()) {
+                        PendingQuantity product = entry.getValue();
+                        if (product.slot == null || product.quantity == product.stored.getProductQuantity()) {
+                            continue;
+                        }
+                        Product next = new Product(product.id, product.stored.getProductName(), product.quantity,
+                                product.stored.getVersion() + 1);
+                        journals.forEach(journal -> journal.productSaved(next));
+                        quantityIndex.remove(product.stored, entry.getKey());
+                        quantityIndex.add(next, entry.getKey());
+                        productData.put(entry.getKey(), storage.store(product.slot.sequence(), next));
+                        quantityChanged(product.stored, next);
+                        replaced.add(product.slot);
+                        product.stored = next;
+                    }
+                }
+                for (int i = 0; i < deltas.size(); i++) {
+                    PendingQuantity product = products[i];
+                    results.add(new StockDeltaResult(deltas.get(i).productId(), statuses.get(i),
+                            product == null ? null : product.stored));
+                }
+            } finally {
+                held.forEach(ReentrantLock::unlock);
+                writeGate.readLock().unlock();
+                if (!replaced.isEmpty()) {
+                    modifications.modified();
+                }
+            }
+            replaced.forEach(storage::release);
+            return results;
+        } finally {
+            changesApplied(results);
+        }
+    }
+
+    /**
+     * Removes the product with the given id and returns whether there was one.
+     */
+    public boolean deleteById(String id) {
+        try {
+            if (id == null) {
+                return false;
+            }
+            CatalogKey key = CatalogKey.of(id);
+            ProductSlot removed;
+            ReentrantLock lock = locks.lockFor(key);
+            writeGate.readLock().lock();
+            lock.lock();
+            try {
+                removed = productData.get(key);
+                if (removed != null) {
+                    journals.forEach(journal -> journal.productDeleted(id));
+                    insertionOrder.remove(removed.sequence());
+                    unindex(removed.product(), key);
+                    productData.remove(key);
+                }
+            } finally {
+                lock.unlock();
+                writeGate.readLock().unlock();
+            }
+            if (removed == null) {
+                return false;
+            }
+            modifications.modified();
+            storage.release(removed);
+            return true;
+        } finally {
+            changesApplied();
+        }
+    }
+
+    /**
+     * Stores a copy of {@code product} under its id at the end of the insertion order and
+     * returns the slot it replaced, which the caller must release. A product without an id
+     * is given a new one. Callers keep their own object, so changing it later cannot race
+     * with readers of the stored one.
+     */
+    private ProductSlot put(Product product) {
+        return put(product, true);
+    }
+
+    /**
+     * Like {@link #put(Product)}, but without {@code replace} an existing product is left
+     * alone and its slot returned; that slot is still in use and must not be released.
+     */
+    private ProductSlot put(Product product, boolean replace) {
+        if (product.getProductId() == null) {
+            product.setProductId(idGenerator.nextId());
+        }
+        String id = product.getProductId();
+        Product stored = new Product(id, product.getProductName(), product.getProductQuantity(),
+                product.getVersion());
+        CatalogKey key = CatalogKey.of(id);
+        ReentrantLock lock = locks.lockFor(key);
+        lock.lock();
+        try {
+            ProductSlot existing = productData.get(key);
+            if (existing != null && !replace) {
+                return existing;
+            }
+            journals.forEach(journal -> journal.productSaved(stored));
+            long nextSequence = sequence.incrementAndGet();
+            ProductSlot slot = storage.store(nextSequence, stored);
+            if (existing != null) {
+                unindex(existing.product(), key);
+            }
+            // Scans skip entries that are not the product's current one; with the new entry
+            // added before and the old one removed after the switch, a scan always finds one
+            insertionOrder.put(nextSequence, key);
+            index(stored, key);
+            productData.put(key, slot);
+            if (existing != null) {
+                insertionOrder.remove(existing.sequence());
+                quantityChanged(existing.product(), stored);
+            }
+            return existing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets journals finish the operation, such as waiting for its changes to be stored,
+     * without holding locks other writers need.
+     */
+    private void changesApplied() {
+        journals.forEach(ProductJournal::changesApplied);
+    }
+
+    /**
+     * Like {@link #changesApplied()}, for an operation whose callers need its {@code result}
+     * even when its changes could not be persisted yet.
+     */
+    private void changesApplied(Object result) {
+        try {
+            changesApplied();
+        } catch (ChangeNotDurableException e) {
+            throw e.withResult(result);
+        }
+    }
+
+    private void quantityChanged(Product previous, Product current) {
+        if (previous.getProductQuantity() != current.getProductQuantity()) {
+            quantityListeners.forEach(listener -> listener.quantityChanged(previous, current));
+        }
+    }
+
+    private void index(Product product, CatalogKey key) {
+        nameIndex.add(product, key);
+        quantityIndex.add(product, key);
+    }
+
+    private void unindex(Product product, CatalogKey key) {
+        nameIndex.remove(product, key);
+        quantityIndex.remove(product, key);
+    }
+
+    /**
+     * Running state of one product during {@link #applyDeltas}.
+     */
+    private static final class PendingQuantity {
+        private final String id;
+        private ProductSlot slot;
+        private Product stored;
+        private int quantity;
+
+        PendingQuantity(String id) {
+            this.id = id;
+        }
+
+        void start(ProductSlot current) {
+            slot = current;
+            if (current != null) {
+                stored = current.product();
+                quantity = stored.getProductQuantity();
+            }
+        }
+
+        StockDeltaResult.Status add(int delta) {
+            long next = (long) quantity + delta;
+            if (next < 0) {
+                return StockDeltaResult.Status.INSUFFICIENT_STOCK;
+            }
+            if (next > Integer.MAX_VALUE) {
+                return StockDeltaResult.Status.OVERFLOW;
+            }
+            quantity = (int) next;
+            return StockDeltaResult.Status.APPLIED;
+        }
+    }
+
+    /**
+     * Slots are released only after the map holds their replacement, so a
+     * reader that sees a released slot can always find the current one in the map.
+     */
+    private void releaseIfPresent(ProductSlot slot) {
+        if (slot != null) {
+            storage.release(slot);
         }
     }
 }
@@ -0,0 +1,16 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+/**
+ * Handle to one product held by a {@link ProductStorage}, together with its position in
+ * the insertion order of {@link ProductRepository}.
+ */
+public interface ProductSlot {
+    long sequence();
+
+    /**
+     * Returns the stored product, or {@code null} if the slot has been released since.
+     */
+    Product product();
+}
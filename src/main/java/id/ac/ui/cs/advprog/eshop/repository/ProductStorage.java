@@ -0,0 +1,17 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+/**
+ * Where {@link ProductRepository} keeps product state. The repository decides which slot
+ * belongs to which id; a storage only holds the data behind each slot.
+ */
+public interface ProductStorage {
+    ProductSlot store(long sequence, Product product);
+
+    /**
+     * Frees a slot that the repository no longer references. Readers that still hold the
+     * slot get {@code null} from {@link ProductSlot#product()} afterwards.
+     */
+    void release(ProductSlot slot);
+}
@@ -0,0 +1,14 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+/**
+ * Told about every change of a stored product's quantity made through
+ * {@link ProductRepository}, right after it is applied and in the same order per product id.
+ * Calls happen while that product's lock is held, so listeners must be quick and must not
+ * block or throw.
+ */
+@FunctionalInterface
+public interface QuantityListener {
+    void quantityChanged(Product previous, Product current);
+}
@@ -0,0 +1,116 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * Concurrent sorted index over one attribute of the stored products. Each entry pairs the
+ * value with the key the product is stored under, so equal values stay distinct and every
+ * entry has a unique place a page can resume after. A range, in either direction, is a
+ * skip-list scan that costs O(log n + k) regardless of catalog size. Products whose value
+ * is {@code null} are not indexed.
+ */
+class SortedProductIndex<V extends Comparable<? super V>> {
+    private final ConcurrentSkipListSet<Entry<V>> entries = new ConcurrentSkipListSet<>();
+    private final Function<Product, V> valueOf;
+    private final Function<String, V> parser;
+
+    /**
+     * @param valueOf reads the indexed value of a product
+     * @param parser  reads a value back from its {@code toString()} form, for page cursors
+     */
+    SortedProductIndex(Function<Product, V> valueOf, Function<String, V> parser) {
+        this.valueOf = valueOf;
+        this.parser = parser;
+    }
+
+    /**
+     * Indexes {@code product}, which is stored under {@code key}.
+     */
+    void add(Product product, CatalogKey key) {
+        V value = valueOf.apply(product);
+        if (value != null) {
+            entries.add(new Entry<>(value, key));
+        }
+    }
+
+    void remove(Product product, CatalogKey key) {
+        V value = valueOf.apply(product);
+        if (value != null) {
+            entries.remove(new Entry<>(value, key));
+        }
+    }
+
+    /**
+     * Whether {@code entry} still describes {@code product}, which may have changed since
+     * the entry was read.
+     */
+    boolean describes(Entry<V> entry, Product product) {
+        return Objects.equals(valueOf.apply(product), entry.value());
+    }
+
+    /**
+     * Entries with {@code from <= value < to}, in ascending or descending order, that come
+     * after {@code after} in that order. Any of the bounds may be {@code null}.
+     */
+    NavigableSet<Entry<V>> range(V from, V to, Entry<V> after, boolean descending) {
+        // A null key sorts before every entry with the same value
+        Entry<V> low = from == null ? null : new Entry<>(from, null);
+        boolean lowInclusive = true;
+        Entry<V> high = to == null ? null : new Entry<>(to, null);
+        if (after != null && !descending && (low == null || after.compareTo(low) >= 0)) {
+            low = after;
+            lowInclusive = false;
+        } else if (after != null && descending && (high == null || after.compareTo(high) < 0)) {
+            high = after;
+        }
+        if (low != null && high != null && low.compareTo(high) >= 0) {
+            return Collections.emptyNavigableSet();
+        }
+        NavigableSet<Entry<V>> view;
+        if (low == null) {
+            view = high == null ? entries : entries.headSet(high, false);
+        } else {
+            view = high == null ? entries.tailSet(low, lowInclusive) : entries.subSet(low, lowInclusive, high, false);
+        }
+        return descending ? view.descendingSet() : view;
+    }
+
+    String cursorAfter(Entry<V> entry) {
+        return PageCursor.encode(entry.value().toString(), entry.key().id());
+    }
+
+    /**
+     * Returns the entry a cursor from {@link #cursorAfter} points at, or {@code null} for
+     * a missing cursor.
+     *
+     * @throws IllegalArgumentException if the cursor was not produced by this index
+     */
+    Entry<V> decodeCursor(String cursor) {
+        PageCursor.Position position = PageCursor.decodePosition(cursor);
+        if (position == null) {
+            return null;
+        }
+        try {
+            return new Entry<>(parser.apply(position.value()), CatalogKey.of(position.id()));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+    }
+
+    record Entry<V extends Comparable<? super V>>(V value, CatalogKey key) implements Comparable<Entry<V>> {
+        private static final Comparator<CatalogKey> KEY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+        @Override
+        public int compareTo(Entry<V> other) {
+            int byValue = value.compareTo(other.value);
+            return byValue != 0 ? byValue : KEY_ORDER.compare(key, other.key);
+        }
+    }
+}
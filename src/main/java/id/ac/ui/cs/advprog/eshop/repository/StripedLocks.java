@@ -0,0 +1,54 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of {@link ReentrantLock}s shared out by key hash, used to serialize the
+ * changes to one key. Unlike {@code ConcurrentHashMap.compute}, which runs its function
+ * while holding a monitor, a virtual thread that blocks under one of these locks (on a
+ * journal write, say) unmounts from its carrier thread instead of pinning it.
+ */
+final class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    StripedLocks(int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of stripes must be a power of two: " + stripes);
+        }
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock lockFor(Object key) {
+        return locks[indexFor(key)];
+    }
+
+    /**
+     * Locks the stripes of all {@code keys} and returns them for unlocking. Each stripe is
+     * locked once, in index order, so callers locking overlapping sets cannot deadlock.
+     */
+    List<ReentrantLock> lockAll(Collection<?> keys) {
+        BitSet stripes = new BitSet(locks.length);
+        for (Object key : keys) {
+            stripes.set(indexFor(key));
+        }
+        List<ReentrantLock> locked = new ArrayList<>(stripes.cardinality());
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            locks[i].lock();
+            locked.add(locks[i]);
+        }
+        return locked;
+    }
+
+    int indexFor(Object key) {
+        int hash = key.hashCode();
+        // Mix the high bits in, as ConcurrentHashMap does, so similar keys spread out
+        return (hash ^ (hash >>> 16)) & (locks.length - 1);
+    }
+}
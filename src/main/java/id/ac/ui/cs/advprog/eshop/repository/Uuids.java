@@ -0,0 +1,62 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.util.UUID;
+
+/**
+ * Reads canonical UUID strings (36 characters, ASCII lowercase hex, dashes at 8, 13, 18 and 23)
+ * in place, without substrings or a {@code UUID} object. Uppercase or otherwise
+ * non-canonical ids are not UUIDs here, so converting back always gives the original text.
+ */
+final class Uuids {
+
+    private Uuids() {
+    }
+
+    static boolean isCanonical(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : !isHexDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Character.digit would also accept non-ASCII digits, which are not canonical
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    static long mostSignificantBits(String id) {
+        return parseHex(id, 0, 8, 9, 13, 14, 18);
+    }
+
+    static long leastSignificantBits(String id) {
+        return parseHex(id, 19, 23, 24, 36, 36, 36);
+    }
+
+    static String format(long mostSignificantBits, long leastSignificantBits) {
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    /**
+     * Parses the hex digits of up to three ranges of {@code id} into one long.
+     */
+    private static long parseHex(String id, int from1, int to1, int from2, int to2, int from3, int to3) {
+        long value = 0;
+        for (int i = from1; i < to1; i++) {
+            value = (value << 4) | Character.digit(id.charAt(i), 16);
+        }
+        for (int i = from2; i < to2; i++) {
+            value = (value << 4) | Character.digit(id.charAt(i), 16);
+        }
+        for (int i = from3; i < to3; i++) {
+            value = (value << 4) | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+}
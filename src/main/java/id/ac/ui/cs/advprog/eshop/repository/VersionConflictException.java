@@ -0,0 +1,29 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Thrown when an update was based on a version of an entity that is no longer the current one.
+ */
+public class VersionConflictException extends RuntimeException {
+    private final String id;
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    public VersionConflictException(String id, long expectedVersion, long actualVersion) {
+        super("Entity " + id + " is at version " + actualVersion + " but the update expected version " + expectedVersion);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
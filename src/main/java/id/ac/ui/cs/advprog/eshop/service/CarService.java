@@ -1,17 +1,43 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
 import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 
 import java.util.List;
 
 public interface CarService {
 	public Car create(Car car);
 
+	/**
+	 * Creates {@code car} unless a car with its id already exists, and returns whether it
+	 * was created. A car without an id is given one.
+	 */
+	boolean createIfAbsent(Car car);
+
+	/**
+	 * Creates the cars whose id is not taken yet, and returns the positions in
+	 * {@code cars} of the others, which are left as they are.
+	 */
+	public List<Integer> createAll(List<Car> cars);
+
 	public List<Car> findAll();
 
+	public Iterable<Car> iterateAll();
+
+	public Page<Car> findPage(String afterCursor, int size);
+
+	public Page<Car> findPage(CarFilter filter, String afterCursor, int size);
+
+	public CarFacets facets();
+
 	Car findById(String carId);
 
-	public void update(String carId, Car car);
+	public Car update(String carId, Car car);
 
 	public void deleteCarById(String carId);
+
+	public ModificationStamp modificationStamp();
 }
@@ -1,27 +1,91 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
 import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Change;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
+// Every method is timed as eshop.service, tagged with its class and method name
 @Service
+@Timed(value = "eshop.service", extraTags = {"catalog", "car"}, histogram = true)
 public class CarServiceImpl implements CarService {
 	private final CarRepository carRepository;
+	private final ApplicationEventPublisher eventPublisher;
 
-	public CarServiceImpl(CarRepository carRepository) {
+	public CarServiceImpl(CarRepository carRepository, ApplicationEventPublisher eventPublisher) {
 		this.carRepository = carRepository;
+		this.eventPublisher = eventPublisher;
 	}
 
 	@Override
 	public Car create(Car car) {
-		carRepository.create(car);
+		try {
+			carRepository.create(car);
+		} catch (ChangeNotDurableException e) {
+			throw published(e, CatalogChangedEvent.car(Change.CREATED, car.getCarId()));
+		}
+		eventPublisher.publishEvent(CatalogChangedEvent.car(Change.CREATED, car.getCarId()));
 		return car;
 	}
 
+	@Override
+	public boolean createIfAbsent(Car car) {
+		boolean created;
+		try {
+			created = carRepository.createIfAbsent(car);
+		} catch (ChangeNotDurableException e) {
+			throw published(e, CatalogChangedEvent.car(Change.CREATED, car.getCarId()));
+		}
+		if (created) {
+			eventPublisher.publishEvent(CatalogChangedEvent.car(Change.CREATED, car.getCarId()));
+		}
+		return created;
+	}
+
+	@Override
+	public List<Integer> createAll(List<Car> cars) {
+		List<Integer> skipped;
+		try {
+			skipped = carRepository.createAll(cars);
+		} catch (ChangeNotDurableException e) {
+			publishCreated(cars, e.getResult());
+			throw e;
+		} catch (RuntimeException e) {
+			// Part of the batch may be stored, but not which part: only the lists surely changed
+			eventPublisher.publishEvent(new CatalogChangedEvent(Catalog.CAR, Change.CREATED, List.of()));
+			throw e;
+		}
+		publishCreated(cars, skipped);
+		return skipped;
+	}
+
+	private void publishCreated(List<Car> cars, List<Integer> skipped) {
+		Set<Integer> notCreated = new HashSet<>(skipped);
+		List<String> created = new ArrayList<>(cars.size());
+		for (int i = 0; i < cars.size(); i++) {
+			if (!notCreated.contains(i)) {
+				created.add(cars.get(i).getCarId());
+			}
+		}
+		if (!created.isEmpty()) {
+			eventPublisher.publishEvent(new CatalogChangedEvent(Catalog.CAR, Change.CREATED, created));
+		}
+	}
+
 	@Override
 	public List<Car> findAll() {
 		Iterator<Car> carIterator = carRepository.findAll();
@@ -30,18 +94,66 @@ public class CarServiceImpl implements CarService {
 		return allCar;
 	}
 
+	@Override
+	public Iterable<Car> iterateAll() {
+		return carRepository::findAll;
+	}
+
+	@Override
+	public Page<Car> findPage(String afterCursor, int size) {
+		return carRepository.findPage(afterCursor, size);
+	}
+
+	@Override
+	public Page<Car> findPage(CarFilter filter, String afterCursor, int size) {
+		return carRepository.findPage(filter, afterCursor, size);
+	}
+
+	@Override
+	public CarFacets facets() {
+		return carRepository.facets();
+	}
+
 	@Override
 	public Car findById(String carId) {
 		return carRepository.findById(carId);
 	}
 
 	@Override
-	public void update(String carId, Car car) {
-		carRepository.update(carId, car);
+	public Car update(String carId, Car car) {
+		Car updated;
+		try {
+			updated = carRepository.update(carId, car);
+		} catch (ChangeNotDurableException e) {
+			throw published(e, CatalogChangedEvent.car(Change.UPDATED, carId));
+		}
+		if (updated != null) {
+			eventPublisher.publishEvent(CatalogChangedEvent.car(Change.UPDATED, carId));
+		}
+		return updated;
 	}
 
 	@Override
 	public void deleteCarById(String carId) {
-		carRepository.delete(carId);
+		try {
+			carRepository.delete(carId);
+		} catch (ChangeNotDurableException e) {
+			throw published(e, CatalogChangedEvent.car(Change.DELETED, carId));
+		}
+		eventPublisher.publishEvent(CatalogChangedEvent.car(Change.DELETED, carId));
+	}
+
+	@Override
+	public ModificationStamp modificationStamp() {
+		return carRepository.modificationStamp();
+	}
+
+	/**
+	 * Publishes {@code event} for a write that is applied but not persisted yet, since readers
+	 * already see its change, and returns the failure to rethrow.
+	 */
+	private ChangeNotDurableException published(ChangeNotDurableException e, CatalogChangedEvent event) {
+		eventPublisher.publishEvent(event);
+		return e;
 	}
 }
@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Published by the catalog services after a create, update or delete has been applied.
+ * {@code ids} names every item whose own state changed; lists of the catalog are affected
+ * by any change. Empty {@code ids} mean items may have changed without knowing which, as
+ * when a batch failed part way; only the lists are then known to be affected.
+ */
+public record CatalogChangedEvent(Catalog catalog, Change change, Collection<String> ids) {
+
+    public enum Catalog {
+        PRODUCT,
+        CAR
+    }
+
+    public enum Change {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static CatalogChangedEvent product(Change change, String productId) {
+        return new CatalogChangedEvent(Catalog.PRODUCT, change, List.of(productId));
+    }
+
+    public static CatalogChangedEvent car(Change change, String carId) {
+        return new CatalogChangedEvent(Catalog.CAR, change, List.of(carId));
+    }
+}
@@ -0,0 +1,11 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.exporter.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface CatalogExportService {
+    void exportProducts(ExportFormat format, OutputStream out) throws IOException;
+    void exportCars(ExportFormat format, OutputStream out) throws IOException;
+}
@@ -0,0 +1,55 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.exporter.ExportFormat;
+import id.ac.ui.cs.advprog.eshop.exporter.ExportRecordWriter;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes the catalog in the column layout the bulk import reads, so an export can be
+ * imported again as it is. Rows are pulled lazily from the repositories and written
+ * straight to the output; the full list is never built.
+ */
+@Service
+public class CatalogExportServiceImpl implements CatalogExportService {
+    static final List<String> PRODUCT_COLUMNS = List.of("productId", "productName", "productQuantity");
+    static final List<String> CAR_COLUMNS = List.of("carId", "carName", "carColor", "carQuantity");
+
+    private final ProductService productService;
+    private final CarService carService;
+
+    public CatalogExportServiceImpl(ProductService productService, CarService carService) {
+        this.productService = productService;
+        this.carService = carService;
+    }
+
+    @Override
+    public void exportProducts(ExportFormat format, OutputStream out) throws IOException {
+        try (ExportRecordWriter writer = format.open(out, PRODUCT_COLUMNS)) {
+            for (Product product : productService.iterateAll()) {
+                writer.value(product.getProductId());
+                writer.value(product.getProductName());
+                writer.value(product.getProductQuantity());
+                writer.endRecord();
+            }
+        }
+    }
+
+    @Override
+    public void exportCars(ExportFormat format, OutputStream out) throws IOException {
+        try (ExportRecordWriter writer = format.open(out, CAR_COLUMNS)) {
+            for (Car car : carService.iterateAll()) {
+                writer.value(car.getCarId());
+                writer.value(car.getCarName());
+                writer.value(car.getCarColor());
+                writer.value(car.getCarQuantity());
+                writer.endRecord();
+            }
+        }
+    }
+}
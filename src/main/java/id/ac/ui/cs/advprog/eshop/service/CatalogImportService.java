@@ -0,0 +1,11 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.importer.ImportRecordReader;
+import id.ac.ui.cs.advprog.eshop.model.ImportSummary;
+
+import java.io.IOException;
+
+public interface CatalogImportService {
+    ImportSummary importProducts(ImportRecordReader records) throws IOException;
+    ImportSummary importCars(ImportRecordReader records) throws IOException;
+}
@@ -0,0 +1,135 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.importer.ImportRecordReader;
+import id.ac.ui.cs.advprog.eshop.importer.InvalidRecordException;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.ImportSummary;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Validates imported rows with the same rules as the web forms and stores the valid ones
+ * in batches, so only one batch of rows is held in memory at a time. Imports only create:
+ * a row whose id is already taken is rejected, so it cannot overwrite a newer version.
+ */
+@Service
+public class CatalogImportServiceImpl implements CatalogImportService {
+    static final int BATCH_SIZE = 1000;
+
+    private final ProductService productService;
+    private final CarService carService;
+
+    public CatalogImportServiceImpl(ProductService productService, CarService carService) {
+        this.productService = productService;
+        this.carService = carService;
+    }
+
+    @Override
+    public ImportSummary importProducts(ImportRecordReader records) throws IOException {
+        return importAll(records, productService::createAll, CatalogImportServiceImpl::toProduct,
+                product -> "Product " + product.getProductId() + " already exists");
+    }
+
+    @Override
+    public ImportSummary importCars(ImportRecordReader records) throws IOException {
+        return importAll(records, carService::createAll, CatalogImportServiceImpl::toCar,
+                car -> "Car " + car.getCarId() + " already exists");
+    }
+
+    private static <T> ImportSummary importAll(ImportRecordReader records, Function<List<T>, List<Integer>> store,
+                                               Function<ImportRecordReader, T> mapper,
+                                               Function<T, String> takenId) throws IOException {
+        ImportSummary summary = new ImportSummary();
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        List<Long> lines = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                if (!records.next()) {
+                    break;
+                }
+                batch.add(mapper.apply(records));
+                lines.add(records.lineNumber());
+            } catch (InvalidRecordException e) {
+                // Unparseable and invalid rows are reported and skipped, the rest still go in
+                summary.reject(e.getLineNumber(), e.getMessage());
+                continue;
+            }
+            if (batch.size() == BATCH_SIZE) {
+                storeBatch(batch, lines, store, takenId, summary);
+                batch = new ArrayList<>(BATCH_SIZE);
+                lines = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            storeBatch(batch, lines, store, takenId, summary);
+        }
+        return summary;
+    }
+
+    private static <T> void storeBatch(List<T> batch, List<Long> lines, Function<List<T>, List<Integer>> store,
+                                       Function<T, String> takenId, ImportSummary summary) {
+        List<Integer> skipped;
+        try {
+            skipped = store.apply(batch);
+        } catch (ChangeNotDurableException e) {
+            // The batch is applied all the same, so the import goes on
+            skipped = e.getResult();
+            summary.notStored(batch.size() - skipped.size());
+        }
+        summary.accept(batch.size() - skipped.size());
+        for (int position : skipped) {
+            summary.reject(lines.get(position), takenId.apply(batch.get(position)));
+        }
+    }
+
+    private static Product toProduct(ImportRecordReader record) {
+        Product product = new Product();
+        String productId = record.get("productId");
+        if (productId != null && !productId.isBlank()) {
+            product.setProductId(productId.trim());
+        }
+        product.setProductName(record.get("productName"));
+        product.setProductQuantity(parseQuantity(record, "productQuantity", CatalogValidation.INVALID_PRODUCT));
+        if (!CatalogValidation.isValid(product)) {
+            throw new InvalidRecordException(record.lineNumber(), CatalogValidation.INVALID_PRODUCT);
+        }
+        return product;
+    }
+
+    private static Car toCar(ImportRecordReader record) {
+        Car car = new Car();
+        String carId = record.get("carId");
+        if (carId != null && !carId.isBlank()) {
+            car.setCarId(carId.trim());
+        }
+        car.setCarName(record.get("carName"));
+        car.setCarColor(record.get("carColor"));
+        car.setCarQuantity(parseQuantity(record, "carQuantity", CatalogValidation.INVALID_CAR));
+        if (!CatalogValidation.isValid(car)) {
+            throw new InvalidRecordException(record.lineNumber(), CatalogValidation.INVALID_CAR);
+        }
+        return car;
+    }
+
+    /**
+     * Reads a quantity column. A missing quantity is {@code invalid}, like an empty quantity
+     * field on the create form.
+     */
+    private static int parseQuantity(ImportRecordReader record, String column, String invalid) {
+        String quantity = record.get(column);
+        if (quantity == null || quantity.isBlank()) {
+            throw new InvalidRecordException(record.lineNumber(), invalid);
+        }
+        try {
+            return Integer.parseInt(quantity.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidRecordException(record.lineNumber(), column + " must be a whole number");
+        }
+    }
+}
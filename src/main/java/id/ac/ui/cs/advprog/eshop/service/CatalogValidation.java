@@ -0,0 +1,41 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+/**
+ * Rules every product and car must meet before it is stored, shared by the web forms, the
+ * JSON API and the bulk import.
+ */
+public final class CatalogValidation {
+    /**
+     * Longest id, name or color accepted, the width of the text columns the catalog is
+     * persisted in. A longer value would be kept in memory but never stored.
+     */
+    public static final int MAX_TEXT_LENGTH = 255;
+    public static final String INVALID_PRODUCT = "Product name cannot be empty and quantity must be at least 0; "
+            + "id and name can have at most " + MAX_TEXT_LENGTH + " characters";
+    public static final String INVALID_CAR = "Car name cannot be empty and quantity must be at least 0; "
+            + "id, name and color can have at most " + MAX_TEXT_LENGTH + " characters";
+
+    private CatalogValidation() {
+    }
+
+    public static boolean isValid(Product product) {
+        return isNotBlank(product.getProductName()) && product.getProductQuantity() >= 0
+                && fits(product.getProductId()) && fits(product.getProductName());
+    }
+
+    public static boolean isValid(Car car) {
+        return isNotBlank(car.getCarName()) && car.getCarQuantity() >= 0
+                && fits(car.getCarId()) && fits(car.getCarName()) && fits(car.getCarColor());
+    }
+
+    private static boolean isNotBlank(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static boolean fits(String value) {
+        return value == null || value.length() <= MAX_TEXT_LENGTH;
+    }
+}
@@ -1,13 +1,90 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
 
 import java.util.List;
 
 public interface ProductService {
     Product create(Product product);
+
+    /**
+     * Creates {@code product} unless a product with its id already exists, and returns
+     * whether it was created. A product without an id is given one.
+     */
+    boolean createIfAbsent(Product product);
+
+    /**
+     * Creates the products whose id is not taken yet, and returns the positions in
+     * {@code products} of the others, which are left as they are.
+     */
+    List<Integer> createAll(List<Product> products);
     List<Product> findAll();
+    Iterable<Product> iterateAll();
+    Page<Product> findPage(String afterCursor, int size);
+
+    /**
+     * Lists products by quantity, lowest first unless {@code descending}, limited to
+     * {@code minQuantity..maxQuantity} (inclusive, either may be {@code null}).
+     */
+    Page<Product> findPageByQuantity(Integer minQuantity, Integer maxQuantity, boolean descending,
+                                     String afterCursor, int size);
+
+    /**
+     * Lists products alphabetically, A to Z unless {@code descending}, from {@code fromName}
+     * up to the names starting with {@code toName} (either may be {@code null}).
+     */
+    Page<Product> findPageByName(String fromName, String toName, boolean descending, String afterCursor, int size);
     Product findById(String id);
+    List<Product> searchByName(String prefix, int limit);
     Product update(String id, Product product);
     void deleteById(String id);
+
+    /**
+     * Adds {@code amount} to the stock of a product. Refused when the quantity would
+     * overflow. Returns {@code null} when no product has this id.
+     */
+    StockAdjustment addStock(String id, int amount);
+
+    /**
+     * Removes up to {@code amount} from the stock of a product; the quantity stops at 0.
+     * Returns {@code null} when no product has this id.
+     */
+    StockAdjustment subtractStock(String id, int amount);
+
+    /**
+     * Takes exactly {@code amount} from the stock of a product if that many are available,
+     * and otherwise changes nothing. Returns {@code null} when no product has this id.
+     */
+    StockAdjustment reserveStock(String id, int amount);
+
+    /**
+     * Applies many stock deltas in one call, with one result per delta in the same order.
+     * With {@code allOrNothing}, one refused delta leaves every product unchanged;
+     * otherwise the valid deltas are applied and the others are reported.
+     */
+    List<StockDeltaResult> applyStockDeltas(List<StockDelta> deltas, boolean allOrNothing);
+
+    /**
+     * Gives a product a low-stock threshold of its own instead of the global one. A product
+     * the new threshold moves across is reported right away. Returns {@code false} when no
+     * product has this id.
+     */
+    boolean setLowStockThreshold(String id, int threshold);
+
+    /**
+     * Makes a product use the global low-stock threshold again.
+     */
+    void removeLowStockThreshold(String id);
+
+    /**
+     * The low-stock threshold that applies to a product, its own or the global one. The
+     * product is low on stock while its quantity is below it.
+     */
+    int lowStockThreshold(String id);
+    ModificationStamp modificationStamp();
 }
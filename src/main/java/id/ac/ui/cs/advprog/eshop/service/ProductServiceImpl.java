@@ -1,27 +1,114 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
+import id.ac.ui.cs.advprog.eshop.lowstock.LowStockWatcher;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
 import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Change;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
 
+// Every method is timed as eshop.service, tagged with its class and method name
 @Service
+@Timed(value = "eshop.service", extraTags = {"catalog", "product"}, histogram = true)
 public class ProductServiceImpl implements ProductService {
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LowStockWatcher lowStockWatcher;
 
-    public ProductServiceImpl(ProductRepository productRepository) {
+    public ProductServiceImpl(ProductRepository productRepository, ApplicationEventPublisher eventPublisher) {
+        this(productRepository, eventPublisher, LowStockWatcher.disabled());
+    }
+
+    @Autowired
+    public ProductServiceImpl(ProductRepository productRepository, ApplicationEventPublisher eventPublisher,
+                              LowStockWatcher lowStockWatcher) {
         this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.lowStockWatcher = lowStockWatcher;
+    }
+
+    /**
+     * Every quantity change, by update or by the stock operations, reaches
+     * {@code lowStockWatcher} from inside the repository write, so crossings are detected in
+     * the order the changes were applied.
+     */
+    @PostConstruct
+    void watchQuantities() {
+        productRepository.addQuantityListener(lowStockWatcher);
     }
 
     @Override
     public Product create(Product product) {
-        productRepository.create(product);
+        try {
+            productRepository.create(product);
+        } catch (ChangeNotDurableException e) {
+            throw published(e, CatalogChangedEvent.product(Change.CREATED, product.getProductId()));
+        }
+        eventPublisher.publishEvent(CatalogChangedEvent.product(Change.CREATED, product.getProductId()));
         return product;
     }
 
+    @Override
+    public boolean createIfAbsent(Product product) {
+        boolean created;
+        try {
+            created = productRepository.createIfAbsent(product);
+        } catch (ChangeNotDurableException e) {
+            throw published(e, CatalogChangedEvent.product(Change.CREATED, product.getProductId()));
+        }
+        if (created) {
+            eventPublisher.publishEvent(CatalogChangedEvent.product(Change.CREATED, product.getProductId()));
+        }
+        return created;
+    }
+
+    @Override
+    public List<Integer> createAll(List<Product> products) {
+        List<Integer> skipped;
+        try {
+            skipped = productRepository.createAll(products);
+        } catch (ChangeNotDurableException e) {
+            publishCreated(products, e.getResult());
+            throw e;
+        } catch (RuntimeException e) {
+            // Part of the batch may be stored, but not which part: only the lists surely changed
+            eventPublisher.publishEvent(new CatalogChangedEvent(Catalog.PRODUCT, Change.CREATED, List.of()));
+            throw e;
+        }
+        publishCreated(products, skipped);
+        return skipped;
+    }
+
+    private void publishCreated(List<Product> products, List<Integer> skipped) {
+        Set<Integer> notCreated = new HashSet<>(skipped);
+        List<String> created = new ArrayList<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            if (!notCreated.contains(i)) {
+                created.add(products.get(i).getProductId());
+            }
+        }
+        if (!created.isEmpty()) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(Catalog.PRODUCT, Change.CREATED, created));
+        }
+    }
+
     @Override
     public List<Product> findAll() {
         Iterator<Product> productIterator = productRepository.findAll();
@@ -30,23 +117,165 @@ public class ProductServiceImpl implements ProductService {
         return allProduct;
     }
 
+    /**
+     * Unlike {@link #findAll()}, nothing is copied: every iteration pulls products
+     * lazily from the repository, so callers can stream any number of rows.
+     */
+    @Override
+    public Iterable<Product> iterateAll() {
+        return productRepository::findAll;
+    }
+
+    @Override
+    public Page<Product> findPage(String afterCursor, int size) {
+        return productRepository.findPage(afterCursor, size);
+    }
+
+    @Override
+    public Page<Product> findPageByQuantity(Integer minQuantity, Integer maxQuantity, boolean descending,
+                                            String afterCursor, int size) {
+        return productRepository.findPageByQuantity(minQuantity, maxQuantity, descending, afterCursor, size);
+    }
+
+    @Override
+    public Page<Product> findPageByName(String fromName, String toName, boolean descending,
+                                        String afterCursor, int size) {
+        return productRepository.findPageByName(fromName, toName, descending, afterCursor, size);
+    }
+
     @Override
     public Product findById(String id) {
         return productRepository.findById(id);
     }
 
+    @Override
+    public List<Product> searchByName(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return productRepository.searchByNamePrefix(prefix, limit);
+    }
+
     @Override
     public Product update(String id, Product product) {
-        Product existingProduct = productRepository.findById(id);
-        if (existingProduct != null) {
-            existingProduct.setProductName(product.getProductName());
-            existingProduct.setProductQuantity(product.getProductQuantity());
+        Product updated;
+        try {
+            updated = productRepository.update(id, product);
+        } catch (ChangeNotDurableException e) {
+            throw published(e, CatalogChangedEvent.product(Change.UPDATED, id));
         }
-        return existingProduct;
+        if (updated != null) {
+            eventPublisher.publishEvent(CatalogChangedEvent.product(Change.UPDATED, id));
+        }
+        return updated;
     }
 
     @Override
     public void deleteById(String id) {
-        productRepository.deleteById(id);
+        boolean deleted;
+        try {
+            deleted = productRepository.deleteById(id);
+        } catch (ChangeNotDurableException e) {
+            lowStockWatcher.removeThreshold(id);
+            throw published(e, CatalogChangedEvent.product(Change.DELETED, id));
+        }
+        if (deleted) {
+            lowStockWatcher.removeThreshold(id);
+            eventPublisher.publishEvent(CatalogChangedEvent.product(Change.DELETED, id));
+        }
+    }
+
+    @Override
+    public StockAdjustment addStock(String id, int amount) {
+        requirePositive(amount);
+        return adjustStock(id, quantity -> quantity > Integer.MAX_VALUE - amount ? -1 : quantity + amount);
+    }
+
+    @Override
+    public StockAdjustment subtractStock(String id, int amount) {
+        requirePositive(amount);
+        return adjustStock(id, quantity -> Math.max(0, quantity - amount));
+    }
+
+    @Override
+    public StockAdjustment reserveStock(String id, int amount) {
+        requirePositive(amount);
+        return adjustStock(id, quantity -> quantity >= amount ? quantity - amount : -1);
+    }
+
+    @Override
+    public List<StockDeltaResult> applyStockDeltas(List<StockDelta> deltas, boolean allOrNothing) {
+        List<StockDeltaResult> results;
+        try {
+            results = productRepository.applyDeltas(deltas, allOrNothing);
+        } catch (ChangeNotDurableException e) {
+            publishApplied(e.getResult());
+            throw e;
+        }
+        publishApplied(results);
+        return results;
+    }
+
+    private void publishApplied(List<StockDeltaResult> results) {
+        List<String> changed = results.stream()
+                .filter(result -> result.status() == StockDeltaResult.Status.APPLIED)
+                .map(StockDeltaResult::productId)
+                .distinct()
+                .toList();
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(Catalog.PRODUCT, Change.UPDATED, changed));
+        }
+    }
+
+    @Override
+    public boolean setLowStockThreshold(String id, int threshold) {
+        // Under the product's lock, so a concurrent delete cannot leave the threshold behind
+        // and no quantity change slips in between reading the quantity and the new threshold
+        return productRepository.withProduct(id, product -> lowStockWatcher.setThreshold(product, threshold));
+    }
+
+    @Override
+    public void removeLowStockThreshold(String id) {
+        if (!productRepository.withProduct(id, lowStockWatcher::removeThreshold)) {
+            lowStockWatcher.removeThreshold(id);
+        }
+    }
+
+    @Override
+    public int lowStockThreshold(String id) {
+        return lowStockWatcher.thresholdFor(id);
+    }
+
+    private StockAdjustment adjustStock(String id, IntUnaryOperator adjustment) {
+        StockAdjustment result;
+        try {
+            result = productRepository.adjustQuantity(id, adjustment);
+        } catch (ChangeNotDurableException e) {
+            throw published(e, CatalogChangedEvent.product(Change.UPDATED, id));
+        }
+        if (result != null && result.applied()) {
+            eventPublisher.publishEvent(CatalogChangedEvent.product(Change.UPDATED, id));
+        }
+        return result;
+    }
+
+    /**
+     * Publishes {@code event} for a write that is applied but not persisted yet, since readers
+     * already see its change, and returns the failure to rethrow.
+     */
+    private ChangeNotDurableException published(ChangeNotDurableException e, CatalogChangedEvent event) {
+        eventPublisher.publishEvent(event);
+        return e;
+    }
+
+    private static void requirePositive(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Stock amount must be at least 1");
+        }
+    }
+
+    @Override
+    public ModificationStamp modificationStamp() {
+        return productRepository.modificationStamp();
     }
 }
@@ -0,0 +1,30 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+/**
+ * Reads the {@code Accept-Encoding} request header.
+ */
+public final class AcceptEncodings {
+
+    private AcceptEncodings() {
+    }
+
+    public static boolean allowsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                // "q=0" means the client refuses gzip
+                if (parts[i].trim().matches("q=0(\\.0{0,3})?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
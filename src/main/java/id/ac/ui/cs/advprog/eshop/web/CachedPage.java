@@ -0,0 +1,43 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A rendered page kept by {@link RenderedPageCache}, with its body both as rendered and
+ * gzip-compressed, and the response headers needed to replay it. {@code itemId} is the
+ * product or car the page shows, or {@code null} for a list page.
+ */
+public record CachedPage(Catalog catalog, String itemId, String contentType, String etag,
+                         long lastModified, String cacheControl, byte[] identity, byte[] gzip) {
+
+    // Rough size of the key, headers and objects around the two bodies
+    private static final int OVERHEAD_BYTES = 512;
+
+    /**
+     * Compresses {@code body} once up front, so a hit never pays for compression.
+     * {@code lastModified} is -1 if the page has no Last-Modified header.
+     */
+    public static CachedPage of(Catalog catalog, String itemId, String contentType, String etag,
+                                long lastModified, String cacheControl, byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new CachedPage(catalog, itemId, contentType, etag, lastModified, cacheControl, body,
+                compressed.toByteArray());
+    }
+
+    /**
+     * Memory this entry is charged for against the cache bound.
+     */
+    public long size() {
+        return (long) identity.length + gzip.length + OVERHEAD_BYTES;
+    }
+}
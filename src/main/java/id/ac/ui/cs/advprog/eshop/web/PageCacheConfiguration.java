@@ -0,0 +1,27 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "eshop.page-cache", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(PageCacheProperties.class)
+public class PageCacheConfiguration {
+
+    @Bean
+    public RenderedPageCache renderedPageCache(PageCacheProperties properties) {
+        return new RenderedPageCache(properties.maxSize().toBytes());
+    }
+
+    @Bean
+    public FilterRegistrationBean<RenderedPageCacheFilter> renderedPageCacheFilter(RenderedPageCache cache,
+                                                                                   PageCacheProperties properties) {
+        FilterRegistrationBean<RenderedPageCacheFilter> registration = new FilterRegistrationBean<>(
+                new RenderedPageCacheFilter(cache, Math.toIntExact(properties.maxPageSize().toBytes())));
+        registration.addUrlPatterns("/product/*", "/car/*");
+        return registration;
+    }
+}
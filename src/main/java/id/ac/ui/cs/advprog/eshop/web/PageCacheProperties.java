@@ -0,0 +1,16 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for the rendered-page cache. {@code maxSize} bounds the identity and gzip bodies
+ * of all cached pages together; a page larger than {@code maxPageSize} is never cached.
+ */
+@ConfigurationProperties(prefix = "eshop.page-cache")
+public record PageCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("64MB") DataSize maxSize,
+        @DefaultValue("2MB") DataSize maxPageSize) {
+}
@@ -0,0 +1,13 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+/**
+ * Counters of a {@link RenderedPageCache} since startup, and its current size.
+ */
+public record PageCacheStats(long hits, long misses, long evictions, long invalidations,
+                             int entries, long bytes, long maxBytes) {
+
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,20 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@ConditionalOnProperty(prefix = "eshop.page-cache", name = "enabled", havingValue = "true")
+public class PageCacheStatsController {
+    private final RenderedPageCache cache;
+
+    public PageCacheStatsController(RenderedPageCache cache) {
+        this.cache = cache;
+    }
+
+    @GetMapping("/page-cache/stats")
+    public PageCacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,125 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import org.springframework.context.event.EventListener;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rendered catalog pages by request URI, bounded by total size and evicting the least
+ * recently used page first.
+ *
+ * <p>Entries are dropped when a {@link CatalogChangedEvent} arrives: every list page of the
+ * changed catalog, and the pages of the changed items only. A page rendered while a change
+ * was being applied could show the old state, so {@link #put} refuses pages whose catalog
+ * changed after {@link #generation} was read for them.
+ */
+public class RenderedPageCache {
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock, least recently used first
+    private final LinkedHashMap<String, CachedPage> pages = new LinkedHashMap<>(64, 0.75f, true);
+    private final long[] generations = new long[Catalog.values().length];
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RenderedPageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public CachedPage get(String key) {
+        CachedPage page;
+        lock.lock();
+        try {
+            page = pages.get(key);
+        } finally {
+            lock.unlock();
+        }
+        (page == null ? misses : hits).increment();
+        return page;
+    }
+
+    /**
+     * Number of changes seen so far for {@code catalog}. Read it before rendering a page and
+     * pass it to {@link #put}.
+     */
+    public long generation(Catalog catalog) {
+        lock.lock();
+        try {
+            return generations[catalog.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores {@code page} unless its catalog changed since {@code generation} or the page
+     * alone is larger than the cache, and returns whether it was stored.
+     */
+    public boolean put(String key, CachedPage page, long generation) {
+        long size = page.size();
+        if (size > maxBytes) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (generations[page.catalog().ordinal()] != generation) {
+                return false;
+            }
+            CachedPage previous = pages.put(key, page);
+            bytes += size - (previous == null ? 0 : previous.size());
+            Iterator<CachedPage> leastRecentlyUsed = pages.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= leastRecentlyUsed.next().size();
+                leastRecentlyUsed.remove();
+                evictions.increment();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        lock.lock();
+        try {
+            generations[event.catalog().ordinal()]++;
+            Set<String> ids = new HashSet<>(event.ids());
+            Iterator<Map.Entry<String, CachedPage>> entries = pages.entrySet().iterator();
+            while (entries.hasNext()) {
+                CachedPage page = entries.next().getValue();
+                if (page.catalog() == event.catalog()
+                        && (page.itemId() == null || ids.contains(page.itemId()))) {
+                    bytes -= page.size();
+                    entries.remove();
+                    invalidations.increment();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public PageCacheStats stats() {
+        lock.lock();
+        try {
+            return new PageCacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(),
+                    pages.size(), bytes, maxBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+import org.springframework.web.util.UriUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+
+/**
+ * Serves the product and car list and edit pages from a {@link RenderedPageCache}. On a
+ * miss the page is rendered as usual and copied on its way to the client, so streamed
+ * lists keep streaming; pages larger than {@code maxPageBytes} are simply not kept.
+ *
+ * <p>Only complete 200 responses are stored. Requests carrying flash attributes, such as
+ * the error shown after a failed edit, bypass the cache in both directions.
+ */
+public class RenderedPageCacheFilter extends OncePerRequestFilter {
+    static final String CACHE_STATUS_HEADER = "X-Page-Cache";
+
+    private static final String FLASH_MAPS_ATTRIBUTE = SessionFlashMapManager.class.getName() + ".FLASH_MAPS";
+    private static final String PRODUCT_EDIT_PREFIX = "/product/edit/";
+    private static final String CAR_EDIT_PREFIX = "/car/editCar/";
+
+    private final RenderedPageCache cache;
+    private final int maxPageBytes;
+
+    public RenderedPageCacheFilter(RenderedPageCache cache, int maxPageBytes) {
+        this.cache = cache;
+        this.maxPageBytes = maxPageBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Route route = "GET".equals(request.getMethod()) ? route(path) : null;
+        if (route == null || hasFlashAttributes(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String key = request.getQueryString() == null ? path : path + "?" + request.getQueryString();
+        CachedPage page = cache.get(key);
+        if (page != null) {
+            serve(page, request, response);
+            return;
+        }
+        long generation = cache.generation(route.catalog());
+        response.setHeader(CACHE_STATUS_HEADER, "MISS");
+        CopyingResponse copying = new CopyingResponse(response, maxPageBytes);
+        chain.doFilter(request, copying);
+        copying.flushWriter();
+        byte[] body = copying.body();
+        if (body != null && copying.getStatus() == HttpServletResponse.SC_OK
+                && !copying.containsHeader(HttpHeaders.SET_COOKIE)) {
+            cache.put(key, CachedPage.of(route.catalog(), route.itemId(), copying.getContentType(),
+                    copying.getHeader(HttpHeaders.ETAG), lastModified(copying),
+                    copying.getHeader(HttpHeaders.CACHE_CONTROL), body), generation);
+        }
+    }
+
+    private static void serve(CachedPage page, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setHeader(CACHE_STATUS_HEADER, "HIT");
+        if (page.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, page.etag());
+        }
+        if (page.lastModified() >= 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, page.lastModified());
+        }
+        if (page.cacheControl() != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, page.cacheControl());
+        }
+        if (isNotModified(page, request)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(page.contentType());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        byte[] body = page.identity();
+        if (AcceptEncodings.allowsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            body = page.gzip();
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static boolean isNotModified(CachedPage page, HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (page.etag() == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(page.etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (page.lastModified() < 0) {
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            // HTTP dates have whole seconds
+            return ifModifiedSince >= 0 && page.lastModified() / 1000 * 1000 <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static long lastModified(HttpServletResponse response) {
+        String value = response.getHeader(HttpHeaders.LAST_MODIFIED);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static boolean hasFlashAttributes(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        return session != null && session.getAttribute(FLASH_MAPS_ATTRIBUTE) instanceof Collection<?> flashMaps
+                && !flashMaps.isEmpty();
+    }
+
+    static Route route(String path) {
+        return switch (path) {
+            case "/product/list", "/product/list/all" -> new Route(Catalog.PRODUCT, null);
+            case "/car/listCar", "/car/listCar/all" -> new Route(Catalog.CAR, null);
+            default -> {
+                if (path.startsWith(PRODUCT_EDIT_PREFIX)) {
+                    yield itemRoute(Catalog.PRODUCT, path.substring(PRODUCT_EDIT_PREFIX.length()));
+                }
+                if (path.startsWith(CAR_EDIT_PREFIX)) {
+                    yield itemRoute(Catalog.CAR, path.substring(CAR_EDIT_PREFIX.length()));
+                }
+                yield null;
+            }
+        };
+    }
+
+    private static Route itemRoute(Catalog catalog, String encodedId) {
+        if (encodedId.isEmpty() || encodedId.indexOf('/') >= 0) {
+            return null;
+        }
+        return new Route(catalog, UriUtils.decode(encodedId, StandardCharsets.UTF_8));
+    }
+
+    record Route(Catalog catalog, String itemId) {
+    }
+
+    /**
+     * Passes the body through to the client and keeps a copy of it, giving up on the copy
+     * once it grows past the page limit.
+     */
+    private static final class CopyingResponse extends HttpServletResponseWrapper {
+        private final int maxBytes;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream(8192);
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CopyingResponse(HttpServletResponse response, int maxBytes) {
+            super(response);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            return copyingStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (outputStream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                writer = new PrintWriter(new OutputStreamWriter(copyingStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        /**
+         * The body written so far, or {@code null} if it was too large to keep.
+         */
+        byte[] body() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        private ServletOutputStream copyingStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CopyingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        private void copy(byte[] bytes, int offset, int length) {
+            if (copy == null) {
+                return;
+            }
+            if (copy.size() + length > maxBytes) {
+                copy = null;
+                return;
+            }
+            copy.write(bytes, offset, length);
+        }
+
+        private final class CopyingOutputStream extends ServletOutputStream {
+            private final ServletOutputStream target;
+
+            CopyingOutputStream(ServletOutputStream target) {
+                this.target = target;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                target.write(b);
+                copy(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                target.write(bytes, offset, length);
+                copy(bytes, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                target.flush();
+            }
+
+            @Override
+            public boolean isReady() {
+                return target.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                target.setWriteListener(listener);
+            }
+        }
+    }
+}
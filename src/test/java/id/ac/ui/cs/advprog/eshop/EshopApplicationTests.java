@@ -2,15 +2,28 @@ package id.ac.ui.cs.advprog.eshop;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import javax.sql.DataSource;
 
 @SpringBootTest
 class EshopApplicationTests {
 
+    @Autowired
+    private ApplicationContext context;
+
     @Test
     void contextLoads() {
     }
 
+    @Test
+    void noDatabaseWhileJdbcPersistenceIsDisabled() {
+        assertEquals(0, context.getBeanNamesForType(DataSource.class).length);
+    }
+
     @Test
     void mainRunsWithoutException() {
         assertDoesNotThrow(() ->
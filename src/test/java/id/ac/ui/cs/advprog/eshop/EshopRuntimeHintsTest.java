@@ -0,0 +1,48 @@
+package id.ac.ui.cs.advprog.eshop;
+
+import id.ac.ui.cs.advprog.eshop.controller.ProductApiController;
+import id.ac.ui.cs.advprog.eshop.feed.ChangeFeedStreams;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EshopRuntimeHintsTest {
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @BeforeEach
+    void setUp() {
+        new EshopRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testModelAccessorsAreReflectable() throws NoSuchMethodException {
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(Product.class.getMethod("getProductName")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(Product.class.getMethod("setProductQuantity", int.class)).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(Car.class.getMethod("getCarColor")).test(hints));
+    }
+
+    @Test
+    void testRequestAndStreamedBodiesAreReflectable() throws NoSuchMethodException {
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(ProductApiController.StockDeltaBatch.class.getMethod("deltas")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(ChangeFeedStreams.ChangeMessage.class.getMethod("ids")).test(hints));
+    }
+
+    @Test
+    void testFacetMapEntriesAreReflectable() {
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onType(TypeReference.of("java.util.TreeMap$Entry")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onType(TypeReference.of("java.util.EnumMap$EntryIterator$Entry")).test(hints));
+    }
+}
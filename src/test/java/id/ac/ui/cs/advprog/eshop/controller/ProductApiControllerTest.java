@@ -0,0 +1,297 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ProductApiController.class)
+class ProductApiControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        when(productService.modificationStamp()).thenReturn(new ModificationStamp(42, 1_700_000_000_000L));
+    }
+
+    @Test
+    void listProductsStreamsJsonArray() throws Exception {
+        List<Product> products = List.of(new Product("p-1", "Sampo", 1, 0), new Product("p-2", "Sabun", 2, 3));
+        when(productService.iterateAll()).thenReturn(products);
+
+        MvcResult result = mockMvc.perform(get("/api/products"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].productId").value("p-1"))
+                .andExpect(jsonPath("$[1].productName").value("Sabun"))
+                .andExpect(jsonPath("$[1].version").value(3));
+        verify(productService, never()).findAll();
+    }
+
+    @Test
+    void getProductReturnsProductOrNotFound() throws Exception {
+        when(productService.findById("p-1")).thenReturn(new Product("p-1", "Sampo", 1, 0));
+
+        mockMvc.perform(get("/api/products/p-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productName").value("Sampo"));
+        mockMvc.perform(get("/api/products/missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.detail").value("Product missing not found"));
+    }
+
+    @Test
+    void createProductReturnsCreatedProduct() throws Exception {
+        when(productService.createIfAbsent(any(Product.class))).thenAnswer(invocation -> {
+            invocation.<Product>getArgument(0).setProductId("p-1");
+            return true;
+        });
+
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productName\":\"Sampo\",\"productQuantity\":5}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "http://localhost/api/products/p-1"))
+                .andExpect(jsonPath("$.productId").value("p-1"))
+                .andExpect(jsonPath("$.productName").value("Sampo"))
+                .andExpect(jsonPath("$.version").value(0));
+    }
+
+    @Test
+    void createProductWithInvalidInputReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productName\":\" \",\"productQuantity\":5}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("Product name cannot be empty and quantity must be at least 0"));
+
+        verify(productService, never()).createIfAbsent(any());
+    }
+
+    @Test
+    void createProductWithExistingIdReturnsConflict() throws Exception {
+        when(productService.createIfAbsent(any(Product.class))).thenReturn(false);
+
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productId\":\"p-1\",\"productName\":\"Sabun\",\"productQuantity\":5}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.detail").value("Product p-1 already exists"));
+
+        verify(productService, never()).create(any());
+    }
+
+    @Test
+    void createProductWithNullIdIsGivenOne() throws Exception {
+        when(productService.createIfAbsent(any(Product.class))).thenAnswer(invocation -> {
+            Product product = invocation.getArgument(0);
+            if (product.getProductId() != null) {
+                return false;
+            }
+            product.setProductId("p-2");
+            return true;
+        });
+
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productId\":null,\"productName\":\"Sabun\",\"productQuantity\":5}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.productId").value("p-2"));
+    }
+
+    @Test
+    void updateProductReturnsUpdatedProduct() throws Exception {
+        when(productService.update(eq("p-1"), any(Product.class))).thenReturn(new Product("p-1", "Sabun", 7, 1));
+
+        mockMvc.perform(put("/api/products/p-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productName\":\"Sabun\",\"productQuantity\":7,\"version\":0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productName").value("Sabun"))
+                .andExpect(jsonPath("$.version").value(1));
+    }
+
+    @Test
+    void updateProductReportsMissingAndStaleProducts() throws Exception {
+        when(productService.update(eq("missing"), any(Product.class))).thenReturn(null);
+        when(productService.update(eq("p-1"), any(Product.class)))
+                .thenThrow(new VersionConflictException("p-1", 0, 2));
+        String body = "{\"productName\":\"Sabun\",\"productQuantity\":7,\"version\":0}";
+
+        mockMvc.perform(put("/api/products/missing").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/api/products/p-1").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.detail").value("Product was changed by someone else, current version is 2"));
+    }
+
+    @Test
+    void writeThatIsAppliedButNotStoredYetIsAccepted() throws Exception {
+        when(productService.update(eq("p-1"), any(Product.class))).thenThrow(new ChangeNotDurableException(
+                "Could not store the catalog change yet, it will be retried", null));
+
+        mockMvc.perform(put("/api/products/p-1").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productName\":\"Sabun\",\"productQuantity\":7,\"version\":0}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.detail").value("Could not store the catalog change yet, it will be retried"));
+    }
+
+    @Test
+    void deleteProductReturnsNoContentOrNotFound() throws Exception {
+        when(productService.findById("p-1")).thenReturn(new Product("p-1", "Sampo", 1, 0));
+
+        mockMvc.perform(delete("/api/products/p-1"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/products/missing"))
+                .andExpect(status().isNotFound());
+
+        verify(productService).deleteById("p-1");
+        verify(productService, never()).deleteById("missing");
+    }
+
+    @Test
+    void reserveStockReturnsProductOrConflictWhenShort() throws Exception {
+        when(productService.reserveStock("p-1", 2)).thenReturn(new StockAdjustment(new Product("p-1", "Sampo", 3, 4), true));
+        when(productService.reserveStock("p-1", 9)).thenReturn(new StockAdjustment(new Product("p-1", "Sampo", 3, 4), false));
+
+        mockMvc.perform(post("/api/products/p-1/stock/reserve")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":2}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productQuantity").value(3))
+                .andExpect(jsonPath("$.version").value(4));
+        mockMvc.perform(post("/api/products/p-1/stock/reserve")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":9}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.detail").value("Only 3 of product p-1 in stock"));
+    }
+
+    @Test
+    void stockChangesRejectMissingProductsAndInvalidAmounts() throws Exception {
+        when(productService.addStock("missing", 1)).thenReturn(null);
+
+        mockMvc.perform(post("/api/products/missing/stock/add")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":1}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/products/p-1/stock/subtract")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":0}"))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).subtractStock(any(), anyInt());
+    }
+
+    @Test
+    void applyStockDeltasReturnsResultsAndConflictWhenRolledBack() throws Exception {
+        List<StockDelta> deltas = List.of(new StockDelta("p-1", -1), new StockDelta("p-2", -5));
+        Product first = new Product("p-1", "Sampo", 3, 0);
+        Product second = new Product("p-2", "Sabun", 2, 0);
+        when(productService.applyStockDeltas(deltas, true)).thenReturn(List.of(
+                new StockDeltaResult("p-1", StockDeltaResult.Status.ROLLED_BACK, first),
+                new StockDeltaResult("p-2", StockDeltaResult.Status.INSUFFICIENT_STOCK, second)));
+        when(productService.applyStockDeltas(deltas, false)).thenReturn(List.of(
+                new StockDeltaResult("p-1", StockDeltaResult.Status.APPLIED, new Product("p-1", "Sampo", 2, 1)),
+                new StockDeltaResult("p-2", StockDeltaResult.Status.INSUFFICIENT_STOCK, second)));
+        String items = "[{\"productId\":\"p-1\",\"delta\":-1},{\"productId\":\"p-2\",\"delta\":-5}]";
+
+        mockMvc.perform(post("/api/products/stock-deltas")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"deltas\":" + items + "}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$[0].status").value("ROLLED_BACK"))
+                .andExpect(jsonPath("$[1].status").value("INSUFFICIENT_STOCK"));
+        mockMvc.perform(post("/api/products/stock-deltas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\":\"BEST_EFFORT\",\"deltas\":" + items + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("APPLIED"))
+                .andExpect(jsonPath("$[0].product.productQuantity").value(2));
+    }
+
+    @Test
+    void applyStockDeltasRejectsEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/products/stock-deltas")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"deltas\":[]}"))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).applyStockDeltas(any(), anyBoolean());
+    }
+
+    @Test
+    void lowStockThresholdCanBeSetReadAndRemoved() throws Exception {
+        when(productService.findById("p-1")).thenReturn(new Product("p-1", "Sampo", 4, 0));
+        when(productService.setLowStockThreshold("p-1", 3)).thenReturn(true);
+        when(productService.lowStockThreshold("p-1")).thenReturn(3);
+
+        mockMvc.perform(put("/api/products/p-1/low-stock-threshold")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"threshold\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.threshold").value(3));
+        mockMvc.perform(get("/api/products/p-1/low-stock-threshold"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.threshold").value(3));
+        mockMvc.perform(delete("/api/products/p-1/low-stock-threshold"))
+                .andExpect(status().isNoContent());
+
+        verify(productService).removeLowStockThreshold("p-1");
+    }
+
+    @Test
+    void lowStockThresholdRejectsMissingProductsAndNegativeValues() throws Exception {
+        mockMvc.perform(put("/api/products/missing/low-stock-threshold")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"threshold\":3}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/products/missing/low-stock-threshold"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/api/products/p-1/low-stock-threshold")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"threshold\":-1}"))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).setLowStockThreshold("p-1", -1);
+    }
+
+    @Test
+    void listProductsAnswersMatchingEtagWithNotModified() throws Exception {
+        mockMvc.perform(get("/api/products").header("If-None-Match", "\"16\""))
+                .andExpect(status().isNotModified());
+
+        verify(productService, never()).iterateAll();
+    }
+}
@@ -1,41 +1,84 @@
 package id.ac.ui.cs.advprog.eshop.controller;
 
+import id.ac.ui.cs.advprog.eshop.exporter.ExportFormat;
+import id.ac.ui.cs.advprog.eshop.importer.ImportRecordReader;
+import id.ac.ui.cs.advprog.eshop.model.ImportSummary;
+import id.ac.ui.cs.advprog.eshop.model.ModificationStamp;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.ProductSort;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
 import id.ac.ui.cs.advprog.eshop.service.CarServiceImpl;
+import id.ac.ui.cs.advprog.eshop.service.CatalogExportService;
+import id.ac.ui.cs.advprog.eshop.service.CatalogImportService;
 import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
 @WebMvcTest(ProductController.class)
+@Import(SimpleMeterRegistry.class)
 class ProductControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockitoBean
     private ProductService productService;
 
     @MockitoBean
     private CarServiceImpl carService;
 
+    @MockitoBean
+    private CatalogImportService catalogImportService;
+
+    @MockitoBean
+    private CatalogExportService catalogExportService;
+
+    @BeforeEach
+    void setUp() {
+        when(productService.modificationStamp()).thenReturn(new ModificationStamp(42, 1_700_000_000_000L));
+    }
+
     @Test
     void createProductPageReturnsViewAndModel() throws Exception {
         mockMvc.perform(get("/product/create"))
@@ -62,6 +105,8 @@ class ProductControllerTest {
 
     @Test
     void createProductPostWithInvalidInputRedirectsWithError() throws Exception {
+        double rejectedBefore = counter(ProductController.VALIDATION_REJECTED, "create");
+
         mockMvc.perform(post("/product/create")
                         .param("productName", " ")
                         .param("productQuantity", "-1"))
@@ -70,6 +115,7 @@ class ProductControllerTest {
                 .andExpect(flash().attribute("error", "Product name cannot be empty and quantity must be at least 0"));
 
         verify(productService, never()).create(any(Product.class));
+        assertEquals(rejectedBefore + 1, counter(ProductController.VALIDATION_REJECTED, "create"));
     }
 
     @Test
@@ -112,11 +158,14 @@ class ProductControllerTest {
     @Test
     void editProductPageWhenNotFoundRedirectsWithError() throws Exception {
         when(productService.findById("missing")).thenReturn(null);
+        double notFoundBefore = counter(ProductController.NOT_FOUND, "editPage");
 
         mockMvc.perform(get("/product/edit/missing"))
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/product/list"))
                 .andExpect(flash().attribute("error", "Product not found"));
+
+        assertEquals(notFoundBefore + 1, counter(ProductController.NOT_FOUND, "editPage"));
     }
 
     @Test
@@ -211,6 +260,7 @@ class ProductControllerTest {
     @Test
     void deleteProductWhenMissingRedirectsWithError() throws Exception {
         when(productService.findById("missing")).thenReturn(null);
+        double notFoundBefore = counter(ProductController.NOT_FOUND, "delete");
 
         mockMvc.perform(get("/product/delete/missing"))
                 .andExpect(status().is3xxRedirection())
@@ -218,6 +268,7 @@ class ProductControllerTest {
                 .andExpect(flash().attribute("error", "Product not found"));
 
         verify(productService, never()).deleteById("missing");
+        assertEquals(notFoundBefore + 1, counter(ProductController.NOT_FOUND, "delete"));
     }
 
     @Test
@@ -226,21 +277,274 @@ class ProductControllerTest {
         product.setProductId("p-5");
         product.setProductName("Speaker");
         product.setProductQuantity(2);
-        when(productService.findAll()).thenReturn(List.of(product));
+        when(productService.findPage(null, 50)).thenReturn(new Page<>(List.of(product), "next"));
 
         mockMvc.perform(get("/product/list"))
                 .andExpect(status().isOk())
                 .andExpect(view().name("productList"))
-                .andExpect(model().attributeExists("products"));
+                .andExpect(model().attribute("products", List.of(product)))
+                .andExpect(model().attribute("nextCursor", "next"))
+                .andExpect(model().attribute("firstPage", true));
+    }
+
+    @Test
+    void productListPageWithCursorRequestsNextPage() throws Exception {
+        when(productService.findPage("abc", 10)).thenReturn(new Page<>(List.of(), null));
+
+        mockMvc.perform(get("/product/list").param("after", "abc").param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("productList"))
+                .andExpect(model().attribute("pageSize", 10))
+                .andExpect(model().attribute("firstPage", false));
+    }
+
+    @Test
+    void productListPageClampsPageSize() throws Exception {
+        when(productService.findPage(null, 200)).thenReturn(new Page<>(List.of(), null));
+
+        mockMvc.perform(get("/product/list").param("size", "100000"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("pageSize", 200));
+    }
+
+    @Test
+    void productListPageWithInvalidCursorFallsBackToFirstPage() throws Exception {
+        when(productService.findPage("broken", 50)).thenThrow(new IllegalArgumentException("Invalid page cursor: broken"));
+        when(productService.findPage(null, 50)).thenReturn(new Page<>(List.of(), null));
+
+        mockMvc.perform(get("/product/list").param("after", "broken"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("error", "Invalid page cursor"))
+                .andExpect(model().attribute("firstPage", true));
+    }
+
+    @Test
+    void productListPageSortedByQuantityUsesQuantityRange() throws Exception {
+        when(productService.findPageByQuantity(null, 9, false, null, 50)).thenReturn(new Page<>(List.of(), null));
+
+        mockMvc.perform(get("/product/list").param("sort", "QUANTITY").param("maxQuantity", "9"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("productList"))
+                .andExpect(model().attribute("sort", ProductSort.QUANTITY))
+                .andExpect(model().attribute("maxQuantity", 9));
+
+        verify(productService, never()).findPage(any(), anyInt());
+    }
+
+    @Test
+    void productListPageSortedByNameTreatsBlankBoundsAsOpen() throws Exception {
+        when(productService.findPageByName("b", null, true, null, 50)).thenReturn(new Page<>(List.of(), null));
+
+        mockMvc.perform(get("/product/list").param("sort", "NAME").param("desc", "true")
+                        .param("from", "b").param("to", ""))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("desc", true))
+                .andExpect(model().attribute("from", "b"));
+
+        verify(productService).findPageByName("b", null, true, null, 50);
+    }
+
+    @Test
+    void productListPageRejectsNonNumericQuantityRange() throws Exception {
+        mockMvc.perform(get("/product/list").param("sort", "QUANTITY").param("minQuantity", "few"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
     void productListPageWithErrorParamAddsErrorToModel() throws Exception {
-        when(productService.findAll()).thenReturn(List.of());
+        when(productService.findPage(null, 50)).thenReturn(new Page<>(List.of(), null));
 
         mockMvc.perform(get("/product/list").param("error", "Product not found"))
                 .andExpect(status().isOk())
                 .andExpect(view().name("productList"))
                 .andExpect(model().attribute("error", "Product not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void editProductPutWithStaleVersionRedirectsWithConflictError() throws Exception {
+        Product existing = new Product();
+        existing.setProductId("p-6");
+        when(productService.findById("p-6")).thenReturn(existing);
+        when(productService.update(eq("p-6"), any(Product.class)))
+                .thenThrow(new VersionConflictException("p-6", 0, 1));
+
+        mockMvc.perform(post("/product/edit/p-6")
+                        .param("productName", "Monitor")
+                        .param("productQuantity", "8")
+                        .param("version", "0"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/product/list"))
+                .andExpect(flash().attribute("error", "Product was changed by someone else, please reload it and try again"));
+    }
+
+    @Test
+    void productFullListPageStreamsEveryProduct() throws Exception {
+        Product product = new Product();
+        product.setProductName("Speaker");
+        Iterable<Product> allProducts = List.of(product);
+        when(productService.iterateAll()).thenReturn(allProducts);
+
+        mockMvc.perform(get("/product/list/all"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("productList"))
+                .andExpect(model().attribute("products", allProducts))
+                .andExpect(model().attribute("fullList", true));
+
+        verify(productService, never()).findAll();
+    }
+
+    @Test
+    void searchProductsReturnsJsonMatches() throws Exception {
+        Product product = new Product();
+        product.setProductId("p-7");
+        product.setProductName("Sampo Cap Bambang");
+        product.setProductQuantity(3);
+        when(productService.searchByName("sam", 10)).thenReturn(List.of(product));
+
+        mockMvc.perform(get("/product/search").param("q", "sam"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].productId").value("p-7"))
+                .andExpect(jsonPath("$[0].productName").value("Sampo Cap Bambang"));
+    }
+
+    @Test
+    void searchProductsClampsLimit() throws Exception {
+        when(productService.searchByName("sam", 50)).thenReturn(List.of());
+
+        mockMvc.perform(get("/product/search").param("q", "sam").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+
+        verify(productService).searchByName("sam", 50);
+    }
+
+    @Test
+    void importProductsStreamsCsvBodyToImportService() throws Exception {
+        when(catalogImportService.importProducts(any(ImportRecordReader.class))).thenAnswer(invocation -> {
+            ImportRecordReader records = invocation.getArgument(0);
+            ImportSummary summary = new ImportSummary();
+            while (records.next()) {
+                summary.accept(1);
+            }
+            summary.reject(4, "Product name cannot be empty and quantity must be at least 0");
+            return summary;
+        });
+
+        mockMvc.perform(post("/product/import")
+                        .contentType("text/csv")
+                        .content("productName,productQuantity\nSampo,1\nSabun,2\n,3\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(3))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rejections[0].line").value(4));
+    }
+
+    @Test
+    void importProductsRejectsUnsupportedContentType() throws Exception {
+        mockMvc.perform(post("/product/import")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content("<products/>"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verify(catalogImportService, never()).importProducts(any());
+    }
+
+    @Test
+    void exportProductsStreamsCsvDownload() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("productId,productName,productQuantity\r\n".getBytes(StandardCharsets.UTF_8));
+            out.close();
+            return null;
+        }).when(catalogExportService).exportProducts(eq(ExportFormat.CSV), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/product/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"products.csv\""))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("productId,productName,productQuantity\r\n"));
+    }
+
+    @Test
+    void exportProductsCompressesWhenClientAcceptsGzip() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"productId\":\"p-1\"}\n".getBytes(StandardCharsets.UTF_8));
+            out.close();
+            return null;
+        }).when(catalogExportService).exportProducts(eq(ExportFormat.NDJSON), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/product/export")
+                        .param("format", "NDJSON")
+                        .header("Accept-Encoding", "br;q=1.0, gzip;q=0.8"))
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Content-Type", "application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream unzipped = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals("{\"productId\":\"p-1\"}\n", new String(unzipped.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void exportProductsRejectsUnknownFormat() throws Exception {
+        mockMvc.perform(get("/product/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void productListPageAnswersMatchingEtagWithNotModified() throws Exception {
+        when(productService.findPage(null, 50)).thenReturn(new Page<>(List.of(), null));
+
+        mockMvc.perform(get("/product/list"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"16\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(header().string("Cache-Control", "no-cache"));
+        mockMvc.perform(get("/product/list").header("If-None-Match", "\"16\""))
+                .andExpect(status().isNotModified());
+
+        verify(productService, times(1)).findPage(null, 50);
+    }
+
+    @Test
+    void productListPageRendersAgainAfterAChange() throws Exception {
+        when(productService.findPage(null, 50)).thenReturn(new Page<>(List.of(), null));
+        when(productService.modificationStamp()).thenReturn(new ModificationStamp(43, 1_700_000_000_001L));
+
+        mockMvc.perform(get("/product/list").header("If-None-Match", "\"16\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"17\""));
+    }
+
+    @Test
+    void productListPageWithFlashErrorIsAlwaysRendered() throws Exception {
+        when(productService.findPage(null, 50)).thenReturn(new Page<>(List.of(), null));
+
+        mockMvc.perform(get("/product/list")
+                        .header("If-None-Match", "\"16\"")
+                        .flashAttr("error", "Product not found"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("error", "Product not found"));
+    }
+
+    @Test
+    void editProductPageAnswersMatchingEtagWithNotModified() throws Exception {
+        when(productService.findById("p-1")).thenReturn(new Product("p-1", "Sampo", 1, 0));
+
+        mockMvc.perform(get("/product/edit/p-1").header("If-None-Match", "\"16\""))
+                .andExpect(status().isNotModified());
+    }
+
+    private double counter(String name, String operation) {
+        return meterRegistry.counter(name, "operation", operation).count();
+    }
+}
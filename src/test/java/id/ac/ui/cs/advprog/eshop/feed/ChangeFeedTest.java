@@ -0,0 +1,187 @@
+package id.ac.ui.cs.advprog.eshop.feed;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Change;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    private static CatalogChangedEvent created(String id) {
+        return CatalogChangedEvent.product(Change.CREATED, id);
+    }
+
+    @Test
+    void testCursorReadsChangesInOrder() {
+        ChangeFeed feed = new ChangeFeed(8, 0);
+        ChangeFeed.Cursor cursor = feed.cursor(null);
+
+        assertNull(cursor.poll());
+        assertEquals(1, feed.publish(created("a")));
+        assertEquals(2, feed.publish(CatalogChangedEvent.car(Change.DELETED, "b")));
+
+        ChangeFeed.Entry first = cursor.poll();
+        assertEquals(1, first.sequence());
+        assertEquals(created("a"), first.event());
+        ChangeFeed.Entry second = cursor.poll();
+        assertEquals(2, second.sequence());
+        assertEquals(CatalogChangedEvent.car(Change.DELETED, "b"), second.event());
+        assertNull(cursor.poll());
+    }
+
+    @Test
+    void testNewCursorStartsAfterNewestChange() {
+        ChangeFeed feed = new ChangeFeed(8, 0);
+        feed.publish(created("a"));
+
+        ChangeFeed.Cursor cursor = feed.cursor(null);
+        assertNull(cursor.poll());
+        feed.publish(created("b"));
+        assertEquals(created("b"), cursor.poll().event());
+    }
+
+    @Test
+    void testCursorResumesAfterLastSeenChange() {
+        ChangeFeed feed = new ChangeFeed(8, 0);
+        feed.publish(created("a"));
+        feed.publish(created("b"));
+        feed.publish(created("c"));
+
+        ChangeFeed.Cursor cursor = feed.cursor(1L);
+        assertEquals(2, cursor.poll().sequence());
+        assertEquals(3, cursor.poll().sequence());
+        assertNull(cursor.poll());
+    }
+
+    @Test
+    void testIdAheadOfFeedGetsResync() {
+        ChangeFeed feed = new ChangeFeed(8, 0);
+        feed.publish(created("a"));
+        feed.publish(created("b"));
+
+        // The reconnecting subscriber saw more changes than this feed ever published
+        ChangeFeed.Cursor cursor = feed.cursor(99L);
+        assertTrue(cursor.poll().resync());
+        assertNull(cursor.poll());
+        feed.publish(created("c"));
+        assertEquals(3, cursor.poll().sequence());
+    }
+
+    @Test
+    void testIdFromBeforeRestartGetsResync() throws InterruptedException {
+        ChangeFeed beforeRestart = new ChangeFeed(8, 1000);
+        long lastSeen = beforeRestart.publish(created("a"));
+        ChangeFeed afterRestart = new ChangeFeed(8, 2000);
+        afterRestart.publish(created("b"));
+
+        ChangeFeed.Cursor cursor = afterRestart.cursor(lastSeen);
+        assertTrue(cursor.await(Duration.ZERO));
+        ChangeFeed.Entry resync = cursor.poll();
+        assertTrue(resync.resync());
+        assertEquals(2001, resync.sequence());
+        assertNull(cursor.poll());
+    }
+
+    @Test
+    void testSequencesGrowAcrossRestarts() {
+        long first = new ChangeFeed(8).publish(created("a"));
+        long afterRestart = new ChangeFeed(8).latestSequence();
+
+        assertTrue(first > 1);
+        assertTrue(afterRestart >= first - 1);
+    }
+
+    @Test
+    void testLaggingCursorGetsResyncAndContinuesFromNewest() {
+        ChangeFeed feed = new ChangeFeed(4, 0);
+        ChangeFeed.Cursor cursor = feed.cursor(null);
+        for (int i = 0; i < 10; i++) {
+            feed.publish(created("item-" + i));
+        }
+
+        ChangeFeed.Entry resync = cursor.poll();
+        assertTrue(resync.resync());
+        assertEquals(10, resync.sequence());
+        assertNull(cursor.poll());
+
+        feed.publish(created("item-10"));
+        assertEquals(11, cursor.poll().sequence());
+    }
+
+    @Test
+    void testCursorWithinCapacityIsNotResynced() {
+        ChangeFeed feed = new ChangeFeed(4, 0);
+        ChangeFeed.Cursor cursor = feed.cursor(null);
+        for (int i = 0; i < 4; i++) {
+            feed.publish(created("item-" + i));
+        }
+
+        for (int i = 1; i <= 4; i++) {
+            ChangeFeed.Entry entry = cursor.poll();
+            assertFalse(entry.resync());
+            assertEquals(i, entry.sequence());
+        }
+    }
+
+    @Test
+    void testAwaitTimesOutWithoutChangesAndWakesOnPublish() throws Exception {
+        ChangeFeed feed = new ChangeFeed(4, 0);
+        ChangeFeed.Cursor cursor = feed.cursor(null);
+
+        assertFalse(cursor.await(Duration.ofMillis(10)));
+
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cursor.await(Duration.ofSeconds(10));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        feed.publish(created("a"));
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testConcurrentWritersNeverDuplicateOrReorderChanges() throws Exception {
+        ChangeFeed feed = new ChangeFeed(1 << 16, 0);
+        ChangeFeed.Cursor cursor = feed.cursor(null);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    feed.publish(created("item"));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+
+        long expected = 1;
+        while (expected <= 20_000) {
+            ChangeFeed.Entry entry = cursor.poll();
+            if (entry == null) {
+                cursor.await(Duration.ofMillis(100));
+                continue;
+            }
+            assertFalse(entry.resync());
+            assertEquals(expected++, entry.sequence());
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(20_000, feed.latestSequence());
+    }
+
+    @Test
+    void testCapacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ChangeFeed(0));
+        assertThrows(IllegalArgumentException.class, () -> new ChangeFeed(100));
+    }
+}
@@ -0,0 +1,57 @@
+package id.ac.ui.cs.advprog.eshop.ids;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedIdGeneratorTest {
+    private static final Instant NOW = Instant.parse("2026-01-02T03:04:05.678Z");
+
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+
+    private static TimeOrderedIdGenerator generatorAt(Instant time) {
+        return new TimeOrderedIdGenerator(Clock.fixed(time, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testIdsAreCanonicalVersion7Uuids() {
+        String id = generator.nextId();
+        UUID uuid = UUID.fromString(id);
+
+        assertEquals(id, uuid.toString());
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    void testIdsCarryTheCreationTime() {
+        UUID uuid = UUID.fromString(generatorAt(NOW).nextId());
+
+        assertEquals(NOW.toEpochMilli(), uuid.getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    void testIdsFromLaterMillisecondsSortAfterEarlierOnes() {
+        for (int i = 0; i < 1000; i++) {
+            String earlier = generatorAt(NOW).nextId();
+            String later = generatorAt(NOW.plusMillis(1)).nextId();
+
+            assertTrue(earlier.compareTo(later) < 0);
+        }
+    }
+
+    @Test
+    void testIdsAreUnique() {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(ids.add(generator.nextId()));
+        }
+    }
+}
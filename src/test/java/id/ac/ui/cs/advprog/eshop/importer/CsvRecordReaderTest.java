@@ -0,0 +1,77 @@
+package id.ac.ui.cs.advprog.eshop.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordReaderTest {
+
+    @Test
+    void testReadsColumnsByHeaderName() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(
+                "productQuantity,productName\n10,Sampo Cap Bambang\n20,Sabun\n"));
+
+        assertTrue(reader.next());
+        assertEquals("Sampo Cap Bambang", reader.get("productName"));
+        assertEquals("10", reader.get("productQuantity"));
+        assertEquals(2, reader.lineNumber());
+        assertTrue(reader.next());
+        assertEquals("Sabun", reader.get("productName"));
+        assertEquals(3, reader.lineNumber());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void testQuotedFields() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(
+                "productName,productQuantity\r\n\"Sampo, \"\"Cap\"\"\nBambang\",5\r\n"));
+
+        assertTrue(reader.next());
+        assertEquals("Sampo, \"Cap\"\nBambang", reader.get("productName"));
+        assertEquals("5", reader.get("productQuantity"));
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void testMissingAndUnknownColumns() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("\uFEFFproductName,productQuantity\nSampo\n"));
+
+        assertTrue(reader.next());
+        assertEquals("Sampo", reader.get("productName"));
+        assertNull(reader.get("productQuantity"));
+        assertNull(reader.get("productColor"));
+    }
+
+    @Test
+    void testSkipsBlankLines() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("productName\n\nSampo\n\n\nSabun"));
+
+        assertTrue(reader.next());
+        assertEquals(3, reader.lineNumber());
+        assertTrue(reader.next());
+        assertEquals("Sabun", reader.get("productName"));
+        assertEquals(6, reader.lineNumber());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void testBadQuotingRejectsOnlyThatRecord() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(
+                "productName,productQuantity\n\"Sampo\"x,1\nSabun,2\n\"Odol,3\n"));
+
+        InvalidRecordException exception = assertThrows(InvalidRecordException.class, reader::next);
+        assertEquals(2, exception.getLineNumber());
+        assertTrue(reader.next());
+        assertEquals("Sabun", reader.get("productName"));
+        assertThrows(InvalidRecordException.class, reader::next);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void testEmptyInput() throws IOException {
+        assertFalse(new CsvRecordReader(new StringReader("")).next());
+    }
+}
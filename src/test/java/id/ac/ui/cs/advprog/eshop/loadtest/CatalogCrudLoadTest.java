@@ -0,0 +1,217 @@
+package id.ac.ui.cs.advprog.eshop.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Drives the create, list, edit and delete pages of products and cars with many concurrent
+ * users, the way a browser would, and fails when the latency, throughput or error rate
+ * objectives are missed. Run it with {@code ./gradlew loadTest}; every setting can be
+ * overridden with {@code -PloadTest.<name>=<value>}, see {@link Settings}.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class CatalogCrudLoadTest {
+
+    /**
+     * The port number assigned to the running application during test execution.
+     */
+    @LocalServerPort
+    private int serverPort;
+
+    @Value("${app.baseUrl:http://localhost}")
+    private String testBaseUrl;
+
+    private String baseUrl;
+    private HttpClient client;
+
+    @Test
+    void crudFlowsMeetServiceLevelObjectives() throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        baseUrl = String.format("%s:%d", testBaseUrl, serverPort);
+        client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        LatencyRecorder warmup = new LatencyRecorder();
+        LatencyRecorder measured = new LatencyRecorder();
+        long measureFrom = System.nanoTime() + settings.warmup().toNanos();
+        long stopAt = measureFrom + settings.duration().toNanos();
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int user = 0; user < settings.users(); user++) {
+                int userNumber = user;
+                users.submit(() -> {
+                    for (int round = 0; System.nanoTime() < stopAt; round++) {
+                        LatencyRecorder recorder = System.nanoTime() < measureFrom ? warmup : measured;
+                        // Half the users start with products and half with cars, then alternate
+                        if ((userNumber + round) % 2 == 0) {
+                            productFlow(recorder, userNumber, round);
+                        } else {
+                            carFlow(recorder, userNumber, round);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - measureFrom) / 1e9;
+
+        List<LatencyRecorder.Summary> summaries = measured.summarize(elapsedSeconds);
+        System.out.println(report(settings, summaries));
+        writeJson(settings, summaries);
+        List<String> violations = settings.violations(summaries.get(summaries.size() - 1));
+        assertTrue(violations.isEmpty(), "Service level objectives missed: " + String.join("; ", violations));
+    }
+
+    private void productFlow(LatencyRecorder recorder, int user, int round) throws InterruptedException {
+        String productId = UUID.randomUUID().toString();
+        String name = "Load test product " + user + "-" + round;
+        post(recorder, "product create", "/product/create",
+                Map.of("productId", productId, "productName", name, "productQuantity", "10"));
+        get(recorder, "product list", "/product/list", 200);
+        get(recorder, "product edit page", "/product/edit/" + productId, 200);
+        post(recorder, "product edit", "/product/edit/" + productId,
+                Map.of("productName", name + " edited", "productQuantity", "9", "version", "0"));
+        get(recorder, "product delete", "/product/delete/" + productId, 302);
+    }
+
+    private void carFlow(LatencyRecorder recorder, int user, int round) throws InterruptedException {
+        String carId = UUID.randomUUID().toString();
+        String name = "Load test car " + user + "-" + round;
+        post(recorder, "car create", "/car/createCar",
+                Map.of("carId", carId, "carName", name, "carColor", "Red", "carQuantity", "10"));
+        get(recorder, "car list", "/car/listCar", 200);
+        get(recorder, "car edit page", "/car/editCar/" + carId, 200);
+        post(recorder, "car edit", "/car/editCar",
+                Map.of("carId", carId, "carName", name + " edited", "carColor", "Blue", "carQuantity", "9",
+                        "version", "0"));
+        post(recorder, "car delete", "/car/deleteCar", Map.of("carId", carId));
+    }
+
+    private void get(LatencyRecorder recorder, String operation, String path, int expectedStatus)
+            throws InterruptedException {
+        send(recorder, operation, HttpRequest.newBuilder(URI.create(baseUrl + path)).GET(), expectedStatus);
+    }
+
+    /**
+     * Submits a form like a browser; every form in this app answers with a redirect.
+     */
+    private void post(LatencyRecorder recorder, String operation, String path, Map<String, String> form)
+            throws InterruptedException {
+        String body = form.entrySet().stream()
+                .map(field -> URLEncoder.encode(field.getKey(), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+        send(recorder, operation, HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body)), 302);
+    }
+
+    private void send(LatencyRecorder recorder, String operation, HttpRequest.Builder request, int expectedStatus)
+            throws InterruptedException {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            long nanos = System.nanoTime() - started;
+            if (response.statusCode() == expectedStatus) {
+                recorder.success(operation, nanos);
+            } else {
+                recorder.failure(operation, nanos);
+            }
+        } catch (IOException e) {
+            recorder.failure(operation, System.nanoTime() - started);
+        }
+    }
+
+    private static String report(Settings settings, List<LatencyRecorder.Summary> summaries) {
+        StringBuilder report = new StringBuilder(String.format("%nLoad test: %d users for %s after %s of warmup%n",
+                settings.users(), settings.duration(), settings.warmup()));
+        report.append(String.format("%-18s %9s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (LatencyRecorder.Summary summary : summaries) {
+            report.append(String.format("%-18s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    summary.operation(), summary.requests(), summary.errors(), summary.throughput(),
+                    summary.p50Millis(), summary.p99Millis(), summary.p999Millis(), summary.maxMillis()));
+        }
+        return report.toString();
+    }
+
+    private static void writeJson(Settings settings, List<LatencyRecorder.Summary> summaries) throws IOException {
+        Path directory = Path.of(settings.reportDirectory());
+        Files.createDirectories(directory);
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("settings", settings);
+        results.put("operations", summaries);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(directory.resolve("results.json").toFile(), results);
+    }
+
+    /**
+     * Load shape and objectives, read from {@code loadTest.*} system properties. Latency
+     * objectives apply to all requests together.
+     */
+    record Settings(int users, Duration warmup, Duration duration, double maxP99Millis,
+                    double maxP999Millis, double minThroughput, double maxErrorRate, String reportDirectory) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("loadTest.users", 32),
+                    Duration.ofSeconds(Long.getLong("loadTest.warmupSeconds", 5)),
+                    Duration.ofSeconds(Long.getLong("loadTest.durationSeconds", 30)),
+                    doubleProperty("loadTest.slo.p99Millis", 250),
+                    doubleProperty("loadTest.slo.p999Millis", 1000),
+                    doubleProperty("loadTest.slo.minThroughput", 100),
+                    doubleProperty("loadTest.slo.maxErrorRate", 0.001),
+                    System.getProperty("loadTest.reportDirectory", "build/reports/load-test"));
+        }
+
+        private static double doubleProperty(String name, double defaultValue) {
+            String value = System.getProperty(name);
+            return value == null ? defaultValue : Double.parseDouble(value);
+        }
+
+        List<String> violations(LatencyRecorder.Summary total) {
+            List<String> violations = new ArrayList<>();
+            if (total.p99Millis() > maxP99Millis) {
+                violations.add(String.format("p99 %.2f ms > %.2f ms", total.p99Millis(), maxP99Millis));
+            }
+            if (total.p999Millis() > maxP999Millis) {
+                violations.add(String.format("p999 %.2f ms > %.2f ms", total.p999Millis(), maxP999Millis));
+            }
+            if (total.throughput() < minThroughput) {
+                violations.add(String.format("throughput %.1f req/s < %.1f req/s", total.throughput(), minThroughput));
+            }
+            if (total.errorRate() > maxErrorRate) {
+                violations.add(String.format("error rate %.4f > %.4f", total.errorRate(), maxErrorRate));
+            }
+            return violations;
+        }
+    }
+}
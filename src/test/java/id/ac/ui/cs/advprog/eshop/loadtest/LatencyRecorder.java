@@ -0,0 +1,113 @@
+package id.ac.ui.cs.advprog.eshop.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the latency of every request per operation, from any number of threads, and
+ * summarizes them as throughput and exact percentiles.
+ */
+class LatencyRecorder {
+    private final Map<String, Operation> operations = new ConcurrentSkipListMap<>();
+
+    void success(String operation, long nanos) {
+        operation(operation).record(nanos, false);
+    }
+
+    void failure(String operation, long nanos) {
+        operation(operation).record(nanos, true);
+    }
+
+    private Operation operation(String name) {
+        return operations.computeIfAbsent(name, key -> new Operation());
+    }
+
+    /**
+     * One summary per operation, in name order, followed by the total over all of them.
+     */
+    List<Summary> summarize(double elapsedSeconds) {
+        List<Summary> summaries = new ArrayList<>();
+        long[] all = new long[0];
+        long allErrors = 0;
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            long[] latencies = entry.getValue().latencies();
+            long errors = entry.getValue().errors();
+            summaries.add(Summary.of(entry.getKey(), latencies, errors, elapsedSeconds));
+            long[] merged = Arrays.copyOf(all, all.length + latencies.length);
+            System.arraycopy(latencies, 0, merged, all.length, latencies.length);
+            all = merged;
+            allErrors += errors;
+        }
+        summaries.add(Summary.of("total", all, allErrors, elapsedSeconds));
+        return summaries;
+    }
+
+    record Summary(String operation, long requests, long errors, double throughput,
+                   double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+        static Summary of(String operation, long[] latencies, long errors, double elapsedSeconds) {
+            Arrays.sort(latencies);
+            return new Summary(operation, latencies.length, errors, latencies.length / elapsedSeconds,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+        }
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+
+        // Nearest-rank percentile of sorted latencies, in milliseconds
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+
+    private static final class Operation {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Guarded by lock
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        void record(long nanos, boolean failed) {
+            lock.lock();
+            try {
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = nanos;
+                if (failed) {
+                    errors++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long[] latencies() {
+            lock.lock();
+            try {
+                return Arrays.copyOf(latencies, count);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long errors() {
+            lock.lock();
+            try {
+                return errors;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package id.ac.ui.cs.advprog.eshop.lowstock;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LowStockWatcherTest {
+    private final BlockingQueue<StockCrossing> received = new LinkedBlockingQueue<>();
+    private LowStockWatcher watcher;
+
+    @AfterEach
+    void tearDown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    private static Product product(String id, int quantity) {
+        return new Product(id, "Sampo Cap Bambang", quantity, 0);
+    }
+
+    private StockCrossing next() throws InterruptedException {
+        StockCrossing crossing = received.poll(10, TimeUnit.SECONDS);
+        assertNotNull(crossing, "no crossing delivered");
+        return crossing;
+    }
+
+    @Test
+    void testOnlyCrossingsOfTheThresholdAreReported() throws InterruptedException {
+        watcher = new LowStockWatcher(5, 100, List.of(received::add));
+
+        watcher.quantityChanged(product("p-1", 20), product("p-1", 6));
+        watcher.quantityChanged(product("p-1", 6), product("p-1", 4));
+        watcher.quantityChanged(product("p-1", 4), product("p-1", 0));
+        watcher.quantityChanged(product("p-1", 0), product("p-1", 5));
+
+        StockCrossing low = next();
+        assertTrue(low.low());
+        assertEquals("p-1", low.productId());
+        assertEquals(6, low.previousQuantity());
+        assertEquals(4, low.quantity());
+        assertEquals(5, low.threshold());
+        StockCrossing restocked = next();
+        assertFalse(restocked.low());
+        assertEquals(5, restocked.quantity());
+        watcher.close();
+        assertTrue(received.isEmpty());
+        assertEquals(2, watcher.deliveredCrossings());
+    }
+
+    @Test
+    void testOwnThresholdReplacesGlobalOneUntilRemoved() throws InterruptedException {
+        watcher = new LowStockWatcher(1, 100, List.of(received::add));
+        watcher.setThreshold(product("p-1", 12), 10);
+
+        watcher.quantityChanged(product("p-1", 12), product("p-1", 9));
+        watcher.quantityChanged(product("p-2", 12), product("p-2", 9));
+        assertEquals(10, next().threshold());
+
+        watcher.removeThreshold("p-1");
+        assertFalse(watcher.hasOwnThreshold("p-1"));
+        assertEquals(1, watcher.thresholdFor("p-1"));
+        watcher.quantityChanged(product("p-1", 9), product("p-1", 0));
+        StockCrossing soldOut = next();
+        assertEquals("p-1", soldOut.productId());
+        assertEquals(1, soldOut.threshold());
+    }
+
+    @Test
+    void testThresholdChangesReportProductsTheyMoveAcross() throws InterruptedException {
+        watcher = new LowStockWatcher(1, 100, List.of(received::add));
+
+        watcher.setThreshold(product("p-1", 4), 10);
+        StockCrossing low = next();
+        assertTrue(low.low());
+        assertEquals(4, low.previousQuantity());
+        assertEquals(4, low.quantity());
+        assertEquals(10, low.threshold());
+
+        // Still low under the new threshold, so nothing to report
+        watcher.setThreshold(product("p-1", 4), 8);
+        watcher.removeThreshold(product("p-1", 4));
+        StockCrossing restocked = next();
+        assertFalse(restocked.low());
+        assertEquals(1, restocked.threshold());
+        watcher.close();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void testNegativeThresholdIsRejected() {
+        watcher = LowStockWatcher.disabled();
+
+        assertThrows(IllegalArgumentException.class, () -> watcher.setThreshold(product("p-1", 5), -1));
+        assertThrows(IllegalArgumentException.class, () -> new LowStockWatcher(-1, 10, List.of()));
+    }
+
+    @Test
+    void testFullQueueDropsCrossingsInsteadOfBlockingWriters() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstTaken = new CountDownLatch(1);
+        watcher = new LowStockWatcher(5, 1, List.of(crossing -> {
+            firstTaken.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(crossing);
+        }));
+
+        watcher.quantityChanged(product("p-1", 9), product("p-1", 1));
+        assertTrue(firstTaken.await(10, TimeUnit.SECONDS));
+        watcher.quantityChanged(product("p-2", 9), product("p-2", 1));
+        watcher.quantityChanged(product("p-3", 9), product("p-3", 1));
+
+        assertEquals(1, watcher.droppedCrossings());
+        release.countDown();
+        assertEquals("p-1", next().productId());
+        assertEquals("p-2", next().productId());
+    }
+
+    @Test
+    void testFailingListenerDoesNotStopOthers() throws InterruptedException {
+        watcher = new LowStockWatcher(5, 100, List.of(crossing -> {
+            throw new IllegalStateException("broken sink");
+        }, received::add));
+
+        watcher.quantityChanged(product("p-1", 9), product("p-1", 1));
+
+        assertEquals("p-1", next().productId());
+    }
+
+    @Test
+    void testEveryKindOfRepositoryWriteIsWatched() throws InterruptedException {
+        watcher = new LowStockWatcher(5, 100, List.of(received::add));
+        ProductRepository repository = new ProductRepository();
+        repository.addQuantityListener(watcher);
+        repository.create(product("p-1", 10));
+
+        repository.update("p-1", product("p-1", 3));
+        repository.adjustQuantity("p-1", quantity -> quantity + 10);
+        repository.applyDeltas(List.of(new StockDelta("p-1", -13)), true);
+        repository.create(product("p-1", 8));
+
+        List<Boolean> lows = List.of(next().low(), next().low(), next().low(), next().low());
+        assertEquals(List.of(true, false, true, false), lows);
+    }
+
+    @Test
+    void testNotificationsKeepNewestFirstUpToCapacity() {
+        LowStockNotifications notifications = new LowStockNotifications(2);
+        for (int i = 1; i <= 3; i++) {
+            notifications.stockCrossed(new StockCrossing("p-" + i, "Product " + i, 5, 0, 1, true,
+                    Instant.now()));
+        }
+
+        assertEquals(List.of("p-3", "p-2"), notifications.recent().stream().map(StockCrossing::productId).toList());
+    }
+}
@@ -0,0 +1,57 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ViewRenderTimerTest {
+    private SimpleMeterRegistry registry;
+    private ViewRenderTimer timer;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        timer = new ViewRenderTimer(registry);
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void testRenderIsTimedPerView() {
+        timer.postHandle(request, response, null, new ModelAndView("productList"));
+        timer.afterCompletion(request, response, null, null);
+
+        Timer render = registry.find(ViewRenderTimer.RENDER).tag("view", "productList").tag("exception", "none").timer();
+        assertNotNull(render);
+        assertEquals(1, render.count());
+    }
+
+    @Test
+    void testFailedRenderIsTaggedWithException() {
+        timer.postHandle(request, response, null, new ModelAndView("editProduct"));
+        timer.afterCompletion(request, response, null, new IllegalStateException());
+
+        assertNotNull(registry.find(ViewRenderTimer.RENDER).tag("exception", "IllegalStateException").timer());
+    }
+
+    @Test
+    void testRedirectsAndMissingViewsAreNotTimed() {
+        timer.postHandle(request, response, null, new ModelAndView("redirect:/product/list"));
+        timer.afterCompletion(request, response, null, null);
+        MockHttpServletRequest notModified = new MockHttpServletRequest();
+        timer.postHandle(notModified, response, null, null);
+        timer.afterCompletion(notModified, response, null, null);
+
+        assertNull(registry.find(ViewRenderTimer.RENDER).timer());
+    }
+}
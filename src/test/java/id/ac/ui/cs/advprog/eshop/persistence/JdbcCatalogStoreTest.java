@@ -0,0 +1,148 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.persistence.WriteBehindBuffer.PendingWrite;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcCatalogStoreTest {
+    private JdbcDataSource dataSource;
+    private JdbcCatalogStore store;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        store = new JdbcCatalogStore(dataSource);
+        store.createTables();
+    }
+
+    private static Car car(String id, String name, String color, int quantity, long version) {
+        Car car = new Car();
+        car.setCarId(id);
+        car.setCarName(name);
+        car.setCarColor(color);
+        car.setCarQuantity(quantity);
+        car.setVersion(version);
+        return car;
+    }
+
+    private List<Product> loadProducts() throws SQLException {
+        List<Product> products = new ArrayList<>();
+        store.loadProducts(products::add);
+        return products;
+    }
+
+    @Test
+    void testUpsertKeepsFirstOrderAndDeleteRemovesRow() throws SQLException {
+        store.writeProducts(List.of(
+                new PendingWrite<>("b", new Product("b", "Second", 2, 0), 2),
+                new PendingWrite<>("a", new Product("a", "First", 1, 0), 1),
+                new PendingWrite<>("c", new Product("c", "Third", 3, 0), 3)));
+        store.writeProducts(List.of(
+                new PendingWrite<>("a", new Product("a", "First, updated", 10, 1), 7),
+                new PendingWrite<>("c", null, 8)));
+
+        List<Product> products = new ArrayList<>();
+        long lastOrder = store.loadProducts(products::add);
+
+        assertEquals(List.of("a", "b"), products.stream().map(Product::getProductId).toList());
+        assertEquals("First, updated", products.get(0).getProductName());
+        assertEquals(10, products.get(0).getProductQuantity());
+        assertEquals(1, products.get(0).getVersion());
+        assertEquals(2, lastOrder);
+    }
+
+    @Test
+    void testCarsRoundTrip() throws SQLException {
+        store.writeCars(List.of(new PendingWrite<>("car-1", car("car-1", "Avanza", "Red", 3, 2), 1)));
+
+        List<Car> cars = new ArrayList<>();
+        assertEquals(1, store.loadCars(cars::add));
+
+        Car loaded = cars.get(0);
+        assertEquals("car-1", loaded.getCarId());
+        assertEquals("Avanza", loaded.getCarName());
+        assertEquals("Red", loaded.getCarColor());
+        assertEquals(3, loaded.getCarQuantity());
+        assertEquals(2, loaded.getVersion());
+    }
+
+    @Test
+    void testEmptyTablesLoadNothing() throws SQLException {
+        assertTrue(loadProducts().isEmpty());
+        assertEquals(0, store.loadCars(car -> fail("no cars stored")));
+    }
+
+    @Test
+    void testFailedBatchIsRolledBack() throws SQLException {
+        store.writeProducts(List.of(new PendingWrite<>("a", new Product("a", "First", 1, 0), 1)));
+
+        // The product name column is too short for the second row, so the batch fails as a whole
+        assertThrows(SQLException.class, () -> store.writeProducts(List.of(
+                new PendingWrite<>("a", null, 2),
+                new PendingWrite<>("b", new Product("b", "x".repeat(300), 1, 0), 3))));
+
+        assertEquals(List.of("a"), loadProducts().stream().map(Product::getProductId).toList());
+    }
+
+    @Test
+    void testCatalogSurvivesRestartThroughWriteBehind() throws SQLException {
+        JdbcPersistenceProperties properties = new JdbcPersistenceProperties(true,
+                JdbcPersistenceProperties.Durability.ASYNC, 100, Duration.ofHours(1), Duration.ofSeconds(10));
+        ProductRepository productRepository = new ProductRepository();
+        CarRepository carRepository = new CarRepository();
+        CatalogWriteBehind writeBehind = new CatalogWriteBehind(productRepository, carRepository, store, properties);
+
+        productRepository.create(new Product("p-1", "Sampo Cap Bambang", 5, 0));
+        productRepository.create(new Product("p-2", "Sabun Cap Usep", 2, 0));
+        productRepository.update("p-1", new Product("p-1", "Sampo Cap Bambang", 4, 0));
+        productRepository.deleteById("p-2");
+        carRepository.create(car("car-1", "Avanza", "Red", 3, 0));
+        // Nothing is written until a batch fills up, the interval passes or the buffer closes
+        assertTrue(loadProducts().isEmpty());
+        writeBehind.close();
+
+        ProductRepository restartedProducts = new ProductRepository();
+        CarRepository restartedCars = new CarRepository();
+        new CatalogWriteBehind(restartedProducts, restartedCars, store, properties).close();
+
+        Product product = restartedProducts.findById("p-1");
+        assertEquals(4, product.getProductQuantity());
+        assertEquals(1, product.getVersion());
+        assertNull(restartedProducts.findById("p-2"));
+        assertEquals("Avanza", restartedCars.findById("car-1").getCarName());
+    }
+
+    @Test
+    void testSyncWritesAreStoredWhenTheyReturn() throws SQLException {
+        JdbcPersistenceProperties properties = new JdbcPersistenceProperties(true,
+                JdbcPersistenceProperties.Durability.SYNC, 100, Duration.ofHours(1), Duration.ofSeconds(10));
+        ProductRepository productRepository = new ProductRepository();
+        CarRepository carRepository = new CarRepository();
+        CatalogWriteBehind writeBehind = new CatalogWriteBehind(productRepository, carRepository, store, properties);
+
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new Product("p-" + i, "Sampo", i, 0));
+        }
+        productRepository.createAll(batch);
+        assertEquals(1000, loadProducts().size());
+
+        productRepository.adjustQuantity("p-1", quantity -> quantity + 1);
+        assertEquals(2, loadProducts().get(1).getProductQuantity());
+        writeBehind.close();
+    }
+}
@@ -0,0 +1,228 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ProductJournal;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductWriteAheadLogTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private ProductWriteAheadLog open(ProductRepository productRepository) throws IOException {
+        return new ProductWriteAheadLog(productRepository, directory, SEGMENT_SIZE,
+                Duration.ofMillis(5), Duration.ofHours(1));
+    }
+
+    private Product product(String name, int quantity) {
+        Product product = new Product();
+        product.setProductName(name);
+        product.setProductQuantity(quantity);
+        return product;
+    }
+
+    private List<Product> contents(ProductRepository productRepository) {
+        List<Product> products = new ArrayList<>();
+        Iterator<Product> productIterator = productRepository.findAll();
+        productIterator.forEachRemaining(products::add);
+        return products;
+    }
+
+    @Test
+    void testRecoversCreatesUpdatesAndDeletes() throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        ProductWriteAheadLog writeAheadLog = open(productRepository);
+        Product kept = productRepository.create(product("Sampo Cap Bambang", 100));
+        Product deleted = productRepository.create(product("Sampo Cap Usep", 50));
+        Product edit = product("Sampo Cap Bambang - Updated", 90);
+        productRepository.update(kept.getProductId(), edit);
+        productRepository.deleteById(deleted.getProductId());
+        Product last = productRepository.create(product("Sabun", 0));
+        writeAheadLog.close();
+
+        ProductRepository recovered = new ProductRepository();
+        open(recovered).close();
+
+        List<Product> products = contents(recovered);
+        assertEquals(2, products.size());
+        assertEquals(kept.getProductId(), products.get(0).getProductId());
+        assertEquals("Sampo Cap Bambang - Updated", products.get(0).getProductName());
+        assertEquals(90, products.get(0).getProductQuantity());
+        assertEquals(1, products.get(0).getVersion());
+        assertEquals(last.getProductId(), products.get(1).getProductId());
+        assertNull(recovered.findById(deleted.getProductId()));
+    }
+
+    @Test
+    void testRecoversFromSnapshotPlusTail() throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        ProductWriteAheadLog writeAheadLog = open(productRepository);
+        Product first = productRepository.create(product("Before snapshot", 1));
+        writeAheadLog.compact();
+        Product second = productRepository.create(product("After snapshot", 2));
+        productRepository.deleteById(first.getProductId());
+        writeAheadLog.close();
+
+        assertTrue(Files.exists(directory.resolve("products.snapshot")));
+
+        ProductRepository recovered = new ProductRepository();
+        open(recovered).close();
+
+        List<Product> products = contents(recovered);
+        assertEquals(1, products.size());
+        assertEquals(second.getProductId(), products.get(0).getProductId());
+    }
+
+    @Test
+    void testCompactionRemovesOldSegments() throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        ProductWriteAheadLog writeAheadLog = open(productRepository);
+        for (int i = 0; i < 10; i++) {
+            productRepository.create(product("Product " + i, i));
+        }
+        writeAheadLog.compact();
+        writeAheadLog.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(path -> path.toString().endsWith(".wal")).count());
+        }
+        ProductRepository recovered = new ProductRepository();
+        open(recovered).close();
+        assertEquals(10, contents(recovered).size());
+    }
+
+    @Test
+    void testCompactionWhileWritingLosesNoChange() throws Exception {
+        ProductRepository productRepository = new ProductRepository();
+        ProductWriteAheadLog writeAheadLog = open(productRepository);
+        // Runs after the log has appended each change and before the repository applies it,
+        // holding that moment open so compactions keep landing in it
+        productRepository.addJournal(new ProductJournal() {
+            @Override
+            public void productSaved(Product product) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+
+            @Override
+            public void productDeleted(String productId) {
+            }
+        });
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 2000; i++) {
+                productRepository.create(new Product("p-" + i % 50, "Sampo", i, 0));
+            }
+        });
+        // A change logged just before a rotation must reach the snapshot, or it is lost
+        // with the segment the snapshot replaces
+        while (writer.isAlive()) {
+            writeAheadLog.compact();
+        }
+        writer.join();
+        writeAheadLog.close();
+
+        ProductRepository recovered = new ProductRepository();
+        open(recovered).close();
+        assertEquals(50, recovered.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(1950 + i, recovered.findById("p-" + i).getProductQuantity());
+        }
+    }
+
+    @Test
+    void testRotatesWhenSegmentIsFull() throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        ProductWriteAheadLog writeAheadLog = open(productRepository);
+        for (int i = 0; i < 2_000; i++) {
+            productRepository.create(product("A product with a reasonably long name " + i, i));
+        }
+        writeAheadLog.close();
+
+        ProductRepository recovered = new ProductRepository();
+        open(recovered).close();
+        assertEquals(2_000, contents(recovered).size());
+    }
+
+    @Test
+    void testTornRecordAtEndOfLogIsIgnored() throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        ProductWriteAheadLog writeAheadLog = open(productRepository);
+        Product product = productRepository.create(product("Sampo Cap Bambang", 100));
+        writeAheadLog.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        ByteBuffer firstFrameLength = ByteBuffer.allocate(Integer.BYTES);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.read(firstFrameLength, 0);
+            int frameEnd = ProductRecordCodec.FRAME_HEADER_BYTES + firstFrameLength.flip().getInt();
+            // A second frame whose header was written but whose body never made it to disk
+            ByteBuffer tornFrame = ByteBuffer.allocate(ProductRecordCodec.FRAME_HEADER_BYTES).putInt(40).putInt(12345).flip();
+            channel.write(tornFrame, frameEnd);
+        }
+
+        ProductRepository recovered = new ProductRepository();
+        open(recovered).close();
+
+        List<Product> products = contents(recovered);
+        assertEquals(1, products.size());
+        assertEquals(product.getProductId(), products.get(0).getProductId());
+    }
+
+    @Test
+    void testForcingEveryWriteRecoversConcurrentWrites() throws Exception {
+        ProductRepository productRepository = new ProductRepository();
+        ProductWriteAheadLog writeAheadLog = new ProductWriteAheadLog(productRepository, directory, SEGMENT_SIZE,
+                Duration.ZERO, Duration.ofHours(1));
+        // Each writer forces its own records once the repository has released its locks
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int writer = i;
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 100; j++) {
+                    productRepository.create(new Product("w" + writer + "-" + j, "Sampo", j, 0));
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        writeAheadLog.close();
+
+        ProductRepository recovered = new ProductRepository();
+        open(recovered).close();
+        assertEquals(400, recovered.size());
+        assertEquals(99, recovered.findById("w3-99").getProductQuantity());
+    }
+
+    @Test
+    void testWritesAfterCloseAreRejected() throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        open(productRepository).close();
+
+        Product product = product("Sampo Cap Bambang", 1);
+        assertThrows(IllegalStateException.class, () -> productRepository.create(product));
+        assertNull(productRepository.findById(product.getProductId()));
+    }
+}
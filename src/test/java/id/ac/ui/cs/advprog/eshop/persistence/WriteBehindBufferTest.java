@@ -0,0 +1,265 @@
+package id.ac.ui.cs.advprog.eshop.persistence;
+
+import id.ac.ui.cs.advprog.eshop.persistence.WriteBehindBuffer.PendingWrite;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindBufferTest {
+    private static final Duration NEVER = Duration.ofHours(1);
+    private static final Duration SHUTDOWN = Duration.ofSeconds(10);
+
+    /**
+     * Applies batches to a map, like a table keyed by id, and remembers every batch.
+     */
+    private static class RecordingStore implements WriteBehindBuffer.Store<String> {
+        final List<List<PendingWrite<String>>> batches = new CopyOnWriteArrayList<>();
+        final Map<String, String> rows = new LinkedHashMap<>();
+        final AtomicInteger failuresLeft = new AtomicInteger();
+
+        @Override
+        public synchronized void write(List<PendingWrite<String>> batch) throws SQLException {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new SQLException("connection refused");
+            }
+            batches.add(List.copyOf(batch));
+            for (PendingWrite<String> write : batch) {
+                if (write.deleted()) {
+                    rows.remove(write.id());
+                } else {
+                    rows.put(write.id(), write.value());
+                }
+            }
+        }
+
+        synchronized Map<String, String> rows() {
+            return new LinkedHashMap<>(rows);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testRepeatedChangesToOneIdAreCoalesced() {
+        RecordingStore store = new RecordingStore();
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 100, NEVER, false, SHUTDOWN);
+
+        buffer.save("a", "a1");
+        buffer.save("b", "b1");
+        buffer.save("a", "a2");
+        buffer.save("c", "c1");
+        buffer.delete("c");
+        buffer.close();
+
+        assertEquals(1, store.batches.size());
+        List<PendingWrite<String>> batch = store.batches.get(0);
+        assertEquals(List.of("a", "b", "c"), batch.stream().map(PendingWrite::id).toList());
+        assertEquals("a2", batch.get(0).value());
+        assertTrue(batch.get(2).deleted());
+        assertEquals(Map.of("a", "a2", "b", "b1"), store.rows());
+    }
+
+    @Test
+    void testFullBatchIsFlushedWithoutWaitingForInterval() throws Exception {
+        RecordingStore store = new RecordingStore();
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 3, NEVER, false, SHUTDOWN);
+
+        buffer.save("a", "a");
+        buffer.save("b", "b");
+        assertTrue(store.batches.isEmpty());
+        buffer.save("c", "c");
+
+        waitFor(() -> store.batches.size() == 1);
+        assertEquals(3, store.batches.get(0).size());
+        buffer.close();
+    }
+
+    @Test
+    void testQueuedChangesAreFlushedAfterInterval() throws Exception {
+        RecordingStore store = new RecordingStore();
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 100,
+                Duration.ofMillis(20), false, SHUTDOWN);
+
+        buffer.save("a", "a");
+
+        waitFor(() -> store.rows().containsKey("a"));
+        assertEquals(0, buffer.queuedChanges());
+        buffer.close();
+    }
+
+    @Test
+    void testOrderContinuesAfterLastStoredOrderAndSurvivesCoalescing() {
+        RecordingStore store = new RecordingStore();
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 41, 100, NEVER, false, SHUTDOWN);
+
+        buffer.save("a", "a1");
+        buffer.save("b", "b1");
+        buffer.save("a", "a2");
+        buffer.close();
+
+        List<PendingWrite<String>> batch = store.batches.get(0);
+        assertEquals(42, batch.get(0).order());
+        assertEquals(43, batch.get(1).order());
+    }
+
+    @Test
+    void testFailedFlushIsRetriedBehindNewerChanges() throws Exception {
+        RecordingStore store = new RecordingStore();
+        store.failuresLeft.set(1);
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 2,
+                Duration.ofMillis(20), false, SHUTDOWN);
+
+        buffer.save("a", "a1");
+        buffer.save("b", "b1");
+        waitFor(() -> store.failuresLeft.get() <= 0);
+        buffer.save("a", "a2");
+
+        waitFor(() -> store.rows().size() == 2);
+        buffer.close();
+        assertEquals(Map.of("a", "a2", "b", "b1"), store.rows());
+        // The retried id keeps the order it was first queued with
+        PendingWrite<String> a = store.batches.stream().flatMap(List::stream)
+                .filter(write -> write.id().equals("a")).findFirst().orElseThrow();
+        assertEquals(1, a.order());
+    }
+
+    @Test
+    void testSyncWritesWaitForCommitAndShareBatches() throws Exception {
+        CountDownLatch releaseStore = new CountDownLatch(1);
+        AtomicInteger inStore = new AtomicInteger();
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        WriteBehindBuffer.Store<String> store = batch -> {
+            inStore.set(batch.size());
+            try {
+                releaseStore.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            batchSizes.add(batch.size());
+        };
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 100, NEVER, true, SHUTDOWN);
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String id = "id-" + i;
+            writers.add(Thread.ofPlatform().start(() -> buffer.save(id, id).join()));
+        }
+        // Every change is queued or in the batch held up in the store, and its writer waits
+        waitFor(() -> inStore.get() + buffer.queuedChanges() == 5);
+        waitFor(() -> writers.stream().allMatch(writer -> writer.getState() == Thread.State.WAITING));
+
+        releaseStore.countDown();
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(writer.isAlive());
+        }
+        buffer.close();
+        assertEquals(5, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() < 5, "writers waiting together share a batch: " + batchSizes);
+    }
+
+    @Test
+    void testFailedSyncBatchFailsItsOutcomeAndIsRetried() {
+        RecordingStore store = new RecordingStore();
+        store.failuresLeft.set(1);
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 100, NEVER, true, SHUTDOWN);
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> buffer.save("a", "a1").join());
+        assertTrue(failure.getCause() instanceof SQLException);
+
+        // The failed change is already applied by its caller, so it is stored with the next batch
+        buffer.save("b", "b1").join();
+        assertEquals(Map.of("a", "a1", "b", "b1"), store.rows());
+        buffer.close();
+    }
+
+    @Test
+    void testChangeTheStoreRefusesIsDroppedAndTheRestStored() {
+        RecordingStore records = new RecordingStore();
+        WriteBehindBuffer.Store<String> store = batch -> {
+            if (batch.stream().anyMatch(write -> "x".repeat(256).equals(write.value()))) {
+                throw new SQLDataException("Value too long for column", "22001");
+            }
+            records.write(batch);
+        };
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 100, NEVER, false, SHUTDOWN);
+
+        buffer.save("a", "a1");
+        CompletableFuture<Void> outcome = buffer.save("bad", "x".repeat(256));
+        buffer.save("c", "c1");
+        buffer.close();
+
+        CompletionException failure = assertThrows(CompletionException.class, outcome::join);
+        assertTrue(failure.getCause() instanceof SQLDataException);
+        assertEquals(Map.of("a", "a1", "c", "c1"), records.rows());
+        assertEquals(1, buffer.droppedChanges());
+        assertEquals(0, buffer.queuedChanges());
+    }
+
+    @Test
+    void testOnlyRefusedDataCountsAsRefused() {
+        assertTrue(WriteBehindBuffer.refusesData(new SQLDataException("Value too long")));
+        assertTrue(WriteBehindBuffer.refusesData(new SQLException("Duplicate key", "23505")));
+        SQLException batchFailure = new SQLException("Batch failed");
+        batchFailure.setNextException(new SQLException("Value too long", "22001"));
+        assertTrue(WriteBehindBuffer.refusesData(batchFailure));
+        assertFalse(WriteBehindBuffer.refusesData(new SQLException("Connection refused", "08001")));
+        assertFalse(WriteBehindBuffer.refusesData(new IllegalStateException("Pool closed")));
+    }
+
+    @Test
+    void testQueueingNeverWaitsForTheStore() throws Exception {
+        CountDownLatch releaseStore = new CountDownLatch(1);
+        WriteBehindBuffer.Store<String> store = batch -> {
+            try {
+                releaseStore.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+        };
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 100, NEVER, true, SHUTDOWN);
+
+        CompletableFuture<Void> outcome = buffer.save("a", "a1");
+        assertFalse(outcome.isDone());
+
+        releaseStore.countDown();
+        outcome.get(10, TimeUnit.SECONDS);
+        buffer.close();
+    }
+
+    @Test
+    void testCloseDrainsQueueAndRejectsLaterChanges() {
+        RecordingStore store = new RecordingStore();
+        store.failuresLeft.set(2);
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", store, 0, 100, NEVER, false, SHUTDOWN);
+        for (int i = 0; i < 10; i++) {
+            buffer.save("id-" + i, "value-" + i);
+        }
+
+        buffer.close();
+
+        assertEquals(10, store.rows().size());
+        assertThrows(IllegalStateException.class, () -> buffer.save("late", "late"));
+    }
+}
@@ -0,0 +1,73 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.StockLevel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarAttributeIndexTest {
+
+    CarAttributeIndex index;
+    AtomicLong sequence;
+
+    @BeforeEach
+    void setUp() {
+        index = new CarAttributeIndex();
+        sequence = new AtomicLong();
+    }
+
+    private static Car car(String color, int quantity) {
+        Car car = new Car();
+        car.setCarColor(color);
+        car.setCarQuantity(quantity);
+        return car;
+    }
+
+    @Test
+    void testMatchIntersectsColorAndStockLevels() {
+        long red = index.add(sequence::incrementAndGet, car("Red", 3));
+        index.add(sequence::incrementAndGet, car("Red", 0));
+        index.add(sequence::incrementAndGet, car("Blue", 3));
+        long redHigh = index.add(sequence::incrementAndGet, car("red", 500));
+
+        assertArrayEquals(new long[] {red, redHigh}, index.match(CarFilter.inStock("Red"), 0, 10));
+        assertArrayEquals(new long[] {redHigh}, index.match(CarFilter.inStock("Red"), red, 10));
+        assertArrayEquals(new long[] {red}, index.match(CarFilter.inStock("Red"), 0, 1));
+        assertEquals(0, index.match(new CarFilter("green", Set.of()), 0, 10).length);
+    }
+
+    @Test
+    void testRemovedRowsAreRenumbered() {
+        Car[] cars = new Car[10_000];
+        long[] sequences = new long[cars.length];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = car(i % 2 == 0 ? "Red" : "Blue", i % 20);
+            sequences[i] = index.add(sequence::incrementAndGet, cars[i]);
+        }
+        for (int i = 0; i < cars.length; i++) {
+            if (i % 100 > 1) {
+                index.remove(sequences[i], cars[i]);
+            }
+        }
+
+        // The 200 cars left take about as many rows as they need, not one per car ever stored
+        assertTrue(index.width() < 2 * 200 + 1024);
+        long[] redOutOfStock = index.match(new CarFilter("red", Set.of(StockLevel.OUT_OF_STOCK)), 0, 1000);
+        assertEquals(100, redOutOfStock.length);
+        for (int i = 0; i < redOutOfStock.length; i++) {
+            assertEquals(sequences[i * 100], redOutOfStock[i]);
+        }
+        assertEquals(100, index.facets().getColorCounts().get("red"));
+
+        Car repainted = car("Blue", 0);
+        index.replace(sequences[0], cars[0], repainted);
+        assertEquals(sequences[100], index.match(new CarFilter("red", Set.of()), 0, 1)[0]);
+        assertEquals(sequences[0], index.match(new CarFilter("blue", Set.of()), 0, 1)[0]);
+    }
+}
@@ -0,0 +1,353 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.CarFacets;
+import id.ac.ui.cs.advprog.eshop.model.CarFilter;
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import id.ac.ui.cs.advprog.eshop.model.StockLevel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarRepositoryTest {
+
+    CarRepository carRepository;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository();
+    }
+
+    private Car createCar(String name, String color, int quantity) {
+        Car car = new Car();
+        car.setCarName(name);
+        car.setCarColor(color);
+        car.setCarQuantity(quantity);
+        return carRepository.create(car);
+    }
+
+    private List<String> names(Page<Car> page) {
+        List<String> names = new ArrayList<>();
+        page.getItems().forEach(car -> names.add(car.getCarName()));
+        return names;
+    }
+
+    @Test
+    void testCreateAssignsIdAndFindById() {
+        Car car = createCar("Avanza", "Red", 3);
+
+        assertNotNull(car.getCarId());
+        Car stored = carRepository.findById(car.getCarId());
+        assertEquals(car.getCarId(), stored.getCarId());
+        assertEquals("Avanza", stored.getCarName());
+        assertEquals("Red", stored.getCarColor());
+        assertEquals(3, stored.getCarQuantity());
+    }
+
+    @Test
+    void testCreateTakesIdsFromItsGenerator() {
+        carRepository = new CarRepository(() -> "car-1");
+
+        Car car = createCar("Avanza", "Red", 3);
+
+        assertEquals("car-1", car.getCarId());
+        assertEquals("Avanza", carRepository.findById("car-1").getCarName());
+    }
+
+    @Test
+    void testCreateKeepsItsOwnCopy() {
+        Car car = createCar("Avanza", "Red", 3);
+
+        car.setCarColor("Blue");
+        car.setCarQuantity(0);
+
+        Car stored = carRepository.findById(car.getCarId());
+        assertNotSame(car, stored);
+        assertEquals("Red", stored.getCarColor());
+        assertEquals(3, stored.getCarQuantity());
+        assertEquals(1, carRepository.facets().getColorCounts().get("red"));
+        assertEquals(List.of("Avanza"), names(carRepository.findPage(new CarFilter("Red", Set.of()), null, 10)));
+    }
+
+    @Test
+    void testCreateIfAbsentNeverReplacesACar() {
+        Car car = createCar("Avanza", "Red", 3);
+
+        Car other = new Car();
+        other.setCarId(car.getCarId());
+        other.setCarName("Brio");
+        assertFalse(carRepository.createIfAbsent(other));
+        assertEquals("Avanza", carRepository.findById(car.getCarId()).getCarName());
+
+        Car withoutId = new Car();
+        withoutId.setCarName("Brio");
+        assertTrue(carRepository.createIfAbsent(withoutId));
+        assertEquals("Brio", carRepository.findById(withoutId.getCarId()).getCarName());
+    }
+
+    @Test
+    void testConcurrentCreateIfAbsentStoresOneCar() throws Exception {
+        int writers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            for (int i = 0; i < writers; i++) {
+                Car car = new Car();
+                car.setCarId("c-1");
+                car.setCarName("Writer " + i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return carRepository.createIfAbsent(car);
+                }));
+            }
+            start.countDown();
+            int created = 0;
+            for (Future<Boolean> result : results) {
+                created += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, created);
+        }
+        assertEquals(1, carRepository.size());
+    }
+
+    @Test
+    void testUpdateCar_StaleVersionIsRejected() {
+        Car car = createCar("Avanza", "Red", 3);
+
+        Car firstEdit = new Car();
+        firstEdit.setCarName("Avanza Veloz");
+        firstEdit.setCarColor("Red");
+        Car updated = carRepository.update(car.getCarId(), firstEdit);
+        assertEquals(1, updated.getVersion());
+
+        Car staleEdit = new Car();
+        staleEdit.setCarName("Stale");
+        assertThrows(VersionConflictException.class, () -> carRepository.update(car.getCarId(), staleEdit));
+        assertEquals("Avanza Veloz", carRepository.findById(car.getCarId()).getCarName());
+    }
+
+    @Test
+    void testFilterByColorAndStock() {
+        createCar("Avanza", "Red", 3);
+        createCar("Brio", "red", 0);
+        createCar("Civic", "Blue", 12);
+        createCar("Jazz", "RED ", 150);
+
+        Page<Car> redInStock = carRepository.findPage(CarFilter.inStock("Red"), null, 10);
+        Page<Car> blue = carRepository.findPage(new CarFilter("blue", Set.of()), null, 10);
+        Page<Car> outOfStock = carRepository.findPage(new CarFilter(null, Set.of(StockLevel.OUT_OF_STOCK)), null, 10);
+
+        assertEquals(List.of("Avanza", "Jazz"), names(redInStock));
+        assertEquals(List.of("Civic"), names(blue));
+        assertEquals(List.of("Brio"), names(outOfStock));
+    }
+
+    @Test
+    void testFilterWithUnknownColorIsEmpty() {
+        createCar("Avanza", "Red", 3);
+
+        assertTrue(carRepository.findPage(new CarFilter("green", Set.of()), null, 10).getItems().isEmpty());
+    }
+
+    @Test
+    void testFilteredPagesUseCursor() {
+        for (int i = 0; i < 5; i++) {
+            createCar("Red " + i, "Red", i + 1);
+            createCar("Blue " + i, "Blue", i + 1);
+        }
+
+        Page<Car> first = carRepository.findPage(new CarFilter("red", Set.of()), null, 2);
+        Page<Car> second = carRepository.findPage(new CarFilter("red", Set.of()), first.getNextCursor(), 2);
+        Page<Car> third = carRepository.findPage(new CarFilter("red", Set.of()), second.getNextCursor(), 2);
+
+        assertEquals(List.of("Red 0", "Red 1"), names(first));
+        assertEquals(List.of("Red 2", "Red 3"), names(second));
+        assertEquals(List.of("Red 4"), names(third));
+        assertTrue(third.isLast());
+    }
+
+    @Test
+    void testFindAllNeverMissesCarBeingReplaced() throws InterruptedException {
+        Car kept = new Car();
+        kept.setCarId("kept");
+        carRepository.create(kept);
+        Car replaced = new Car();
+        replaced.setCarId("replaced");
+        carRepository.create(replaced);
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 10_000; i++) {
+                Car replacement = new Car();
+                replacement.setCarId("replaced");
+                replacement.setCarQuantity(i);
+                carRepository.create(replacement);
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            List<String> listed = new ArrayList<>();
+            carRepository.findAll().forEachRemaining(car -> listed.add(car.getCarId()));
+            assertEquals(1, listed.stream().filter("kept"::equals).count());
+            assertTrue(listed.contains("replaced"));
+        }
+        writer.join();
+    }
+
+    @Test
+    void testFilteredCursorSurvivesDeletingMostCars() {
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            cars.add(createCar("Car " + i, i % 2 == 0 ? "Red" : "Blue", i % 20));
+        }
+        Page<Car> first = carRepository.findPage(new CarFilter("red", Set.of()), null, 2);
+
+        // Enough deletes to renumber the index rows behind the cursor
+        for (int i = 4; i < cars.size(); i++) {
+            if (i % 1000 != 0) {
+                carRepository.delete(cars.get(i).getCarId());
+            }
+        }
+        Page<Car> second = carRepository.findPage(new CarFilter("red", Set.of()), first.getNextCursor(), 3);
+
+        assertEquals(List.of("Car 0", "Car 2"), names(first));
+        assertEquals(List.of("Car 1000", "Car 2000", "Car 3000"), names(second));
+        assertEquals(List.of("Car 4000"),
+                names(carRepository.findPage(new CarFilter("red", Set.of()), second.getNextCursor(), 3)));
+    }
+
+    @Test
+    void testIndexFollowsUpdatesAndDeletes() {
+        Car avanza = createCar("Avanza", "Red", 3);
+        Car brio = createCar("Brio", "Red", 5);
+
+        Car repaint = new Car();
+        repaint.setCarName("Avanza");
+        repaint.setCarColor("Blue");
+        repaint.setCarQuantity(0);
+        carRepository.update(avanza.getCarId(), repaint);
+        carRepository.delete(brio.getCarId());
+
+        assertTrue(carRepository.findPage(new CarFilter("red", Set.of()), null, 10).getItems().isEmpty());
+        assertEquals(List.of("Avanza"),
+                names(carRepository.findPage(new CarFilter("blue", Set.of(StockLevel.OUT_OF_STOCK)), null, 10)));
+    }
+
+    @Test
+    void testFacetCounts() {
+        createCar("Avanza", "Red", 3);
+        createCar("Brio", "Red", 0);
+        Car civic = createCar("Civic", "Blue", 12);
+        carRepository.delete(civic.getCarId());
+        createCar("Jazz", "White", 150);
+
+        CarFacets facets = carRepository.facets();
+
+        assertEquals(2, facets.getColorCounts().get("red"));
+        assertNull(facets.getColorCounts().get("blue"));
+        assertEquals(1, facets.getColorCounts().get("white"));
+        assertEquals(1, facets.getStockLevelCounts().get(StockLevel.LOW));
+        assertEquals(1, facets.getStockLevelCounts().get(StockLevel.OUT_OF_STOCK));
+        assertEquals(0, facets.getStockLevelCounts().get(StockLevel.MEDIUM));
+        assertEquals(1, facets.getStockLevelCounts().get(StockLevel.HIGH));
+    }
+
+    @Test
+    void testModificationStampGrowsOnlyWithChanges() {
+        long initial = carRepository.modificationStamp().version();
+        Car car = createCar("Avanza", "Red", 3);
+        long afterCreate = carRepository.modificationStamp().version();
+        assertTrue(afterCreate > initial);
+
+        assertNull(carRepository.update("missing", new Car()));
+        carRepository.delete("missing");
+        assertEquals(afterCreate, carRepository.modificationStamp().version());
+
+        carRepository.update(car.getCarId(), new Car());
+        long afterUpdate = carRepository.modificationStamp().version();
+        assertTrue(afterUpdate > afterCreate);
+        carRepository.delete(car.getCarId());
+        assertTrue(carRepository.modificationStamp().version() > afterUpdate);
+    }
+
+    @Test
+    void testJournalSeesEveryChangeButNotRestores() {
+        List<String> journaled = new ArrayList<>();
+        carRepository.addJournal(new CarJournal() {
+            @Override
+            public void carSaved(Car car) {
+                journaled.add("save " + car.getCarName() + " v" + car.getVersion());
+            }
+
+            @Override
+            public void carDeleted(String carId) {
+                journaled.add("delete " + carId);
+            }
+        });
+        Car restored = new Car();
+        restored.setCarId("restored");
+        restored.setCarName("Innova");
+        carRepository.restore(restored);
+
+        Car car = createCar("Avanza", "Red", 3);
+        Car update = new Car();
+        update.setCarName("Avanza Veloz");
+        carRepository.update(car.getCarId(), update);
+        carRepository.delete(car.getCarId());
+        carRepository.delete("missing");
+
+        assertEquals(List.of("save Avanza v0", "save Avanza Veloz v1", "delete " + car.getCarId()), journaled);
+        assertEquals("Innova", carRepository.findById("restored").getCarName());
+    }
+
+    @Test
+    void testFailingJournalLeavesCarUnchanged() {
+        Car car = createCar("Avanza", "Red", 3);
+        carRepository.addJournal(new CarJournal() {
+            @Override
+            public void carSaved(Car saved) {
+                throw new IllegalStateException("disk full");
+            }
+
+            @Override
+            public void carDeleted(String carId) {
+                throw new IllegalStateException("disk full");
+            }
+        });
+
+        Car update = new Car();
+        update.setCarName("Avanza Veloz");
+        assertThrows(IllegalStateException.class, () -> carRepository.update(car.getCarId(), update));
+        assertThrows(IllegalStateException.class, () -> carRepository.delete(car.getCarId()));
+        assertEquals("Avanza", carRepository.findById(car.getCarId()).getCarName());
+        assertEquals(List.of("Avanza"), names(carRepository.findPage(new CarFilter("Red", Set.of()), null, 10)));
+    }
+
+    @Test
+    void testRestoreKeepsPlaceOfExistingCar() {
+        Car first = createCar("Avanza", "Red", 3);
+        createCar("Brio", "White", 1);
+
+        Car restored = new Car();
+        restored.setCarId(first.getCarId());
+        restored.setCarName("Avanza Restored");
+        restored.setCarColor("Black");
+        restored.setVersion(4);
+        carRepository.restore(restored);
+
+        assertEquals(List.of("Avanza Restored", "Brio"), names(carRepository.findPage(null, 10)));
+        assertEquals(4, carRepository.findById(first.getCarId()).getVersion());
+        assertEquals(List.of("Avanza Restored"),
+                names(carRepository.findPage(new CarFilter("Black", Set.of()), null, 10)));
+        assertTrue(carRepository.findPage(new CarFilter("Red", Set.of()), null, 10).getItems().isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogKeyTest {
+
+    @Test
+    void testUuidIdsRoundTrip() {
+        String id = "0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5b";
+
+        assertEquals(id, CatalogKey.of(id).id());
+        assertEquals(CatalogKey.of(id), CatalogKey.of(new String(id.toCharArray())));
+        assertEquals(CatalogKey.of(id).hashCode(), CatalogKey.of(new String(id.toCharArray())).hashCode());
+    }
+
+    @Test
+    void testOtherIdsAreKeptAsGiven() {
+        String upperCase = "0190A1B2-C3D4-7E5F-8A9B-0C1D2E3F4A5B";
+
+        assertEquals("product-1", CatalogKey.of("product-1").id());
+        assertEquals(upperCase, CatalogKey.of(upperCase).id());
+        assertNotEquals(CatalogKey.of(upperCase), CatalogKey.of(upperCase.toLowerCase()));
+        assertEquals(CatalogKey.of("product-1"), CatalogKey.of("product-1"));
+    }
+
+    @Test
+    void testIdsWithNonAsciiDigitsAreKeptAsGiven() {
+        String id = "0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5b";
+        // Arabic-Indic and fullwidth forms of the leading 0
+        String arabicIndic = "\u0660" + id.substring(1);
+        String fullwidth = "\uff10" + id.substring(1);
+
+        assertEquals(arabicIndic, CatalogKey.of(arabicIndic).id());
+        assertEquals(fullwidth, CatalogKey.of(fullwidth).id());
+        assertNotEquals(CatalogKey.of(id), CatalogKey.of(arabicIndic));
+        assertNotEquals(CatalogKey.of(arabicIndic), CatalogKey.of(fullwidth));
+    }
+
+    @Test
+    void testUuidAndOtherKeysNeverMatch() {
+        assertNotEquals(CatalogKey.of("00000000-0000-0000-0000-000000000000"), CatalogKey.of(""));
+    }
+
+    @Test
+    void testUuidKeysSortLikeTheirText() {
+        String smaller = "0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5b";
+        String larger = "f190a1b2-c3d4-7e5f-0a9b-0c1d2e3f4a5b";
+
+        assertTrue(CatalogKey.of(smaller).compareTo(CatalogKey.of(larger)) < 0);
+        assertTrue(CatalogKey.of(larger).compareTo(CatalogKey.of("a")) < 0);
+        assertEquals(0, CatalogKey.of(smaller).compareTo(CatalogKey.of(smaller)));
+    }
+}
@@ -0,0 +1,179 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Page;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapProductStorageTest {
+
+    OffHeapProductStorage storage;
+    ProductRepository productRepository;
+
+    @BeforeEach
+    void setUp() {
+        storage = new OffHeapProductStorage(4);
+        productRepository = new ProductRepository(storage);
+    }
+
+    @Test
+    void testStoreAndReadUuidProduct() {
+        Product product = new Product("eb558e9f-1c39-460e-8860-71af6af63bd6", "Sampo Cap Bambang", 100, 3);
+
+        Product stored = storage.store(1, product).product();
+
+        assertNotSame(product, stored);
+        assertEquals("eb558e9f-1c39-460e-8860-71af6af63bd6", stored.getProductId());
+        assertEquals("Sampo Cap Bambang", stored.getProductName());
+        assertEquals(100, stored.getProductQuantity());
+        assertEquals(3, stored.getVersion());
+    }
+
+    @Test
+    void testStoreAndReadOtherIdsAndMissingName() {
+        Product stored = storage.store(1, new Product("EB558E9F-1C39-460E-8860-71AF6AF63BD6", null, 0, 0)).product();
+        assertEquals("EB558E9F-1C39-460E-8860-71AF6AF63BD6", stored.getProductId());
+        assertNull(stored.getProductName());
+
+        stored = storage.store(2, new Product("sku-42", "Sabun \u00fc", 7, 0)).product();
+        assertEquals("sku-42", stored.getProductId());
+        assertEquals("Sabun \u00fc", stored.getProductName());
+    }
+
+    @Test
+    void testReleasedSlotReadsNullEvenAfterRowIsReused() {
+        ProductSlot slot = storage.store(1, new Product("a", "Sampo", 1, 0));
+        storage.release(slot);
+        ProductSlot reused = storage.store(2, new Product("b", "Sabun", 2, 0));
+
+        assertNull(slot.product());
+        assertEquals("b", reused.product().getProductId());
+
+        storage.release(slot);
+        assertEquals("b", reused.product().getProductId());
+    }
+
+    @Test
+    void testGrowsPastInitialCapacity() {
+        ProductSlot[] slots = new ProductSlot[1000];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = storage.store(i, new Product("id-" + i, "Product " + i, i, i));
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            Product product = slots[i].product();
+            assertEquals("id-" + i, product.getProductId());
+            assertEquals("Product " + i, product.getProductName());
+            assertEquals(i, product.getProductQuantity());
+        }
+    }
+
+    @Test
+    void testCompactsNamesOfReleasedProducts() {
+        String longName = "x".repeat(4096);
+        ProductSlot kept = storage.store(0, new Product("kept", "Sampo", 1, 0));
+        for (int i = 0; i < 1000; i++) {
+            storage.release(storage.store(i + 1, new Product("id-" + i, longName, i, 0)));
+        }
+
+        assertEquals("Sampo", kept.product().getProductName());
+        assertTrue(storage.offHeapBytes() < 8L * 1024 * 1024);
+    }
+
+    @Test
+    void testReadsWithoutLockingSeeWholeRowsWhileArenaMoves() throws InterruptedException {
+        ProductSlot kept = storage.store(0, new Product("kept-id", "Sampo", 1, 0));
+        Thread writer = new Thread(() -> {
+            // Long names grow the arena and, once released, get it compacted again and again
+            for (int i = 0; i < 5000; i++) {
+                String name = String.valueOf((char) ('a' + i % 26)).repeat(4096);
+                storage.release(storage.store(i + 1, new Product("id-" + i, name, i, 0)));
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            Product product = kept.product();
+            assertEquals("kept-id", product.getProductId());
+            assertEquals("Sampo", product.getProductName());
+        }
+        writer.join();
+    }
+
+    @Test
+    void testRepositoryWithOffHeapStorage() {
+        Product product = new Product();
+        product.setProductName("Sampo Cap Bambang");
+        product.setProductQuantity(100);
+        productRepository.create(product);
+        Product other = new Product();
+        other.setProductName("Sampo Cap Usep");
+        productRepository.create(other);
+
+        Product changes = new Product();
+        changes.setProductName("Sabun Cap Bambang");
+        changes.setProductQuantity(50);
+        productRepository.update(product.getProductId(), changes);
+        productRepository.deleteById(other.getProductId());
+
+        Product found = productRepository.findById(product.getProductId());
+        assertEquals("Sabun Cap Bambang", found.getProductName());
+        assertEquals(50, found.getProductQuantity());
+        assertEquals(1, found.getVersion());
+        assertNull(productRepository.findById(other.getProductId()));
+
+        Iterator<Product> productIterator = productRepository.findAll();
+        assertEquals(product.getProductId(), productIterator.next().getProductId());
+        assertFalse(productIterator.hasNext());
+        Page<Product> page = productRepository.findPage(null, 10);
+        assertEquals(1, page.getItems().size());
+        List<Product> matches = productRepository.searchByNamePrefix("sabun", 10);
+        assertEquals(1, matches.size());
+    }
+
+    @Test
+    void testConcurrentUpdatesNeverReadReleasedRows() throws InterruptedException {
+        Product product = new Product("eb558e9f-1c39-460e-8860-71af6af63bd6", "Sampo", 0, 0);
+        productRepository.create(product);
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 10_000; i++) {
+                productRepository.update(product.getProductId(), new Product(null, "Sampo", i, i - 1));
+            }
+        });
+        writer.start();
+
+        int lastQuantity = 0;
+        while (writer.isAlive()) {
+            Product found = productRepository.findById(product.getProductId());
+            assertEquals("Sampo", found.getProductName());
+            assertEquals(found.getVersion(), found.getProductQuantity());
+            assertTrue(found.getProductQuantity() >= lastQuantity);
+            lastQuantity = found.getProductQuantity();
+        }
+        writer.join();
+        assertEquals(10_000, productRepository.findById(product.getProductId()).getProductQuantity());
+    }
+
+    @Test
+    void testFindPageNeverSkipsProductsBeingUpdated() throws InterruptedException {
+        Product product = new Product("eb558e9f-1c39-460e-8860-71af6af63bd6", "Sampo", 0, 0);
+        productRepository.create(product);
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 10_000; i++) {
+                productRepository.update(product.getProductId(), new Product(null, "Sampo", i, i - 1));
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            // An update releases the slot the page may be reading, but the product stays listed
+            assertEquals(1, productRepository.findPage(null, 10).getItems().size());
+        }
+        writer.join();
+    }
+}
@@ -1,24 +1,37 @@
 package id.ac.ui.cs.advprog.eshop.repository;
 
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
+import id.ac.ui.cs.advprog.eshop.model.StockDelta;
+import id.ac.ui.cs.advprog.eshop.model.StockDeltaResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@ExtendWith(MockitoExtension.class)
 class ProductRepositoryTest {
 
-    @InjectMocks
     ProductRepository productRepository;
 
     @BeforeEach
     void setUp() {
+        productRepository = new ProductRepository();
     }
 
     @Test
@@ -37,6 +50,57 @@ class ProductRepositoryTest {
         assertEquals(product.getProductQuantity(), savedProduct.getProductQuantity());
     }
 
+    @Test
+    void testCreateGivesProductWithoutIdOneFromItsGenerator() {
+        productRepository = new ProductRepository(new HeapProductStorage(), () -> "p-1");
+        Product product = new Product();
+        product.setProductName("Sampo Cap Bambang");
+
+        productRepository.create(product);
+
+        assertEquals("p-1", product.getProductId());
+        assertEquals("Sampo Cap Bambang", productRepository.findById("p-1").getProductName());
+    }
+
+    @Test
+    void testCreateIfAbsentNeverReplacesAProduct() {
+        productRepository.create(new Product("p-1", "Sampo Cap Bambang", 5, 0));
+        productRepository.update("p-1", new Product("p-1", "Sampo Cap Bambang", 4, 0));
+
+        assertFalse(productRepository.createIfAbsent(new Product("p-1", "Sabun Cap Usep", 9, 0)));
+        Product stored = productRepository.findById("p-1");
+        assertEquals("Sampo Cap Bambang", stored.getProductName());
+        assertEquals(1, stored.getVersion());
+
+        Product withoutId = new Product(null, "Sabun Cap Usep", 9, 0);
+        assertTrue(productRepository.createIfAbsent(withoutId));
+        assertNotNull(productRepository.findById(withoutId.getProductId()));
+    }
+
+    @Test
+    void testConcurrentCreateIfAbsentStoresOneProduct() throws Exception {
+        int writers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            for (int i = 0; i < writers; i++) {
+                String name = "Writer " + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return productRepository.createIfAbsent(new Product("p-1", name, 1, 0));
+                }));
+            }
+            start.countDown();
+            int created = 0;
+            for (Future<Boolean> result : results) {
+                created += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, created);
+        }
+        assertEquals(1, productRepository.size());
+        assertEquals(0, productRepository.findById("p-1").getVersion());
+    }
+
     @Test
     void testFindAllIsEmpty() {
         Iterator<Product> productIterator = productRepository.findAll();
@@ -77,7 +141,7 @@ class ProductRepositoryTest {
         Product foundProduct = productRepository.findById(product.getProductId());
         assertNotNull(foundProduct);
 
-        productRepository.deleteById(product.getProductId());
+        assertTrue(productRepository.deleteById(product.getProductId()));
 
         Product deletedProduct = productRepository.findById(product.getProductId());
         assertNull(deletedProduct);
@@ -86,7 +150,7 @@ class ProductRepositoryTest {
     @Test
     void testDeleteProduct_NotFound() {
         String nonExistentId = "non-existent-id";
-        productRepository.deleteById(nonExistentId);
+        assertFalse(productRepository.deleteById(nonExistentId));
 
         Iterator<Product> productIterator = productRepository.findAll();
         assertFalse(productIterator.hasNext());
@@ -135,4 +199,803 @@ class ProductRepositoryTest {
         assertEquals(product2.getProductName(), foundProduct.getProductName());
         assertEquals(product2.getProductQuantity(), foundProduct.getProductQuantity());
     }
+
+    @Test
+    void testCreateWithExistingIdReplacesProduct() {
+        Product product1 = new Product();
+        product1.setProductId("eb558e9f-1c39-460e-8860-71af6af63bd6");
+        product1.setProductName("Sampo Cap Bambang");
+        productRepository.create(product1);
+
+        Product product2 = new Product();
+        product2.setProductId("eb558e9f-1c39-460e-8860-71af6af63bd6");
+        product2.setProductName("Sampo Cap Usep");
+        productRepository.create(product2);
+
+        Iterator<Product> productIterator = productRepository.findAll();
+        assertEquals("Sampo Cap Usep", productIterator.next().getProductName());
+        assertFalse(productIterator.hasNext());
+    }
+
+    @Test
+    void testFindAllKeepsInsertionOrderAfterDelete() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setProductName("Product " + i);
+            productRepository.create(product);
+            ids.add(product.getProductId());
+        }
+
+        productRepository.deleteById(ids.get(2));
+
+        Iterator<Product> productIterator = productRepository.findAll();
+        for (int i : new int[]{0, 1, 3, 4}) {
+            assertEquals(ids.get(i), productIterator.next().getProductId());
+        }
+        assertFalse(productIterator.hasNext());
+    }
+
+    @Test
+    void testFindAllSkipsEntryOfProductReplacedDuringScan() {
+        for (String id : List.of("a", "b", "c")) {
+            productRepository.create(new Product(id, "Product " + id, 1, 0));
+        }
+
+        Iterator<Product> productIterator = productRepository.findAll();
+        List<String> listed = new ArrayList<>();
+        listed.add(productIterator.next().getProductId());
+        // The scan may already hold the entry "b" is leaving
+        productRepository.create(new Product("b", "Replaced", 2, 0));
+        productIterator.forEachRemaining(product -> listed.add(product.getProductId()));
+
+        assertEquals(List.of("a", "c", "b"), listed);
+    }
+
+    @Test
+    void testFindAllNeverMissesProductBeingReplaced() throws InterruptedException {
+        productRepository.create(new Product("kept", "Sampo", 1, 0));
+        productRepository.create(new Product("replaced", "Sabun", 0, 0));
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 10_000; i++) {
+                productRepository.create(new Product("replaced", "Sabun", i, 0));
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            List<String> listed = new ArrayList<>();
+            productRepository.findAll().forEachRemaining(product -> listed.add(product.getProductId()));
+            assertEquals(1, listed.stream().filter("kept"::equals).count());
+            assertTrue(listed.contains("replaced"));
+        }
+        writer.join();
+    }
+
+    @Test
+    void testFindById_NullId() {
+        assertNull(productRepository.findById(null));
+    }
+
+    @Test
+    void testConcurrentCreateLosesNoWrites() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<String> created = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    Product product = new Product();
+                    product.setProductName("Product " + i);
+                    productRepository.create(product);
+                    created.add(product.getProductId());
+                }
+                return created;
+            }));
+        }
+        start.countDown();
+
+        List<String> allIds = new ArrayList<>();
+        for (Future<List<String>> future : futures) {
+            allIds.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        for (String id : allIds) {
+            assertNotNull(productRepository.findById(id));
+        }
+        int count = 0;
+        Iterator<Product> productIterator = productRepository.findAll();
+        while (productIterator.hasNext()) {
+            productIterator.next();
+            count++;
+        }
+        assertEquals(threads * perThread, count);
+    }
+
+    @Test
+    void testIterationDuringConcurrentWritesDoesNotThrow() throws Exception {
+        for (int i = 0; i < 1_000; i++) {
+            Product product = new Product();
+            product.setProductName("Seed " + i);
+            productRepository.create(product);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < 5_000; i++) {
+                Product product = new Product();
+                product.setProductName("Writer " + i);
+                productRepository.create(product);
+            }
+            return null;
+        });
+        Future<?> deleter = executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < 5_000; i++) {
+                Iterator<Product> productIterator = productRepository.findAll();
+                if (productIterator.hasNext()) {
+                    productRepository.deleteById(productIterator.next().getProductId());
+                }
+            }
+            return null;
+        });
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < 200; i++) {
+                Iterator<Product> productIterator = productRepository.findAll();
+                while (productIterator.hasNext()) {
+                    assertNotNull(productIterator.next());
+                }
+            }
+            return null;
+        });
+        start.countDown();
+
+        try {
+            writer.get(30, TimeUnit.SECONDS);
+            deleter.get(30, TimeUnit.SECONDS);
+            reader.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertFalse(e.getCause() instanceof ConcurrentModificationException, e.getCause().toString());
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentDeleteRemovesEveryProduct() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 4_000; i++) {
+            String id = UUID.randomUUID().toString();
+            Product product = new Product();
+            product.setProductId(id);
+            productRepository.create(product);
+            ids.add(id);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            List<String> share = ids.subList(t * 1_000, (t + 1) * 1_000);
+            futures.add(executor.submit(() -> share.forEach(productRepository::deleteById)));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertFalse(productRepository.findAll().hasNext());
+    }
+
+    @Test
+    void testUpdateProduct_Success() {
+        Product product = new Product();
+        product.setProductId("eb558e9f-1c39-460e-8860-71af6af63bd6");
+        product.setProductName("Sampo Cap Bambang");
+        product.setProductQuantity(100);
+        productRepository.create(product);
+
+        Product updatedProduct = new Product();
+        updatedProduct.setProductName("Sampo Cap Bambang - Updated");
+        updatedProduct.setProductQuantity(0);
+        updatedProduct.setVersion(0);
+        Product result = productRepository.update(product.getProductId(), updatedProduct);
+
+        assertNotNull(result);
+        assertEquals(product.getProductId(), result.getProductId());
+        assertEquals("Sampo Cap Bambang - Updated", result.getProductName());
+        assertEquals(0, result.getProductQuantity());
+        assertEquals(1, result.getVersion());
+        assertSame(result, productRepository.findById(product.getProductId()));
+        assertEquals("Sampo Cap Bambang", product.getProductName());
+    }
+
+    @Test
+    void testUpdateProduct_NotFound() {
+        Product updatedProduct = new Product();
+        updatedProduct.setProductName("Sampo Cap Bambang - Updated");
+
+        assertNull(productRepository.update("non-existent-id", updatedProduct));
+        assertNull(productRepository.update(null, updatedProduct));
+    }
+
+    @Test
+    void testUpdateProduct_StaleVersionIsRejected() {
+        Product product = new Product();
+        product.setProductName("Sampo Cap Bambang");
+        productRepository.create(product);
+
+        Product firstEdit = new Product();
+        firstEdit.setProductName("First edit");
+        productRepository.update(product.getProductId(), firstEdit);
+
+        Product staleEdit = new Product();
+        staleEdit.setProductName("Stale edit");
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> productRepository.update(product.getProductId(), staleEdit));
+
+        assertEquals(0, conflict.getExpectedVersion());
+        assertEquals(1, conflict.getActualVersion());
+        assertEquals("First edit", productRepository.findById(product.getProductId()).getProductName());
+    }
+
+    @Test
+    void testConcurrentUpdatesFromSameVersionHaveOneWinner() throws Exception {
+        Product product = new Product();
+        product.setProductName("Sampo Cap Bambang");
+        productRepository.create(product);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int quantity = t;
+            futures.add(executor.submit(() -> {
+                Product edit = new Product();
+                edit.setProductName("Edit " + quantity);
+                edit.setProductQuantity(quantity);
+                start.await();
+                try {
+                    productRepository.update(product.getProductId(), edit);
+                    return true;
+                } catch (VersionConflictException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get(30, TimeUnit.SECONDS)) {
+                winners++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, winners);
+        Product stored = productRepository.findById(product.getProductId());
+        assertEquals(1, stored.getVersion());
+        assertEquals("Edit " + stored.getProductQuantity(), stored.getProductName());
+    }
+
+    @Test
+    void testFindPageWalksCatalogInInsertionOrder() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Product product = new Product();
+            product.setProductName("Product " + i);
+            productRepository.create(product);
+            ids.add(product.getProductId());
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<Product> page = productRepository.findPage(cursor, 3);
+            page.getItems().forEach(product -> seen.add(product.getProductId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(ids, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testFindPageExactlyFullLastPageHasNoCursor() {
+        for (int i = 0; i < 3; i++) {
+            productRepository.create(new Product());
+        }
+
+        Page<Product> page = productRepository.findPage(null, 3);
+
+        assertEquals(3, page.getItems().size());
+        assertTrue(page.isLast());
+    }
+
+    @Test
+    void testFindPageSkipsProductsDeletedBetweenPages() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Product product = new Product();
+            productRepository.create(product);
+            ids.add(product.getProductId());
+        }
+
+        Page<Product> first = productRepository.findPage(null, 2);
+        productRepository.deleteById(ids.get(2));
+        Page<Product> second = productRepository.findPage(first.getNextCursor(), 2);
+
+        assertEquals(1, second.getItems().size());
+        assertEquals(ids.get(3), second.getItems().get(0).getProductId());
+        assertTrue(second.isLast());
+    }
+
+    @Test
+    void testFindPageRejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> productRepository.findPage("not a cursor!", 10));
+    }
+
+    @Test
+    void testSearchByNamePrefixIgnoresCaseAndSortsByName() {
+        for (String name : new String[]{"Sampo Cap Usep", "Sabun Mandi", "sampo cap bambang", "Pasta Gigi"}) {
+            Product product = new Product();
+            product.setProductName(name);
+            productRepository.create(product);
+        }
+
+        List<Product> matches = productRepository.searchByNamePrefix("SAMPO", 10);
+
+        assertEquals(2, matches.size());
+        assertEquals("sampo cap bambang", matches.get(0).getProductName());
+        assertEquals("Sampo Cap Usep", matches.get(1).getProductName());
+    }
+
+    @Test
+    void testSearchByNamePrefixRespectsLimit() {
+        for (int i = 0; i < 20; i++) {
+            Product product = new Product();
+            product.setProductName("Sampo " + i);
+            productRepository.create(product);
+        }
+
+        assertEquals(5, productRepository.searchByNamePrefix("sampo", 5).size());
+    }
+
+    @Test
+    void testSearchByNamePrefixFollowsUpdatesAndDeletes() {
+        Product product = new Product();
+        product.setProductName("Sampo Cap Bambang");
+        productRepository.create(product);
+        Product other = new Product();
+        other.setProductName("Sampo Cap Usep");
+        productRepository.create(other);
+
+        Product renamed = new Product();
+        renamed.setProductName("Sabun Cap Bambang");
+        productRepository.update(product.getProductId(), renamed);
+        productRepository.deleteById(other.getProductId());
+
+        assertTrue(productRepository.searchByNamePrefix("sampo", 10).isEmpty());
+        List<Product> matches = productRepository.searchByNamePrefix("sabun", 10);
+        assertEquals(1, matches.size());
+        assertEquals(product.getProductId(), matches.get(0).getProductId());
+    }
+
+    @Test
+    void testSearchByNamePrefixSkipsProductsWithoutName() {
+        productRepository.create(new Product());
+
+        assertTrue(productRepository.searchByNamePrefix("", 10).isEmpty());
+    }
+
+    private static List<String> ids(Page<Product> page) {
+        return page.getItems().stream().map(Product::getProductId).toList();
+    }
+
+    @Test
+    void testFindPageByQuantityWalksRangeLowestFirst() {
+        int[] quantities = {5, 0, 12, 3, 9, 3};
+        for (int i = 0; i < quantities.length; i++) {
+            productRepository.create(new Product("p-" + i, "Product " + i, quantities[i], 0));
+        }
+
+        Page<Product> first = productRepository.findPageByQuantity(null, 9, false, null, 2);
+        Page<Product> second = productRepository.findPageByQuantity(null, 9, false, first.getNextCursor(), 2);
+        Page<Product> third = productRepository.findPageByQuantity(null, 9, false, second.getNextCursor(), 2);
+
+        // Equal quantities are ordered by id
+        assertEquals(List.of("p-1", "p-3"), ids(first));
+        assertEquals(List.of("p-5", "p-0"), ids(second));
+        assertEquals(List.of("p-4"), ids(third));
+        assertTrue(third.isLast());
+    }
+
+    @Test
+    void testFindPageByQuantityDescending() {
+        int[] quantities = {5, 0, 12, 3, 9};
+        for (int i = 0; i < quantities.length; i++) {
+            productRepository.create(new Product("p-" + i, "Product " + i, quantities[i], 0));
+        }
+
+        Page<Product> first = productRepository.findPageByQuantity(3, null, true, null, 3);
+        Page<Product> second = productRepository.findPageByQuantity(3, null, true, first.getNextCursor(), 3);
+
+        assertEquals(List.of("p-2", "p-4", "p-0"), ids(first));
+        assertEquals(List.of("p-3"), ids(second));
+        assertTrue(second.isLast());
+    }
+
+    @Test
+    void testFindPageByQuantityFollowsEveryKindOfChange() {
+        productRepository.create(new Product("p-1", "Sampo", 20, 0));
+        productRepository.create(new Product("p-2", "Sabun", 20, 0));
+        productRepository.create(new Product("p-3", "Pasta", 20, 0));
+        productRepository.create(new Product("p-4", "Sikat", 1, 0));
+
+        productRepository.adjustQuantity("p-1", quantity -> 2);
+        productRepository.applyDeltas(List.of(new StockDelta("p-2", -17)), true);
+        productRepository.update("p-3", new Product("p-3", "Pasta", 4, 0));
+        productRepository.deleteById("p-4");
+
+        assertEquals(List.of("p-1", "p-2", "p-3"), ids(productRepository.findPageByQuantity(null, 9, false, null, 10)));
+        assertTrue(productRepository.findPageByQuantity(10, null, false, null, 10).getItems().isEmpty());
+    }
+
+    @Test
+    void testFindPageByNameIncludesNamesStartingWithUpperBound() {
+        String[] names = {"Durian", "cabe rawit", "Apel", "Bayam", "Cabai"};
+        for (int i = 0; i < names.length; i++) {
+            productRepository.create(new Product("p-" + i, names[i], 1, 0));
+        }
+        productRepository.create(new Product());
+
+        Page<Product> ascending = productRepository.findPageByName("b", "C", false, null, 10);
+        Page<Product> descending = productRepository.findPageByName(null, null, true, null, 2);
+        Page<Product> descendingNext = productRepository.findPageByName(null, null, true, descending.getNextCursor(), 10);
+
+        assertEquals(List.of("Bayam", "Cabai", "cabe rawit"),
+                ascending.getItems().stream().map(Product::getProductName).toList());
+        assertEquals(List.of("p-0", "p-1"), ids(descending));
+        // The product without a name is not listed
+        assertEquals(List.of("p-4", "p-3", "p-2"), ids(descendingNext));
+    }
+
+    @Test
+    void testSortedListingsRejectCursorsOfOtherListings() {
+        productRepository.create(new Product("p-1", "Sampo", 1, 0));
+        productRepository.create(new Product("p-2", "Sabun", 2, 0));
+        String nameCursor = productRepository.findPageByName(null, null, false, null, 1).getNextCursor();
+        String insertionCursor = productRepository.findPage(null, 1).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> productRepository.findPageByQuantity(null, null, false, nameCursor, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> productRepository.findPageByName(null, null, false, insertionCursor, 1));
+    }
+
+    @Test
+    void testQuantityListenersHearOnlyActualQuantityChanges() {
+        List<String> changes = new ArrayList<>();
+        productRepository.addQuantityListener((previous, current) -> changes.add(
+                current.getProductId() + ":" + previous.getProductQuantity() + "->" + current.getProductQuantity()));
+        productRepository.create(new Product("p-1", "Sampo", 5, 0));
+
+        productRepository.update("p-1", new Product("p-1", "Sampo Cap Bambang", 5, 0));
+        productRepository.adjustQuantity("p-1", quantity -> quantity - 2);
+        productRepository.adjustQuantity("p-1", quantity -> -1);
+        productRepository.applyDeltas(List.of(new StockDelta("p-1", 4), new StockDelta("p-1", -4)), false);
+        productRepository.applyDeltas(List.of(new StockDelta("p-1", 1)), false);
+        productRepository.deleteById("p-1");
+
+        assertEquals(List.of("p-1:5->3", "p-1:3->4"), changes);
+    }
+
+    @Test
+    void testModificationStampGrowsOnlyWithChanges() {
+        long initial = productRepository.modificationStamp().version();
+        Product product = new Product();
+        product.setProductName("Sampo Cap Bambang");
+        productRepository.create(product);
+        long afterCreate = productRepository.modificationStamp().version();
+        assertTrue(afterCreate > initial);
+
+        Product stale = new Product();
+        stale.setProductName("Sabun");
+        stale.setVersion(5);
+        assertThrows(VersionConflictException.class, () -> productRepository.update(product.getProductId(), stale));
+        assertNull(productRepository.update("missing", new Product()));
+        productRepository.deleteById("missing");
+        assertEquals(afterCreate, productRepository.modificationStamp().version());
+
+        productRepository.update(product.getProductId(), new Product());
+        long afterUpdate = productRepository.modificationStamp().version();
+        assertTrue(afterUpdate > afterCreate);
+        productRepository.deleteById(product.getProductId());
+        assertTrue(productRepository.modificationStamp().version() > afterUpdate);
+        assertTrue(productRepository.modificationStamp().lastModified() > 0);
+    }
+
+    @Test
+    void testModificationStampIsNotReusedByANewRepository() {
+        long version = productRepository.modificationStamp().version();
+        productRepository.create(new Product());
+
+        assertTrue(new ProductRepository().modificationStamp().version() >= version);
+    }
+
+    @Test
+    void testJournalBlockingOnVirtualThreadsDoesNotPinCarriers() throws Exception {
+        // More writers than carrier threads, all blocked in the journal at once. Blocking
+        // while pinned would stall every carrier before the last writer arrived.
+        int writers = Math.min(Runtime.getRuntime().availableProcessors() * 2 + 1, 128);
+        CountDownLatch allInJournal = new CountDownLatch(writers);
+        AtomicInteger timedOut = new AtomicInteger();
+        productRepository.addJournal(new ProductJournal() {
+            @Override
+            public void productSaved(Product product) {
+                allInJournal.countDown();
+                try {
+                    if (!allInJournal.await(10, TimeUnit.SECONDS)) {
+                        timedOut.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void productDeleted(String productId) {
+            }
+        });
+        // Ids on distinct lock stripes, so the writers do not wait for each other
+        StripedLocks stripes = new StripedLocks(ProductRepository.LOCK_STRIPES);
+        Set<Integer> usedStripes = new HashSet<>();
+        List<String> ids = new ArrayList<>();
+        while (ids.size() < writers) {
+            String id = UUID.randomUUID().toString();
+            if (usedStripes.add(stripes.indexFor(id))) {
+                ids.add(id);
+            }
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Product>> futures = new ArrayList<>();
+            for (String id : ids) {
+                futures.add(executor.submit(() -> productRepository.create(new Product(id, "Sampo", 1, 0))));
+            }
+            for (Future<Product> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals(0, timedOut.get());
+        for (String id : ids) {
+            assertNotNull(productRepository.findById(id));
+        }
+    }
+
+    @Test
+    void testChangesNotStoredYetStayAppliedAndCarryTheResult() {
+        productRepository.create(new Product("p-1", "Sampo", 5, 0));
+        productRepository.addJournal(new ProductJournal() {
+            @Override
+            public void productSaved(Product product) {
+            }
+
+            @Override
+            public void productDeleted(String productId) {
+            }
+
+            @Override
+            public void changesApplied() {
+                throw new ChangeNotDurableException("Could not store the catalog change yet, it will be retried", null);
+            }
+        });
+
+        List<StockDelta> deltas = List.of(new StockDelta("p-1", 2), new StockDelta("p-2", 1));
+        ChangeNotDurableException failure = assertThrows(ChangeNotDurableException.class,
+                () -> productRepository.applyDeltas(deltas, false));
+
+        List<StockDeltaResult> results = failure.getResult();
+        assertEquals(StockDeltaResult.Status.APPLIED, results.get(0).status());
+        assertEquals(StockDeltaResult.Status.NOT_FOUND, results.get(1).status());
+        assertEquals(7, productRepository.findById("p-1").getProductQuantity());
+        failure = assertThrows(ChangeNotDurableException.class,
+                () -> productRepository.createAll(List.of(new Product("p-1", "Sabun", 1, 0))));
+        assertEquals(List.of(0), failure.getResult());
+    }
+
+    @Test
+    void testJournalsFinishChangesAfterLocksAreReleased() throws Exception {
+        CountDownLatch firstWriterFinishing = new CountDownLatch(1);
+        CountDownLatch releaseFirstWriter = new CountDownLatch(1);
+        productRepository.addJournal(new ProductJournal() {
+            @Override
+            public void productSaved(Product product) {
+            }
+
+            @Override
+            public void productDeleted(String productId) {
+            }
+
+            @Override
+            public void changesApplied() {
+                // Only the first writer waits, like one waiting for its changes to be stored
+                if (firstWriterFinishing.getCount() > 0) {
+                    firstWriterFinishing.countDown();
+                    try {
+                        releaseFirstWriter.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Product> first = executor.submit(
+                    () -> productRepository.create(new Product("product-1", "Sampo", 1, 0)));
+            assertTrue(firstWriterFinishing.await(10, TimeUnit.SECONDS));
+
+            // Would wait for the first writer if it still held the product's lock
+            Future<StockAdjustment> second = executor.submit(
+                    () -> productRepository.adjustQuantity("product-1", quantity -> quantity + 1));
+            assertEquals(2, second.get(10, TimeUnit.SECONDS).product().getProductQuantity());
+            assertFalse(first.isDone());
+
+            releaseFirstWriter.countDown();
+            first.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testWithProductHoldsOffWritesToThatProduct() throws Exception {
+        productRepository.create(new Product("product-1", "Sampo", 4, 0));
+        CountDownLatch inAction = new CountDownLatch(1);
+        CountDownLatch releaseAction = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Boolean> reader = executor.submit(() -> productRepository.withProduct("product-1", product -> {
+                assertEquals(4, product.getProductQuantity());
+                inAction.countDown();
+                try {
+                    releaseAction.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(inAction.await(10, TimeUnit.SECONDS));
+            Future<Boolean> delete = executor.submit(() -> productRepository.deleteById("product-1"));
+            Future<Boolean> otherProduct = executor.submit(() -> productRepository.withProduct("missing", product -> {
+            }));
+
+            assertFalse(otherProduct.get(10, TimeUnit.SECONDS));
+            assertFalse(delete.isDone());
+            releaseAction.countDown();
+            assertTrue(reader.get(10, TimeUnit.SECONDS));
+            assertTrue(delete.get(10, TimeUnit.SECONDS));
+        }
+        assertFalse(productRepository.withProduct("product-1", product -> fail("deleted")));
+    }
+
+    @Test
+    void testCreateKeepsItsOwnCopy() {
+        Product product = new Product("product-1", "Sampo Cap Bambang", 10, 0);
+        productRepository.create(product);
+
+        product.setProductName("Changed by the caller");
+        product.setProductQuantity(0);
+
+        Product stored = productRepository.findById("product-1");
+        assertEquals("Sampo Cap Bambang", stored.getProductName());
+        assertEquals(10, stored.getProductQuantity());
+        assertEquals(List.of(stored.getProductId()),
+                productRepository.searchByNamePrefix("sampo", 10).stream().map(Product::getProductId).toList());
+    }
+
+    @Test
+    void testAdjustQuantityStartsFromStoredQuantity() {
+        productRepository.create(new Product("product-1", "Sampo Cap Bambang", 10, 0));
+
+        StockAdjustment added = productRepository.adjustQuantity("product-1", quantity -> quantity + 5);
+        StockAdjustment refused = productRepository.adjustQuantity("product-1", quantity -> -1);
+
+        assertTrue(added.applied());
+        assertEquals(15, added.product().getProductQuantity());
+        assertEquals(1, added.product().getVersion());
+        assertFalse(refused.applied());
+        assertEquals(added.product(), refused.product());
+        assertEquals(added.product(), productRepository.findById("product-1"));
+        assertNull(productRepository.adjustQuantity("missing", quantity -> quantity + 1));
+    }
+
+    @Test
+    void testConcurrentReservationsNeverOversell() throws Exception {
+        int stock = 1_000;
+        int threads = 64;
+        productRepository.create(new Product("product-1", "Sampo Cap Bambang", stock, 0));
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2 * stock / threads; i++) {
+                    if (productRepository.adjustQuantity("product-1", quantity -> quantity >= 1 ? quantity - 1 : -1).applied()) {
+                        reserved.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Product product = productRepository.findById("product-1");
+        assertEquals(stock, reserved.get());
+        assertEquals(0, product.getProductQuantity());
+        assertEquals(stock, product.getVersion());
+    }
+
+    @Test
+    void testApplyDeltasBestEffortAppliesValidDeltasInOrder() {
+        productRepository.create(new Product("product-1", "Sampo Cap Bambang", 5, 0));
+        productRepository.create(new Product("product-2", "Sabun Cap Bambang", 1, 0));
+
+        List<StockDeltaResult> results = productRepository.applyDeltas(List.of(
+                new StockDelta("product-1", -3),
+                new StockDelta("product-2", -2),
+                new StockDelta("product-1", 10),
+                new StockDelta("missing", 1),
+                new StockDelta("product-1", Integer.MAX_VALUE)), false);
+
+        assertEquals(List.of(StockDeltaResult.Status.APPLIED, StockDeltaResult.Status.INSUFFICIENT_STOCK,
+                        StockDeltaResult.Status.APPLIED, StockDeltaResult.Status.NOT_FOUND,
+                        StockDeltaResult.Status.OVERFLOW),
+                results.stream().map(StockDeltaResult::status).toList());
+        Product first = productRepository.findById("product-1");
+        assertEquals(12, first.getProductQuantity());
+        // One new version per changed product, however many of its deltas were applied
+        assertEquals(1, first.getVersion());
+        assertEquals(12, results.get(0).product().getProductQuantity());
+        assertEquals(1, productRepository.findById("product-2").getProductQuantity());
+        assertEquals(0, productRepository.findById("product-2").getVersion());
+        assertNull(results.get(3).product());
+    }
+
+    @Test
+    void testApplyDeltasAllOrNothingChangesNothingWhenOneIsRefused() {
+        productRepository.create(new Product("product-1", "Sampo Cap Bambang", 5, 0));
+        productRepository.create(new Product("product-2", "Sabun Cap Bambang", 1, 0));
+        long versionBefore = productRepository.modificationStamp().version();
+
+        List<StockDeltaResult> refused = productRepository.applyDeltas(List.of(
+                new StockDelta("product-1", -3), new StockDelta("product-2", -2)), true);
+        assertEquals(List.of(StockDeltaResult.Status.ROLLED_BACK, StockDeltaResult.Status.INSUFFICIENT_STOCK),
+                refused.stream().map(StockDeltaResult::status).toList());
+        assertEquals(5, productRepository.findById("product-1").getProductQuantity());
+        assertEquals(versionBefore, productRepository.modificationStamp().version());
+
+        List<StockDeltaResult> applied = productRepository.applyDeltas(List.of(
+                new StockDelta("product-1", -3), new StockDelta("product-2", -1)), true);
+        assertTrue(applied.stream().allMatch(result -> result.status() == StockDeltaResult.Status.APPLIED));
+        assertEquals(2, productRepository.findById("product-1").getProductQuantity());
+        assertEquals(0, productRepository.findById("product-2").getProductQuantity());
+    }
 }
@@ -0,0 +1,97 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.exporter.ExportFormat;
+import id.ac.ui.cs.advprog.eshop.importer.CsvRecordReader;
+import id.ac.ui.cs.advprog.eshop.importer.NdjsonRecordReader;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogExportServiceTest {
+
+    ProductService productService;
+    CarService carService;
+    CatalogExportService catalogExportService;
+
+    @BeforeEach
+    void setUp() {
+        productService = new ProductServiceImpl(new ProductRepository(), event -> { });
+        carService = new CarServiceImpl(new CarRepository(), event -> { });
+        catalogExportService = new CatalogExportServiceImpl(productService, carService);
+    }
+
+    @Test
+    void testExportProductsAsCsv() throws IOException {
+        productService.create(new Product("eb558e9f-1c39-460e-8860-71af6af63bd6", "Sampo Cap Bambang", 100, 0));
+        productService.create(new Product("p-2", "Sabun, \"Wangi\"", 5, 0));
+
+        assertEquals("productId,productName,productQuantity\r\n"
+                        + "eb558e9f-1c39-460e-8860-71af6af63bd6,Sampo Cap Bambang,100\r\n"
+                        + "p-2,\"Sabun, \"\"Wangi\"\"\",5\r\n",
+                export(ExportFormat.CSV, true));
+    }
+
+    @Test
+    void testExportCarsAsNdjson() throws IOException {
+        Car car = new Car();
+        car.setCarId("c-1");
+        car.setCarName("Avanza \"Veloz\"");
+        car.setCarColor(null);
+        car.setCarQuantity(3);
+        carService.create(car);
+
+        assertEquals("{\"carId\":\"c-1\",\"carName\":\"Avanza \\\"Veloz\\\"\",\"carColor\":null,\"carQuantity\":3}\n",
+                export(ExportFormat.NDJSON, false));
+    }
+
+    @Test
+    void testExportOfEmptyCatalog() throws IOException {
+        assertEquals("productId,productName,productQuantity\r\n", export(ExportFormat.CSV, true));
+        assertEquals("", export(ExportFormat.NDJSON, true));
+    }
+
+    @Test
+    void testExportCanBeImportedAgain() throws IOException {
+        for (int i = 0; i < 2500; i++) {
+            productService.create(new Product("p-" + i, "Product\n" + i, i, 0));
+        }
+
+        for (ExportFormat format : ExportFormat.values()) {
+            ProductService target = new ProductServiceImpl(new ProductRepository(), event -> { });
+            CatalogImportService catalogImportService = new CatalogImportServiceImpl(target, carService);
+            String exported = export(format, true);
+            if (format == ExportFormat.CSV) {
+                catalogImportService.importProducts(new CsvRecordReader(new StringReader(exported)));
+            } else {
+                catalogImportService.importProducts(new NdjsonRecordReader(new StringReader(exported)));
+            }
+
+            List<Product> imported = target.findAll();
+            assertEquals(2500, imported.size());
+            assertEquals("p-2499", imported.get(2499).getProductId());
+            assertEquals("Product\n2499", imported.get(2499).getProductName());
+            assertEquals(2499, imported.get(2499).getProductQuantity());
+        }
+    }
+
+    private String export(ExportFormat format, boolean products) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (products) {
+            catalogExportService.exportProducts(format, out);
+        } else {
+            catalogExportService.exportCars(format, out);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,196 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.importer.CsvRecordReader;
+import id.ac.ui.cs.advprog.eshop.importer.NdjsonRecordReader;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.ImportSummary;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ChangeNotDurableException;
+import id.ac.ui.cs.advprog.eshop.repository.ProductJournal;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogImportServiceTest {
+
+    ProductService productService;
+    CarService carService;
+    CatalogImportService catalogImportService;
+
+    @BeforeEach
+    void setUp() {
+        productService = new ProductServiceImpl(new ProductRepository(), event -> { });
+        carService = new CarServiceImpl(new CarRepository(), event -> { });
+        catalogImportService = new CatalogImportServiceImpl(productService, carService);
+    }
+
+    @Test
+    void testImportProductsFromCsv() throws IOException {
+        ImportSummary summary = catalogImportService.importProducts(new CsvRecordReader(new StringReader(
+                "productId,productName,productQuantity\n"
+                        + "eb558e9f-1c39-460e-8860-71af6af63bd6,Sampo Cap Bambang,100\n"
+                        + ",Sabun,5\n")));
+
+        assertEquals(2, summary.getAccepted());
+        assertEquals(0, summary.getRejected());
+        List<Product> products = productService.findAll();
+        assertEquals(2, products.size());
+        assertEquals("eb558e9f-1c39-460e-8860-71af6af63bd6", products.get(0).getProductId());
+        assertEquals(100, products.get(0).getProductQuantity());
+        assertNotNull(products.get(1).getProductId());
+        assertEquals("Sabun", products.get(1).getProductName());
+    }
+
+    @Test
+    void testImportProductsRejectsRowsLikeTheCreateForm() throws IOException {
+        ImportSummary summary = catalogImportService.importProducts(new CsvRecordReader(new StringReader(
+                "productName,productQuantity\n"
+                        + "Sampo,1\n"
+                        + " ,1\n"
+                        + "Sabun,-1\n"
+                        + "Odol,many\n"
+                        + "Sikat,2\n")));
+
+        assertEquals(2, summary.getAccepted());
+        assertEquals(3, summary.getRejected());
+        assertEquals(3, summary.getRejections().get(0).line());
+        assertEquals(CatalogValidation.INVALID_PRODUCT, summary.getRejections().get(0).reason());
+        assertEquals(4, summary.getRejections().get(1).line());
+        assertEquals(5, summary.getRejections().get(2).line());
+        assertEquals(2, productService.findAll().size());
+    }
+
+    @Test
+    void testImportProductsRejectsTakenIdsWithoutTouchingTheStoredProduct() throws IOException {
+        productService.create(new Product("p-1", "Sampo Cap Bambang", 5, 0));
+        productService.update("p-1", new Product("p-1", "Sampo Cap Bambang", 4, 0));
+        productService.create(new Product("p-2", "Sabun Cap Usep", 1, 0));
+
+        ImportSummary summary = catalogImportService.importProducts(new CsvRecordReader(new StringReader(
+                "productId,productName,productQuantity\n"
+                        + "p-1,Imported,100\n"
+                        + "p-3,Odol,3\n"
+                        + "p-3,Odol again,7\n")));
+
+        assertEquals(1, summary.getAccepted());
+        assertEquals(2, summary.getRejected());
+        assertEquals(2, summary.getRejections().get(0).line());
+        assertEquals("Product p-1 already exists", summary.getRejections().get(0).reason());
+        assertEquals(4, summary.getRejections().get(1).line());
+        Product stored = productService.findById("p-1");
+        assertEquals("Sampo Cap Bambang", stored.getProductName());
+        assertEquals(1, stored.getVersion());
+        assertEquals(3, productService.findById("p-3").getProductQuantity());
+        List<String> order = productService.findAll().stream().map(Product::getProductId).toList();
+        assertEquals(List.of("p-1", "p-2", "p-3"), order);
+    }
+
+    @Test
+    void testImportRejectsMissingQuantityLikeTheCreateForm() throws IOException {
+        ImportSummary products = catalogImportService.importProducts(new CsvRecordReader(new StringReader(
+                "productName,productQuantity\n"
+                        + "Sampo,\n")));
+        ImportSummary cars = catalogImportService.importCars(new NdjsonRecordReader(new StringReader(
+                "{\"carName\":\"Avanza\",\"carColor\":\"Black\"}\n")));
+
+        assertEquals(0, products.getAccepted());
+        assertEquals(CatalogValidation.INVALID_PRODUCT, products.getRejections().get(0).reason());
+        assertEquals(0, cars.getAccepted());
+        assertEquals(CatalogValidation.INVALID_CAR, cars.getRejections().get(0).reason());
+        assertTrue(productService.findAll().isEmpty());
+    }
+
+    @Test
+    void testImportProductsInSeveralBatches() throws IOException {
+        StringBuilder csv = new StringBuilder("productName,productQuantity\n");
+        int rows = CatalogImportServiceImpl.BATCH_SIZE * 2 + 7;
+        for (int i = 0; i < rows; i++) {
+            csv.append("Product ").append(i).append(',').append(i).append('\n');
+        }
+
+        ImportSummary summary = catalogImportService.importProducts(new CsvRecordReader(new StringReader(csv.toString())));
+
+        assertEquals(rows, summary.getAccepted());
+        List<Product> products = productService.findAll();
+        assertEquals(rows, products.size());
+        assertEquals("Product " + (rows - 1), products.get(rows - 1).getProductName());
+    }
+
+    @Test
+    void testImportCarsFromNdjson() throws IOException {
+        ImportSummary summary = catalogImportService.importCars(new NdjsonRecordReader(new StringReader(
+                "{\"carName\":\"Avanza\",\"carColor\":\"Black\",\"carQuantity\":3}\n"
+                        + "\n"
+                        + "{\"carName\":\"Jazz\",\"carColor\":\"Red\",\"carQuantity\":\"7\",\"extra\":[1,2]}\n"
+                        + "{\"carName\":\"Broken\"\n"
+                        + "[1,2,3]\n"
+                        + "{\"carColor\":\"Blue\",\"carQuantity\":1}\n")));
+
+        assertEquals(2, summary.getAccepted());
+        assertEquals(3, summary.getRejected());
+        assertEquals(4, summary.getRejections().get(0).line());
+        assertEquals(5, summary.getRejections().get(1).line());
+        assertEquals(CatalogValidation.INVALID_CAR, summary.getRejections().get(2).reason());
+        List<Car> cars = carService.findAll();
+        assertEquals(2, cars.size());
+        assertEquals("Black", cars.get(0).getCarColor());
+        assertEquals(7, cars.get(1).getCarQuantity());
+    }
+
+    @Test
+    void testOnlyFirstRejectionsAreListed() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < ImportSummary.MAX_REPORTED_REJECTIONS + 50; i++) {
+            ndjson.append("{\"productQuantity\":1}\n");
+        }
+
+        ImportSummary summary = catalogImportService.importProducts(new NdjsonRecordReader(new StringReader(ndjson.toString())));
+
+        assertEquals(0, summary.getAccepted());
+        assertEquals(ImportSummary.MAX_REPORTED_REJECTIONS + 50, summary.getRejected());
+        assertEquals(ImportSummary.MAX_REPORTED_REJECTIONS, summary.getRejections().size());
+    }
+
+    @Test
+    void testChangesNotStoredYetAreCountedAndPublished() throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        productRepository.create(new Product("taken", "Sampo", 1, 0));
+        productRepository.addJournal(new ProductJournal() {
+            @Override
+            public void productSaved(Product product) {
+            }
+
+            @Override
+            public void productDeleted(String productId) {
+            }
+
+            @Override
+            public void changesApplied() {
+                throw new ChangeNotDurableException("Could not store the catalog change yet, it will be retried", null);
+            }
+        });
+        List<CatalogChangedEvent> events = new ArrayList<>();
+        productService = new ProductServiceImpl(productRepository, event -> events.add((CatalogChangedEvent) event));
+        catalogImportService = new CatalogImportServiceImpl(productService, carService);
+
+        ImportSummary summary = catalogImportService.importProducts(new CsvRecordReader(new StringReader(
+                "productId,productName,productQuantity\n"
+                        + "taken,Sabun,5\n"
+                        + "fresh,Odol,2\n")));
+
+        // The batch is applied, only the database does not have it yet
+        assertEquals(1, summary.getAccepted());
+        assertEquals(1, summary.getRejected());
+        assertEquals(1, summary.getNotStored());
+        assertEquals("Odol", productService.findById("fresh").getProductName());
+        assertEquals(List.of("fresh"), List.copyOf(events.get(0).ids()));
+    }
+}
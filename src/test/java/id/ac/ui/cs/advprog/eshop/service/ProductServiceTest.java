@@ -1,17 +1,29 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
+import id.ac.ui.cs.advprog.eshop.lowstock.LowStockWatcher;
+import id.ac.ui.cs.advprog.eshop.lowstock.StockCrossing;
+import id.ac.ui.cs.advprog.eshop.model.Page;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.model.StockAdjustment;
 import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.VersionConflictException;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Change;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,6 +34,12 @@ class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private LowStockWatcher lowStockWatcher;
+
     @InjectMocks
     private ProductServiceImpl productService;
 
@@ -44,6 +62,55 @@ class ProductServiceTest {
         assertEquals(product.getProductName(), result.getProductName());
         assertEquals(product.getProductQuantity(), result.getProductQuantity());
         verify(productRepository, times(1)).create(product);
+        verify(eventPublisher).publishEvent(CatalogChangedEvent.product(Change.CREATED, product.getProductId()));
+    }
+
+    @Test
+    void testCreateIfAbsentPublishesOnlyWhenCreated() {
+        Product product = new Product("p-1", "Sampo Cap Bambang", 1, 0);
+        when(productRepository.createIfAbsent(product)).thenReturn(true, false);
+
+        assertTrue(productService.createIfAbsent(product));
+        assertFalse(productService.createIfAbsent(product));
+
+        verify(eventPublisher, times(1)).publishEvent(CatalogChangedEvent.product(Change.CREATED, "p-1"));
+    }
+
+    @Test
+    void testCreateAllPublishesOneEventForTheBatch() {
+        Product first = new Product("id-1", "First", 1, 0);
+        Product second = new Product("id-2", "Second", 2, 0);
+
+        productService.createAll(List.of(first, second));
+
+        verify(productRepository).createAll(List.of(first, second));
+        verify(eventPublisher).publishEvent(
+                new CatalogChangedEvent(Catalog.PRODUCT, Change.CREATED, List.of("id-1", "id-2")));
+    }
+
+    @Test
+    void testCreateAllPublishesOnlyCreatedProducts() {
+        Product first = new Product("id-1", "First", 1, 0);
+        Product taken = new Product("id-2", "Second", 2, 0);
+        Product third = new Product("id-3", "Third", 3, 0);
+        when(productRepository.createAll(List.of(first, taken, third))).thenReturn(List.of(1));
+
+        assertEquals(List.of(1), productService.createAll(List.of(first, taken, third)));
+
+        verify(eventPublisher).publishEvent(
+                new CatalogChangedEvent(Catalog.PRODUCT, Change.CREATED, List.of("id-1", "id-3")));
+    }
+
+    @Test
+    void testCreateAllThatFailsPartWayOnlyInvalidatesTheList() {
+        Product first = new Product("id-1", "First", 1, 0);
+        Product second = new Product("id-2", "Second", 2, 0);
+        when(productRepository.createAll(List.of(first, second))).thenThrow(new IllegalStateException("disk full"));
+
+        assertThrows(IllegalStateException.class, () -> productService.createAll(List.of(first, second)));
+
+        verify(eventPublisher).publishEvent(new CatalogChangedEvent(Catalog.PRODUCT, Change.CREATED, List.of()));
+        verifyNoMoreInteractions(eventPublisher);
     }
 
     @Test
@@ -95,19 +162,57 @@ class ProductServiceTest {
         assertEquals(product2.getProductId(), result.get(1).getProductId());
     }
 
+    @Test
+    void testIterateAllReadsRepositoryLazily() {
+        Product product = new Product();
+        when(productRepository.findAll()).thenAnswer(invocation -> List.of(product).iterator());
+
+        Iterable<Product> result = productService.iterateAll();
+        verify(productRepository, never()).findAll();
+
+        Iterator<Product> iterator = result.iterator();
+        assertSame(product, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertSame(product, result.iterator().next());
+        verify(productRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testSearchByName() {
+        Product product = new Product();
+        when(productRepository.searchByNamePrefix("sam", 10)).thenReturn(List.of(product));
+
+        assertEquals(List.of(product), productService.searchByName("sam", 10));
+    }
+
+    @Test
+    void testSearchByNameWithBlankQueryReturnsNothing() {
+        assertTrue(productService.searchByName(" ", 10).isEmpty());
+        assertTrue(productService.searchByName(null, 10).isEmpty());
+        verify(productRepository, never()).searchByNamePrefix(anyString(), anyInt());
+    }
+
+    @Test
+    void testFindPage() {
+        Product product = new Product();
+        Page<Product> page = new Page<>(List.of(product), "cursor");
+        when(productRepository.findPage("after", 20)).thenReturn(page);
+
+        Page<Product> result = productService.findPage("after", 20);
+
+        assertSame(page, result);
+        verify(productRepository, times(1)).findPage("after", 20);
+    }
+
     @Test
     void testEditProduct_Success() {
         String productId = "eb558e9f-1c39-460e-8860-71af6af63bd6";
-        Product existingProduct = new Product();
-        existingProduct.setProductId(productId);
-        existingProduct.setProductName("Sampo Cap Bambang");
-        existingProduct.setProductQuantity(100);
-
         Product updatedProduct = new Product();
         updatedProduct.setProductName("Sampo Cap Bambang - Updated");
         updatedProduct.setProductQuantity(150);
 
-        when(productRepository.findById(productId)).thenReturn(existingProduct);
+        Product storedProduct = new Product(productId, "Sampo Cap Bambang - Updated", 150, 1);
+        when(productRepository.update(productId, updatedProduct)).thenReturn(storedProduct);
         
         Product result = productService.update(productId, updatedProduct);
         
@@ -115,80 +220,62 @@ class ProductServiceTest {
         assertEquals(productId, result.getProductId());
         assertEquals("Sampo Cap Bambang - Updated", result.getProductName());
         assertEquals(150, result.getProductQuantity());
+        assertEquals(1, result.getVersion());
+        verify(productRepository, times(1)).update(productId, updatedProduct);
+        verify(eventPublisher).publishEvent(CatalogChangedEvent.product(Change.UPDATED, productId));
     }
 
     @Test
     void testEditProduct_UpdateName() {
         String productId = "eb558e9f-1c39-460e-8860-71af6af63bd6";
-        Product existingProduct = new Product();
-        existingProduct.setProductId(productId);
-        existingProduct.setProductName("Sampo Cap Bambang");
-        existingProduct.setProductQuantity(100);
-
         Product updatedProduct = new Product();
         updatedProduct.setProductName("Sampo Cap Bambang Premium");
         updatedProduct.setProductQuantity(100);
+        updatedProduct.setVersion(0);
+
+        Product storedProduct = new Product(productId, "Sampo Cap Bambang Premium", 100, 1);
+        when(productRepository.update(productId, updatedProduct)).thenReturn(storedProduct);
 
-        when(productRepository.findById(productId)).thenReturn(existingProduct);
-        
         Product result = productService.update(productId, updatedProduct);
-        
+
         assertNotNull(result);
         assertEquals("Sampo Cap Bambang Premium", result.getProductName());
         assertEquals(100, result.getProductQuantity());
+        assertEquals(1, result.getVersion());
     }
 
     @Test
     void testEditProduct_UpdateQuantity() {
         String productId = "eb558e9f-1c39-460e-8860-71af6af63bd6";
-        Product existingProduct = new Product();
-        existingProduct.setProductId(productId);
-        existingProduct.setProductName("Sampo Cap Bambang");
-        existingProduct.setProductQuantity(100);
-
         Product updatedProduct = new Product();
         updatedProduct.setProductName("Sampo Cap Bambang");
         updatedProduct.setProductQuantity(200);
+        updatedProduct.setVersion(0);
+
+        Product storedProduct = new Product(productId, "Sampo Cap Bambang", 200, 1);
+        when(productRepository.update(productId, updatedProduct)).thenReturn(storedProduct);
 
-        when(productRepository.findById(productId)).thenReturn(existingProduct);
-        
         Product result = productService.update(productId, updatedProduct);
-        
+
         assertNotNull(result);
         assertEquals("Sampo Cap Bambang", result.getProductName());
         assertEquals(200, result.getProductQuantity());
-    }
-
-    @Test
-    void testEditProduct_ProductNotFound() {
-        String nonExistentId = "non-existent-id";
-        Product updatedProduct = new Product();
-        updatedProduct.setProductName("Sampo Cap Bambang - Updated");
-        updatedProduct.setProductQuantity(150);
-
-        when(productRepository.findById(nonExistentId)).thenReturn(null);
-        
-        Product result = productService.update(nonExistentId, updatedProduct);
-        
-        assertNull(result);
+        assertEquals(1, result.getVersion());
     }
 
     @Test
     void testEditProduct_UpdateToEmptyName() {
         String productId = "eb558e9f-1c39-460e-8860-71af6af63bd6";
-        Product existingProduct = new Product();
-        existingProduct.setProductId(productId);
-        existingProduct.setProductName("Sampo Cap Bambang");
-        existingProduct.setProductQuantity(100);
-
         Product updatedProduct = new Product();
         updatedProduct.setProductName("");
         updatedProduct.setProductQuantity(100);
+        updatedProduct.setVersion(0);
+
+        Product storedProduct = new Product(productId, "", 100, 1);
+        when(productRepository.update(productId, updatedProduct)).thenReturn(storedProduct);
 
-        when(productRepository.findById(productId)).thenReturn(existingProduct);
-        
         Product result = productService.update(productId, updatedProduct);
-        
+
         assertNotNull(result);
         assertEquals("", result.getProductName());
     }
@@ -196,30 +283,57 @@ class ProductServiceTest {
     @Test
     void testEditProduct_UpdateToZeroQuantity() {
         String productId = "eb558e9f-1c39-460e-8860-71af6af63bd6";
-        Product existingProduct = new Product();
-        existingProduct.setProductId(productId);
-        existingProduct.setProductName("Sampo Cap Bambang");
-        existingProduct.setProductQuantity(100);
-
         Product updatedProduct = new Product();
         updatedProduct.setProductName("Sampo Cap Bambang");
         updatedProduct.setProductQuantity(0);
+        updatedProduct.setVersion(0);
+
+        Product storedProduct = new Product(productId, "Sampo Cap Bambang", 0, 1);
+        when(productRepository.update(productId, updatedProduct)).thenReturn(storedProduct);
 
-        when(productRepository.findById(productId)).thenReturn(existingProduct);
-        
         Product result = productService.update(productId, updatedProduct);
-        
+
         assertNotNull(result);
         assertEquals(0, result.getProductQuantity());
     }
 
+    @Test
+    void testEditProduct_ProductNotFound() {
+        String nonExistentId = "non-existent-id";
+        Product updatedProduct = new Product();
+        updatedProduct.setProductName("Sampo Cap Bambang - Updated");
+        updatedProduct.setProductQuantity(150);
+
+        when(productRepository.update(nonExistentId, updatedProduct)).thenReturn(null);
+        
+        Product result = productService.update(nonExistentId, updatedProduct);
+        
+        assertNull(result);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testEditProduct_VersionConflictPropagates() {
+        String productId = "eb558e9f-1c39-460e-8860-71af6af63bd6";
+        Product updatedProduct = new Product();
+        updatedProduct.setProductName("Sampo Cap Bambang - Updated");
+
+        when(productRepository.update(productId, updatedProduct))
+                .thenThrow(new VersionConflictException(productId, 0, 1));
+
+        assertThrows(VersionConflictException.class, () -> productService.update(productId, updatedProduct));
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     void testDeleteProduct_Success() {
         String productId = "eb558e9f-1c39-460e-8860-71af6af63bd6";
+        when(productRepository.deleteById(productId)).thenReturn(true);
         
         productService.deleteById(productId);
         
         verify(productRepository, times(1)).deleteById(productId);
+        verify(eventPublisher).publishEvent(CatalogChangedEvent.product(Change.DELETED, productId));
     }
 
     @Test
@@ -229,5 +343,86 @@ class ProductServiceTest {
         productService.deleteById(nonExistentId);
         
         verify(productRepository, times(1)).deleteById(nonExistentId);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testStockOperationsKeepQuantityAtOrAboveZero() {
+        ProductServiceImpl service = new ProductServiceImpl(new ProductRepository(), eventPublisher);
+        service.create(new Product("product-1", "Sampo Cap Bambang", 5, 0));
+
+        assertEquals(8, service.addStock("product-1", 3).product().getProductQuantity());
+        StockAdjustment shortReservation = service.reserveStock("product-1", 9);
+        assertFalse(shortReservation.applied());
+        assertEquals(8, shortReservation.product().getProductQuantity());
+        assertEquals(2, service.reserveStock("product-1", 6).product().getProductQuantity());
+        assertEquals(0, service.subtractStock("product-1", 5).product().getProductQuantity());
+        assertEquals(Integer.MAX_VALUE, service.addStock("product-1", Integer.MAX_VALUE).product().getProductQuantity());
+        assertFalse(service.addStock("product-1", 1).applied());
+        assertThrows(IllegalArgumentException.class, () -> service.subtractStock("product-1", 0));
+        assertNull(service.reserveStock("missing", 1));
+    }
+
+    @Test
+    void testStockChangePublishesEventOnlyWhenApplied() {
+        when(productRepository.adjustQuantity(eq("product-1"), any()))
+                .thenReturn(new StockAdjustment(new Product("product-1", "Sampo", 1, 2), false))
+                .thenReturn(new StockAdjustment(new Product("product-1", "Sampo", 0, 3), true));
+
+        productService.reserveStock("product-1", 2);
+        verifyNoInteractions(eventPublisher);
+        productService.reserveStock("product-1", 1);
+        verify(eventPublisher).publishEvent(CatalogChangedEvent.product(Change.UPDATED, "product-1"));
+    }
+
+    @Test
+    void testLowStockWatcherSeesEveryRepositoryQuantityChange() {
+        verify(productRepository, never()).addQuantityListener(any());
+
+        // Called by Spring once the service is constructed
+        productService.watchQuantities();
+
+        verify(productRepository).addQuantityListener(lowStockWatcher);
+    }
+
+    @Test
+    void testLowStockThresholdIsOnlySetForExistingProducts() {
+        Product product = new Product("product-1", "Sampo", 4, 0);
+        when(productRepository.withProduct(eq("product-1"), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<Product>>getArgument(1).accept(product);
+            return true;
+        });
+
+        assertTrue(productService.setLowStockThreshold("product-1", 3));
+        assertFalse(productService.setLowStockThreshold("missing", 3));
+
+        verify(lowStockWatcher).setThreshold(product, 3);
+        verify(lowStockWatcher, times(1)).setThreshold(any(Product.class), anyInt());
+    }
+
+    @Test
+    void testLowStockThresholdSetAboveQuantityIsReportedAtOnce() throws InterruptedException {
+        BlockingQueue<StockCrossing> crossings = new LinkedBlockingQueue<>();
+        LowStockWatcher watcher = new LowStockWatcher(1, 100, List.of(crossings::add));
+        ProductServiceImpl service = new ProductServiceImpl(new ProductRepository(), eventPublisher, watcher);
+        service.watchQuantities();
+        service.create(new Product("product-1", "Sampo", 4, 0));
+
+        assertTrue(service.setLowStockThreshold("product-1", 10));
+
+        StockCrossing crossing = crossings.poll(10, TimeUnit.SECONDS);
+        assertNotNull(crossing);
+        assertTrue(crossing.low());
+        assertEquals(4, crossing.quantity());
+        watcher.close();
+    }
+
+    @Test
+    void testDeleteForgetsOwnLowStockThreshold() {
+        when(productRepository.deleteById("product-1")).thenReturn(true);
+
+        productService.deleteById("product-1");
+
+        verify(lowStockWatcher).removeThreshold("product-1");
     }
 }
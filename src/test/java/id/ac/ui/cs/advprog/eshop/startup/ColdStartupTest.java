@@ -0,0 +1,262 @@
+package id.ac.ui.cs.advprog.eshop.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Starts the packaged app from cold, several times in every launch mode, and measures the
+ * time until {@code /product/list} first answers and the resident memory at that moment.
+ * The modes are a plain JVM, the JVM with a class data sharing archive, the JVM with the
+ * archive and Spring's ahead-of-time initialization, and the GraalVM native image when
+ * {@code ./gradlew nativeCompile} has built one. Run it with {@code ./gradlew startupTest};
+ * settings can be overridden with {@code -PstartupTest.<name>=<value>}, see {@link Settings}.
+ */
+class ColdStartupTest {
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    @Test
+    void everyLaunchModeStartsAndAnswers() throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        assumeTrue(settings.jar() != null, "startupTest.jar is set by ./gradlew startupTest");
+        Path workDirectory = Path.of(settings.workDirectory());
+        deleteRecursively(workDirectory);
+        Files.createDirectories(workDirectory);
+        Path jar = extract(settings, workDirectory);
+
+        List<Summary> summaries = new ArrayList<>();
+        for (LaunchMode mode : launchModes(settings, jar, workDirectory)) {
+            if (!mode.training().isEmpty()) {
+                train(settings, mode, workDirectory);
+            }
+            List<Run> runs = new ArrayList<>();
+            for (int i = 0; i < settings.runs(); i++) {
+                runs.add(measure(settings, mode, workDirectory));
+            }
+            summaries.add(Summary.of(mode.name(), runs));
+        }
+
+        System.out.println(report(settings, summaries));
+        writeJson(settings, summaries);
+    }
+
+    /**
+     * Unpacks the boot jar into the layout class data sharing needs: a thin application jar
+     * with its dependencies in {@code lib/}, on a classpath that never changes.
+     */
+    private static Path extract(Settings settings, Path workDirectory) throws Exception {
+        Path destination = workDirectory.resolve("app");
+        run(settings, workDirectory, List.of(java(), "-Djarmode=tools", "-jar", settings.jar(),
+                "extract", "--destination", destination.toString()));
+        return destination.resolve(Path.of(settings.jar()).getFileName());
+    }
+
+    private static List<LaunchMode> launchModes(Settings settings, Path jar, Path workDirectory) {
+        String cdsArchive = workDirectory.resolve("jvm-cds.jsa").toString();
+        String aotArchive = workDirectory.resolve("jvm-cds-aot.jsa").toString();
+        String aot = "-Dspring.aot.enabled=true";
+        String exitAfterRefresh = "-Dspring.context.exit=onRefresh";
+        List<LaunchMode> modes = new ArrayList<>(List.of(
+                new LaunchMode("jvm", List.of(), List.of(java(), "-jar", jar.toString())),
+                new LaunchMode("jvm-cds",
+                        List.of(java(), "-XX:ArchiveClassesAtExit=" + cdsArchive, exitAfterRefresh,
+                                "-jar", jar.toString()),
+                        List.of(java(), "-XX:SharedArchiveFile=" + cdsArchive, "-jar", jar.toString())),
+                new LaunchMode("jvm-cds-aot",
+                        List.of(java(), "-XX:ArchiveClassesAtExit=" + aotArchive, exitAfterRefresh, aot,
+                                "-jar", jar.toString()),
+                        List.of(java(), "-XX:SharedArchiveFile=" + aotArchive, aot, "-jar", jar.toString()))));
+        if (Files.isExecutable(Path.of(settings.nativeImage()))) {
+            modes.add(new LaunchMode("native", List.of(), List.of(settings.nativeImage())));
+        }
+        return modes;
+    }
+
+    /**
+     * Starts the app once to record the classes it loads until the context is refreshed,
+     * then lets it exit, leaving the archive behind.
+     */
+    private static void train(Settings settings, LaunchMode mode, Path workDirectory) throws Exception {
+        List<String> command = new ArrayList<>(mode.training());
+        command.add("--server.port=" + freePort());
+        run(settings, workDirectory, command);
+    }
+
+    private static void run(Settings settings, Path workDirectory, List<String> command) throws Exception {
+        Path log = workDirectory.resolve("setup.log");
+        Process process = new ProcessBuilder(command)
+                .directory(workDirectory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                .start();
+        if (!process.waitFor(settings.timeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly().waitFor();
+            throw new IllegalStateException(String.join(" ", command) + " did not finish, see " + log);
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " failed, see " + log);
+        }
+    }
+
+    private Run measure(Settings settings, LaunchMode mode, Path workDirectory) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(mode.command());
+        command.add("--server.port=" + port);
+        Path log = workDirectory.resolve(mode.name() + ".log");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/product/list"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(workDirectory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long deadline = started + settings.timeout().toNanos();
+            while (!answers(request)) {
+                if (!process.isAlive() || System.nanoTime() > deadline) {
+                    throw new IllegalStateException(mode.name() + " did not answer, see " + log);
+                }
+                Thread.sleep(2);
+            }
+            double startupMillis = (System.nanoTime() - started) / 1e6;
+            return new Run(startupMillis, residentKilobytes(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private boolean answers(HttpRequest request) throws InterruptedException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resident set size of a process in kB, or -1 where {@code /proc} is not available.
+     */
+    private static long residentKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try (Stream<String> lines = Files.lines(status)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> line.replaceAll("\\D", ""))
+                    .mapToLong(Long::parseLong)
+                    .findFirst()
+                    .orElse(-1);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static String report(Settings settings, List<Summary> summaries) {
+        StringBuilder report = new StringBuilder(String.format("%nCold start: %d runs per launch mode%n",
+                settings.runs()));
+        report.append(String.format("%-12s %10s %10s %10s %12s%n",
+                "mode", "min ms", "median ms", "max ms", "median RSS"));
+        for (Summary summary : summaries) {
+            report.append(String.format("%-12s %10.0f %10.0f %10.0f %9.1f MB%n",
+                    summary.mode(), summary.minMillis(), summary.medianMillis(), summary.maxMillis(),
+                    summary.medianRssMegabytes()));
+        }
+        return report.toString();
+    }
+
+    private static void writeJson(Settings settings, List<Summary> summaries) throws IOException {
+        Path directory = Path.of(settings.reportDirectory());
+        Files.createDirectories(directory);
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("settings", settings);
+        results.put("modes", summaries);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(directory.resolve("results.json").toFile(), results);
+    }
+
+    /**
+     * How to start the app in one mode, and how to train its class data sharing archive
+     * first, if it has one.
+     */
+    private record LaunchMode(String name, List<String> training, List<String> command) {
+    }
+
+    record Run(double startupMillis, long residentKilobytes) {
+    }
+
+    record Summary(String mode, List<Run> runs, double minMillis, double medianMillis, double maxMillis,
+                   double medianRssMegabytes) {
+
+        static Summary of(String mode, List<Run> runs) {
+            double[] millis = runs.stream().mapToDouble(Run::startupMillis).sorted().toArray();
+            long[] rss = runs.stream().mapToLong(Run::residentKilobytes).sorted().toArray();
+            return new Summary(mode, runs, millis[0], millis[millis.length / 2], millis[millis.length - 1],
+                    rss[rss.length / 2] / 1024.0);
+        }
+    }
+
+    /**
+     * What to start and how often, read from {@code startupTest.*} system properties.
+     */
+    record Settings(int runs, Duration timeout, String jar, String nativeImage, String workDirectory,
+                    String reportDirectory) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("startupTest.runs", 5),
+                    Duration.ofSeconds(Long.getLong("startupTest.timeoutSeconds", 120)),
+                    System.getProperty("startupTest.jar"),
+                    System.getProperty("startupTest.nativeImage", "build/native/nativeCompile/eshop"),
+                    System.getProperty("startupTest.workDirectory", "build/startup-test"),
+                    System.getProperty("startupTest.reportDirectory", "build/reports/startup-test"));
+        }
+    }
+}
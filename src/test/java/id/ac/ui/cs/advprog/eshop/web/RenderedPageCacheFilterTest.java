@@ -0,0 +1,178 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Change;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedPageCacheFilterTest {
+    private static final String PAGE = "<html><body>" + "<tr><td>Sampo Cap Bambang</td></tr>".repeat(50) + "</body></html>";
+
+    private RenderedPageCache cache;
+    private RenderedPageCacheFilter filter;
+    private AtomicInteger renders;
+    private FilterChain renderer;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RenderedPageCache(1 << 20);
+        filter = new RenderedPageCacheFilter(cache, 1 << 16);
+        renders = new AtomicInteger();
+        renderer = (request, response) -> {
+            renders.incrementAndGet();
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setContentType("text/html;charset=UTF-8");
+            httpResponse.setHeader("ETag", "\"16\"");
+            httpResponse.setHeader("Cache-Control", "no-cache");
+            httpResponse.getWriter().write(PAGE);
+        };
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, renderer);
+        return response;
+    }
+
+    private MockHttpServletResponse get(String uri) throws Exception {
+        return get(new MockHttpServletRequest("GET", uri));
+    }
+
+    @Test
+    void testSecondRequestIsServedFromCache() throws Exception {
+        MockHttpServletResponse first = get("/product/list");
+        MockHttpServletResponse second = get("/product/list");
+
+        assertEquals(1, renders.get());
+        assertEquals("MISS", first.getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("HIT", second.getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(PAGE, second.getContentAsString());
+        assertEquals("text/html;charset=UTF-8", second.getContentType());
+        assertEquals("\"16\"", second.getHeader("ETag"));
+        assertEquals("no-cache", second.getHeader("Cache-Control"));
+    }
+
+    @Test
+    void testQueryStringIsPartOfTheKey() throws Exception {
+        MockHttpServletRequest nextPage = new MockHttpServletRequest("GET", "/product/list");
+        nextPage.setQueryString("after=abc");
+
+        get("/product/list");
+        get(nextPage);
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void testHitIsServedPrecompressedWhenAccepted() throws Exception {
+        get("/product/list");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/product/list");
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals(PAGE, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testHitAnswersConditionalRequest() throws Exception {
+        get("/car/editCar/car-1");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/car/editCar/car-1");
+        request.addHeader("If-None-Match", "\"16\"");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentLength());
+        assertEquals("\"16\"", response.getHeader("ETag"));
+    }
+
+    @Test
+    void testChangeThroughServicesInvalidatesPage() throws Exception {
+        get("/product/edit/product-1");
+        get("/product/edit/product-2");
+
+        cache.onCatalogChanged(CatalogChangedEvent.product(Change.UPDATED, "product-1"));
+        get("/product/edit/product-1");
+        get("/product/edit/product-2");
+
+        assertEquals(3, renders.get());
+    }
+
+    @Test
+    void testOtherRequestsAreNotCached() throws Exception {
+        get("/product/create");
+        get("/product/create");
+        filter.doFilter(new MockHttpServletRequest("POST", "/product/list"), new MockHttpServletResponse(), renderer);
+        filter.doFilter(new MockHttpServletRequest("POST", "/product/list"), new MockHttpServletResponse(), renderer);
+
+        assertEquals(4, renders.get());
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void testRequestWithFlashAttributesBypassesCache() throws Exception {
+        get("/product/list");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/product/list");
+        FlashMap flashMap = new FlashMap();
+        flashMap.put("error", "Product was changed by someone else");
+        request.getSession().setAttribute(SessionFlashMapManager.class.getName() + ".FLASH_MAPS", List.of(flashMap));
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(2, renders.get());
+        assertNull(response.getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    void testErrorResponsesAreNotCached() throws Exception {
+        renderer = (request, response) -> {
+            renders.incrementAndGet();
+            ((HttpServletResponse) response).sendRedirect("/product/list");
+        };
+
+        get("/product/edit/missing");
+        get("/product/edit/missing");
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void testPageLargerThanLimitIsStreamedButNotCached() throws Exception {
+        filter = new RenderedPageCacheFilter(cache, 100);
+
+        MockHttpServletResponse first = get("/product/list/all");
+        get("/product/list/all");
+
+        assertEquals(PAGE, first.getContentAsString());
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void testRoutes() {
+        assertEquals(new RenderedPageCacheFilter.Route(CatalogChangedEvent.Catalog.PRODUCT, null),
+                RenderedPageCacheFilter.route("/product/list"));
+        assertEquals(new RenderedPageCacheFilter.Route(CatalogChangedEvent.Catalog.CAR, "a b"),
+                RenderedPageCacheFilter.route("/car/editCar/a%20b"));
+        assertNull(RenderedPageCacheFilter.route("/product/edit/"));
+        assertNull(RenderedPageCacheFilter.route("/api/products"));
+    }
+}
@@ -0,0 +1,126 @@
+package id.ac.ui.cs.advprog.eshop.web;
+
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Catalog;
+import id.ac.ui.cs.advprog.eshop.service.CatalogChangedEvent.Change;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedPageCacheTest {
+
+    private static CachedPage page(Catalog catalog, String itemId, String body) {
+        return CachedPage.of(catalog, itemId, "text/html;charset=UTF-8", "\"1\"", -1, "no-cache",
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testStoresGzipVariant() throws IOException {
+        CachedPage page = page(Catalog.PRODUCT, null, "<html>" + "row".repeat(1000) + "</html>");
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(page.gzip()))) {
+            assertArrayEquals(page.identity(), in.readAllBytes());
+        }
+        assertTrue(page.gzip().length < page.identity().length);
+    }
+
+    @Test
+    void testCountsHitsAndMisses() {
+        RenderedPageCache cache = new RenderedPageCache(1 << 20);
+        CachedPage page = page(Catalog.PRODUCT, null, "list");
+
+        assertNull(cache.get("/product/list"));
+        assertTrue(cache.put("/product/list", page, cache.generation(Catalog.PRODUCT)));
+        assertSame(page, cache.get("/product/list"));
+
+        PageCacheStats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.entries());
+        assertEquals(page.size(), stats.bytes());
+        assertEquals(0.5, stats.hitRatio());
+    }
+
+    @Test
+    void testChangeDropsListsAndChangedItemOnly() {
+        RenderedPageCache cache = new RenderedPageCache(1 << 20);
+        long products = cache.generation(Catalog.PRODUCT);
+        long cars = cache.generation(Catalog.CAR);
+        cache.put("/product/list", page(Catalog.PRODUCT, null, "list"), products);
+        cache.put("/product/list?after=x", page(Catalog.PRODUCT, null, "page 2"), products);
+        cache.put("/product/edit/a", page(Catalog.PRODUCT, "a", "edit a"), products);
+        cache.put("/product/edit/b", page(Catalog.PRODUCT, "b", "edit b"), products);
+        cache.put("/car/listCar", page(Catalog.CAR, null, "cars"), cars);
+        cache.put("/car/editCar/a", page(Catalog.CAR, "a", "edit car a"), cars);
+
+        cache.onCatalogChanged(CatalogChangedEvent.product(Change.UPDATED, "a"));
+
+        assertNull(cache.get("/product/list"));
+        assertNull(cache.get("/product/list?after=x"));
+        assertNull(cache.get("/product/edit/a"));
+        assertNotNull(cache.get("/product/edit/b"));
+        assertNotNull(cache.get("/car/listCar"));
+        assertNotNull(cache.get("/car/editCar/a"));
+        assertEquals(3, cache.stats().invalidations());
+    }
+
+    @Test
+    void testBatchChangeDropsEveryChangedItem() {
+        RenderedPageCache cache = new RenderedPageCache(1 << 20);
+        long generation = cache.generation(Catalog.CAR);
+        cache.put("/car/editCar/a", page(Catalog.CAR, "a", "a"), generation);
+        cache.put("/car/editCar/b", page(Catalog.CAR, "b", "b"), generation);
+        cache.put("/car/editCar/c", page(Catalog.CAR, "c", "c"), generation);
+
+        cache.onCatalogChanged(new CatalogChangedEvent(Catalog.CAR, Change.UPDATED, List.of("a", "c")));
+
+        assertNull(cache.get("/car/editCar/a"));
+        assertNotNull(cache.get("/car/editCar/b"));
+        assertNull(cache.get("/car/editCar/c"));
+    }
+
+    @Test
+    void testRefusesPageRenderedAcrossAChange() {
+        RenderedPageCache cache = new RenderedPageCache(1 << 20);
+        long generation = cache.generation(Catalog.PRODUCT);
+
+        cache.onCatalogChanged(CatalogChangedEvent.product(Change.UPDATED, "a"));
+
+        assertFalse(cache.put("/product/edit/b", page(Catalog.PRODUCT, "b", "stale"), generation));
+        assertNull(cache.get("/product/edit/b"));
+        assertTrue(cache.put("/car/listCar", page(Catalog.CAR, null, "cars"), cache.generation(Catalog.CAR)));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedToStayWithinBound() {
+        CachedPage first = page(Catalog.PRODUCT, "1", "x".repeat(2000));
+        RenderedPageCache cache = new RenderedPageCache(first.size() * 2 + first.size() / 2);
+        long generation = cache.generation(Catalog.PRODUCT);
+        cache.put("/product/edit/1", first, generation);
+        cache.put("/product/edit/2", page(Catalog.PRODUCT, "2", "y".repeat(2000)), generation);
+        cache.get("/product/edit/1");
+
+        cache.put("/product/edit/3", page(Catalog.PRODUCT, "3", "z".repeat(2000)), generation);
+
+        assertNotNull(cache.get("/product/edit/1"));
+        assertNull(cache.get("/product/edit/2"));
+        assertNotNull(cache.get("/product/edit/3"));
+        PageCacheStats stats = cache.stats();
+        assertEquals(1, stats.evictions());
+        assertTrue(stats.bytes() <= stats.maxBytes());
+    }
+
+    @Test
+    void testSkipsPageLargerThanTheCache() {
+        RenderedPageCache cache = new RenderedPageCache(100);
+
+        assertFalse(cache.put("/product/list", page(Catalog.PRODUCT, null, "list"), cache.generation(Catalog.PRODUCT)));
+        assertEquals(0, cache.stats().entries());
+    }
+}